@@ -1,7 +0,0 @@
-public class MinhaClasse {
-    public static void main(String[] args) {
-//digite seu código
-int a = 0;
-System.out.println(a);
-    }
-}
\ No newline at end of file
@@ -0,0 +1,283 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import util.Ast.*;
+
+/**
+ * Verificação de tipos e de nomes logo depois do {@link Parser}, para
+ * recusar um programa errado sem chegar a chamar o javac.
+ *
+ * Os nomes viram números ({@link Identificadores}) e a tabela de símbolos é
+ * feita de vetores indexados por esse número: o tipo da variável visível,
+ * se ela com certeza tem valor, e uma pilha com os números declarados em
+ * cada bloco (um escopo por bloco de {@code if}/{@code while}, como no
+ * Java). Como o Java não deixa uma variável local esconder outra, cada
+ * número tem no máximo uma variável visível por vez.
+ *
+ * Só aponta o que o javac também com certeza recusaria. Quando a resposta
+ * depende de algo que esta análise não modela (nomes reservados, o
+ * {@code args} do main, condição constante mexendo na atribuição definida)
+ * ela fica quieta e deixa a decisão para o javac. Vale só para tokens em que
+ * {@link TokenBuffer#cobreTudo()} é verdade.
+ *
+ * @author david
+ */
+public class AnalisadorSemantico {
+
+    public record Erro(int token, String mensagem) {}
+
+    // tipos guardados nas tabelas; DESCONHECIDO é o args (String[]) e o que já deu erro
+    private static final byte NENHUM = 0, INT = 1, FLOAT = 2, BOOLEAN = 3, STRING = 4, DESCONHECIDO = 5;
+    private static final String[] NOMES_TIPOS = {"", "int", "float", "boolean", "String", "?"};
+
+    private final Identificadores nomes;
+    private final List<Erro> erros = new ArrayList<>();
+    // "pode não ter sido inicializada" só é certo se nenhuma condição for constante
+    private final List<Erro> semValor = new ArrayList<>();
+    private boolean condicaoConstante;
+    private boolean semVeredito;
+
+    // por número de nome: tipo da variável visível (NENHUM = não há) e se ela com certeza tem valor
+    private byte[] tipos = new byte[16];
+    private BitSet atribuidas = new BitSet();
+    // números declarados, na ordem; cada bloco lembra a altura em que começou
+    private int[] declarados = new int[16];
+    private int topo;
+    // números já classificados (args, reservados)
+    private int vistos;
+
+    private AnalisadorSemantico(TokenBuffer tokens) {
+        this.nomes = new Identificadores(tokens);
+    }
+
+    /**
+     * Erros do programa, em ordem de posição. Lista vazia não quer dizer que
+     * o programa compila, só que aqui não há certeza de erro nenhum.
+     */
+    public static List<Erro> analisar(TokenBuffer tokens, Programa programa) {
+        try (Telemetria.Medida medida = Telemetria.get().iniciar(Telemetria.Fase.SEMANTICA)) {
+            List<Erro> erros = verificar(tokens, programa);
+            medida.fim(tokens.size(), 0);
+            return erros;
+        }
+    }
+
+    private static List<Erro> verificar(TokenBuffer tokens, Programa programa) {
+        AnalisadorSemantico analisador = new AnalisadorSemantico(tokens);
+        try {
+            analisador.bloco(programa.comandos());
+        } catch (StackOverflowError e) {
+            return List.of();
+        }
+        if (analisador.semVeredito) return List.of();
+
+        List<Erro> erros = analisador.erros;
+        if (!analisador.condicaoConstante) erros.addAll(analisador.semValor);
+        erros.sort(Comparator.comparingInt(Erro::token));
+        return erros;
+    }
+
+    private void bloco(List<Comando> comandos) {
+        int inicio = topo;
+        for (Comando comando : comandos) {
+            comando(comando);
+        }
+        // fim do bloco: as variáveis dele deixam de existir
+        while (topo > inicio) {
+            int id = declarados[--topo];
+            tipos[id] = NENHUM;
+            atribuidas.clear(id);
+        }
+    }
+
+    private void comando(Comando comando) {
+        switch (comando) {
+            case Declaracao d -> {
+                // o inicializador é verificado antes: nele a variável ainda não existe
+                byte valor = d.valor() != null ? expressao(d.valor()) : NENHUM;
+                byte tipo = switch (d.tipo()) {
+                    case "int" -> INT;
+                    case "float" -> FLOAT;
+                    case "boolean" -> BOOLEAN;
+                    default -> STRING;
+                };
+                int nome = d.token() + 1;
+                int id = id(nome);
+                if (tipos[id] != NENHUM) {
+                    erro(nome, "a variável " + nomes.nome(id) + " já foi definida no método main(String[])");
+                } else {
+                    declarar(id, tipo);
+                }
+                if (d.valor() != null) {
+                    compativel(tipo, valor, d.valor().token());
+                    atribuidas.set(id);
+                }
+            }
+            case Atribuicao a -> {
+                byte valor = expressao(a.valor());
+                int id = id(a.token());
+                if (tipos[id] == NENHUM) {
+                    naoEncontrado(a.token(), id);
+                } else {
+                    compativel(tipos[id], valor, a.valor().token());
+                    atribuidas.set(id);
+                }
+            }
+            case Impressao i -> expressao(i.valor());
+            case Se s -> {
+                condicao(s.condicao());
+                BitSet antes = (BitSet) atribuidas.clone();
+                bloco(s.entao());
+                if (s.senao() == null) {
+                    atribuidas = antes;
+                } else {
+                    BitSet depoisEntao = atribuidas;
+                    atribuidas = antes;
+                    bloco(s.senao());
+                    // com valor depois do if só o que recebeu valor nos dois caminhos
+                    atribuidas.and(depoisEntao);
+                }
+            }
+            case Enquanto e -> {
+                condicao(e.condicao());
+                BitSet antes = (BitSet) atribuidas.clone();
+                bloco(e.corpo());
+                atribuidas = antes;
+            }
+        }
+    }
+
+    private void condicao(Expressao condicao) {
+        expressao(condicao);
+        if (constante(condicao)) condicaoConstante = true;
+    }
+
+    private static boolean constante(Expressao expressao) {
+        return switch (expressao) {
+            case Variavel v -> false;
+            case Binaria b -> constante(b.esquerda()) && constante(b.direita());
+            default -> true;
+        };
+    }
+
+    private byte expressao(Expressao expressao) {
+        switch (expressao) {
+            case Numero n -> {
+                String texto = n.valor();
+                // com zero na frente é octal; os limites são outros e ficam com o javac
+                if (!(texto.length() > 1 && texto.charAt(0) == '0')
+                        && (texto.length() > 10 || Long.parseLong(texto) > Integer.MAX_VALUE)) {
+                    erro(n.token(), "número inteiro grande demais: " + texto);
+                }
+                return INT;
+            }
+            case Real r -> {
+                return FLOAT;
+            }
+            case Texto t -> {
+                return STRING;
+            }
+            case Booleano b -> {
+                return BOOLEAN;
+            }
+            case Variavel v -> {
+                int id = id(v.token());
+                if (tipos[id] == NENHUM) {
+                    naoEncontrado(v.token(), id);
+                    return DESCONHECIDO;
+                }
+                if (!atribuidas.get(id)) {
+                    semValor.add(new Erro(v.token(), "a variável " + nomes.nome(id) + " pode não ter sido inicializada"));
+                }
+                return tipos[id];
+            }
+            case Binaria b -> {
+                return binaria(b);
+            }
+        }
+    }
+
+    private byte binaria(Binaria b) {
+        byte esq = expressao(b.esquerda());
+        byte dir = expressao(b.direita());
+        Operador op = b.operador();
+        if (esq == DESCONHECIDO || dir == DESCONHECIDO) {
+            return op.relacional() ? BOOLEAN : DESCONHECIDO;
+        }
+        boolean numericos = numerico(esq) && numerico(dir);
+
+        if (op == Operador.IGUAL || op == Operador.DIFERENTE) {
+            // número com número, boolean com boolean, String com String (compara referência)
+            if (!numericos && esq != dir) {
+                erro(b.token(), "tipos incomparáveis: " + NOMES_TIPOS[esq] + " e " + NOMES_TIPOS[dir]);
+            }
+            return BOOLEAN;
+        }
+        if (op == Operador.SOMA && (esq == STRING || dir == STRING)) {
+            return STRING;
+        }
+        if (!numericos) {
+            erro(b.token(), "tipos de operandos inválidos para o operador binário '" + op.simbolo + "' ("
+                    + NOMES_TIPOS[esq] + " e " + NOMES_TIPOS[dir] + ")");
+            return op.relacional() ? BOOLEAN : DESCONHECIDO;
+        }
+        if (op.relacional()) return BOOLEAN;
+        return esq == FLOAT || dir == FLOAT ? FLOAT : INT;
+    }
+
+    private static boolean numerico(byte tipo) {
+        return tipo == INT || tipo == FLOAT;
+    }
+
+    // valor cabe na variável? int vira float sozinho; o resto tem que ser do mesmo tipo
+    private void compativel(byte variavel, byte valor, int token) {
+        if (variavel == DESCONHECIDO || valor == DESCONHECIDO || variavel == valor) return;
+        if (variavel == FLOAT && valor == INT) return;
+        if (variavel == INT && valor == FLOAT) {
+            erro(token, "tipos incompatíveis: possível perda de precisão na conversão de float para int");
+        } else {
+            erro(token, "tipos incompatíveis: " + NOMES_TIPOS[valor] + " não pode ser convertido em " + NOMES_TIPOS[variavel]);
+        }
+    }
+
+    private void naoEncontrado(int token, int id) {
+        erro(token, "não foi possível encontrar o símbolo: variável " + nomes.nome(id));
+    }
+
+    private void erro(int token, String mensagem) {
+        erros.add(new Erro(token, mensagem));
+    }
+
+    private void declarar(int id, byte tipo) {
+        tipos[id] = tipo;
+        atribuidas.clear(id);
+        if (topo == declarados.length) declarados = Arrays.copyOf(declarados, topo * 2);
+        declarados[topo++] = id;
+    }
+
+    // número do nome; na primeira vez que ele aparece vê se é um nome especial
+    private int id(int token) {
+        int id = nomes.id(token);
+        if (id >= tipos.length) tipos = Arrays.copyOf(tipos, Math.max(tipos.length * 2, id + 1));
+        while (vistos < nomes.quantidade()) {
+            String nome = nomes.nome(vistos);
+            if (nome.equals("args")) {
+                // parâmetro do main: existe, tem valor, mas o tipo (String[]) está fora desta análise
+                tipos[vistos] = DESCONHECIDO;
+                atribuidas.set(vistos);
+            } else if (Interpretador.RESERVADAS.contains(nome)) {
+                semVeredito = true;
+            }
+            vistos++;
+        }
+        return id;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import java.util.List;
+
+/**
+ * Árvore sintática abstrata produzida pelo {@link Parser}.
+ *
+ * Diferente da árvore de derivação mostrada na tela, aqui só ficam os nós
+ * que importam para executar o programa. O campo {@code token} é o índice,
+ * no {@link TokenBuffer}, do token que originou o nó (usado nas mensagens
+ * de erro).
+ *
+ * @author david
+ */
+public sealed interface Ast {
+
+    record Programa(List<Comando> comandos) implements Ast {}
+
+    sealed interface Comando extends Ast {
+        int token();
+    }
+
+    // valor == null quando a declaração não tem inicialização
+    record Declaracao(int token, String tipo, String nome, Expressao valor) implements Comando {}
+
+    record Atribuicao(int token, String nome, Expressao valor) implements Comando {}
+
+    record Impressao(int token, Expressao valor) implements Comando {}
+
+    // senao == null quando não há else
+    record Se(int token, Expressao condicao, List<Comando> entao, List<Comando> senao) implements Comando {}
+
+    record Enquanto(int token, Expressao condicao, List<Comando> corpo) implements Comando {}
+
+    sealed interface Expressao extends Ast {
+        int token();
+    }
+
+    // texto do literal como foi digitado (só dígitos); vindo do Otimizador pode ter sinal
+    record Numero(int token, String valor) implements Expressao {}
+
+    // float já calculado; só o Otimizador cria (a gramática não tem literal float)
+    record Real(int token, float valor) implements Expressao {}
+
+    // conteúdo da string, já sem as aspas
+    record Texto(int token, String valor) implements Expressao {}
+
+    record Booleano(int token, boolean valor) implements Expressao {}
+
+    record Variavel(int token, String nome) implements Expressao {}
+
+    record Binaria(int token, Operador operador, Expressao esquerda, Expressao direita) implements Expressao {}
+
+    // precedência: quanto maior, mais forte liga. Os relacionais ficam com 0 porque
+    // só aparecem um por condição; um operador aritmético novo só precisa entrar aqui
+    // (e no léxico e em quem executa) para o Parser já saber montar a árvore
+    enum Operador {
+        SOMA("+", 1), SUBTRACAO("-", 1), MULTIPLICACAO("*", 2), DIVISAO("/", 2),
+        IGUAL("==", 0), DIFERENTE("!=", 0), MENOR("<", 0), MAIOR(">", 0), MENOR_IGUAL("<=", 0), MAIOR_IGUAL(">=", 0);
+
+        public final String simbolo;
+        public final int precedencia;
+
+        Operador(String simbolo, int precedencia) {
+            this.simbolo = simbolo;
+            this.precedencia = precedencia;
+        }
+
+        public boolean relacional() {
+            return ordinal() >= IGUAL.ordinal();
+        }
+
+        public static Operador of(String simbolo) {
+            for (Operador operador : values()) {
+                if (operador.simbolo.equals(simbolo)) return operador;
+            }
+            throw new IllegalArgumentException("Operador desconhecido: " + simbolo);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache das classes compiladas, endereçado pelo conteúdo do programa.
+ *
+ * A chave é um SHA-256 da sequência de tokens do {@link analisadorLexico}
+ * sem comentários e sem a quantidade de espaços, então mudar só a
+ * indentação ou um comentário {@code //} reaproveita a compilação anterior.
+ * Entre dois tokens fica registrado só se estavam colados, separados por
+ * espaço ou separados por quebra de linha/comentário, porque isso o javac
+ * enxerga ({@code 1.5} não é {@code 1 . 5}).
+ *
+ * Quando o texto tem algo que o nosso analisador não reconhece como token
+ * (aspas simples, barra invertida, caracteres ignorados), a forma como o
+ * javac lê aquele trecho pode depender dos espaços; nesses casos a chave
+ * é o texto exato e só uma cópia idêntica acerta o cache.
+ *
+ * Primeiro nível: LRU em memória. Segundo nível (opcional): um diretório
+ * com um arquivo por chave, que sobrevive entre execuções do programa.
+ *
+ * @author david
+ */
+public class ClassCache {
+
+    private static final int MAX_PADRAO = 64;
+
+    // diretório do cache em disco, se configurado (-Dcompilador.cache.dir=...)
+    private static final ClassCache PADRAO = new ClassCache(MAX_PADRAO,
+            System.getProperty("compilador.cache.dir") != null ? Paths.get(System.getProperty("compilador.cache.dir")) : null);
+
+    private final int maxEntradas;
+    private final Path diretorio;
+    private final LinkedHashMap<String, Map<String, byte[]>> memoria;
+
+    private final AtomicLong acertosMemoria = new AtomicLong();
+    private final AtomicLong acertosDisco = new AtomicLong();
+    private final AtomicLong faltas = new AtomicLong();
+    private final AtomicLong despejos = new AtomicLong();
+
+    public record Estatisticas(long acertosMemoria, long acertosDisco, long faltas, long despejos, int entradas) {
+
+        public long acertos() {
+            return acertosMemoria + acertosDisco;
+        }
+
+        // o que aconteceu depois de antes; as entradas são as de agora
+        public Estatisticas desde(Estatisticas antes) {
+            return new Estatisticas(acertosMemoria - antes.acertosMemoria, acertosDisco - antes.acertosDisco,
+                    faltas - antes.faltas, despejos - antes.despejos, entradas);
+        }
+    }
+
+    public ClassCache(int maxEntradas, Path diretorio) {
+        this.maxEntradas = maxEntradas;
+        this.diretorio = diretorio;
+        this.memoria = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Map<String, byte[]>> eldest) {
+                if (size() > ClassCache.this.maxEntradas) {
+                    despejos.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public static ClassCache padrao() {
+        return PADRAO;
+    }
+
+    public Map<String, byte[]> get(String chave) {
+        synchronized (memoria) {
+            Map<String, byte[]> classes = memoria.get(chave);
+            if (classes != null) {
+                acertosMemoria.incrementAndGet();
+                return classes;
+            }
+        }
+        Map<String, byte[]> classes = lerDisco(chave);
+        if (classes != null) {
+            acertosDisco.incrementAndGet();
+            synchronized (memoria) {
+                memoria.put(chave, classes);
+            }
+            return classes;
+        }
+        faltas.incrementAndGet();
+        return null;
+    }
+
+    public void put(String chave, Map<String, byte[]> classes) {
+        synchronized (memoria) {
+            memoria.put(chave, classes);
+        }
+        gravarDisco(chave, classes);
+    }
+
+    public Estatisticas estatisticas() {
+        synchronized (memoria) {
+            return new Estatisticas(acertosMemoria.get(), acertosDisco.get(), faltas.get(), despejos.get(), memoria.size());
+        }
+    }
+
+    /**
+     * Chave do programa: hash dos tokens normalizados (ou do texto exato,
+     * quando a normalização não é segura). Entra também a versão da JVM,
+     * já que o cache em disco pode ser lido por outro JDK.
+     */
+    public static String chave(String className, TokenBuffer tokens) {
+        MessageDigest sha = sha256();
+        sha.update(("v2|" + Runtime.version() + "|" + className + "|").getBytes(StandardCharsets.UTF_8));
+
+        CharSequence fonte = tokens.source();
+        byte[] normalizado = normalizar(tokens);
+        if (normalizado != null) {
+            sha.update((byte) 'N');
+            sha.update(normalizado);
+        } else {
+            sha.update((byte) 'E');
+            sha.update(fonte.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(sha.digest());
+    }
+
+    // tokens e classes de separação entre eles; null se o texto não puder ser normalizado
+    private static byte[] normalizar(TokenBuffer tokens) {
+        if (!tokens.cobreTudo()) return null;
+
+        CharSequence fonte = tokens.source();
+        ByteArrayOutputStream saida = new ByteArrayOutputStream(fonte.length());
+        DataOutputStream dados = new DataOutputStream(saida);
+
+        int pos = 0;
+        int comentario = 0;
+        try {
+            for (int i = 0; i <= tokens.size(); i++) {
+                int inicio = i < tokens.size() ? tokens.start(i) : fonte.length();
+
+                // o que há entre o token anterior e este: só espaços e comentários
+                byte separacao = 0;
+                while (pos < inicio) {
+                    if (comentario < tokens.commentCount() && tokens.commentStart(comentario) == pos) {
+                        separacao = 2;
+                        pos += tokens.commentText(comentario++).length();
+                        continue;
+                    }
+                    char c = fonte.charAt(pos++);
+                    separacao = (byte) Math.max(separacao, c == '\n' || c == '\r' ? 2 : 1);
+                }
+                dados.writeByte(separacao);
+
+                if (i == tokens.size()) break;
+                dados.writeByte(tokens.type(i).ordinal());
+                escreverTexto(dados, tokens.text(i));
+                pos = tokens.end(i);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return saida.toByteArray();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // tamanho e bytes em UTF-8; o writeUTF não aceita textos com mais de 65535 bytes
+    private static void escreverTexto(DataOutputStream dados, String texto) throws IOException {
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        dados.writeInt(bytes.length);
+        dados.write(bytes);
+    }
+
+    private static byte[] lerBytes(DataInputStream dados) throws IOException {
+        int tamanho = dados.readInt();
+        if (tamanho < 0 || tamanho > dados.available()) {
+            throw new IOException("tamanho inválido: " + tamanho);
+        }
+        byte[] bytes = new byte[tamanho];
+        dados.readFully(bytes);
+        return bytes;
+    }
+
+    // Formato do arquivo: quantidade de classes e, para cada uma, nome e bytes, cada um precedido do tamanho
+    private Map<String, byte[]> lerDisco(String chave) {
+        if (diretorio == null) return null;
+        Path arquivo = diretorio.resolve(chave + ".bin");
+        if (!Files.exists(arquivo)) return null;
+        try (DataInputStream dados = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(arquivo)))) {
+            int quantidade = dados.readInt();
+            Map<String, byte[]> classes = new LinkedHashMap<>();
+            for (int i = 0; i < quantidade; i++) {
+                String nome = new String(lerBytes(dados), StandardCharsets.UTF_8);
+                classes.put(nome, lerBytes(dados));
+            }
+            return classes;
+        } catch (IOException e) {
+            // arquivo corrompido ou pela metade: vale como falta
+            return null;
+        }
+    }
+
+    private void gravarDisco(String chave, Map<String, byte[]> classes) {
+        if (diretorio == null) return;
+        try {
+            Files.createDirectories(diretorio);
+            Path temporario = Files.createTempFile(diretorio, chave, ".tmp");
+            try (OutputStream out = Files.newOutputStream(temporario);
+                 DataOutputStream dados = new DataOutputStream(out)) {
+                dados.writeInt(classes.size());
+                for (Map.Entry<String, byte[]> classe : classes.entrySet()) {
+                    escreverTexto(dados, classe.getKey());
+                    dados.writeInt(classe.getValue().length);
+                    dados.write(classe.getValue());
+                }
+            }
+            Files.move(temporario, diretorio.resolve(chave + ".bin"),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // o cache em disco é só um atalho; sem ele a compilação segue normal
+            e.printStackTrace();
+        }
+    }
+}
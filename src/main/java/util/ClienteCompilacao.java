@@ -0,0 +1,113 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cliente do {@link ServidorCompilacao}: manda os arquivos e mostra o que
+ * volta. Só usa classes do java.base, então sobe rápido; o trabalho todo é
+ * do servidor.
+ *
+ * Uso: {@code java util.ClienteCompilacao [--porta número | --unix caminho] [-e] arquivo...}
+ * ({@code -e} executa os programas; {@code -} lê o código da entrada padrão),
+ * ou {@code --metricas} no lugar dos arquivos para a telemetria do servidor em JSON.
+ * O código de saída é 0 se todos compilaram, 1 se algum teve erro e 2 se não
+ * deu para falar com o servidor.
+ *
+ * @author david
+ */
+public class ClienteCompilacao {
+
+    public static void main(String[] args) {
+        SocketAddress endereco = new InetSocketAddress(InetAddress.getLoopbackAddress(), ServidorCompilacao.PORTA_PADRAO);
+        byte tipo = ServidorCompilacao.COMPILAR;
+        List<String> arquivos = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--porta") && i + 1 < args.length) {
+                endereco = new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(args[++i]));
+            } else if (args[i].equals("--unix") && i + 1 < args.length) {
+                endereco = UnixDomainSocketAddress.of(args[++i]);
+            } else if (args[i].equals("-e")) {
+                tipo = ServidorCompilacao.EXECUTAR;
+            } else if (args[i].equals("--metricas")) {
+                tipo = ServidorCompilacao.METRICAS;
+            } else {
+                arquivos.add(args[i]);
+            }
+        }
+        if (tipo == ServidorCompilacao.METRICAS) {
+            arquivos = List.of("");
+        } else if (arquivos.isEmpty()) {
+            System.out.println("Uso: java util.ClienteCompilacao [--porta número | --unix caminho] [-e | --metricas] arquivo...");
+            System.exit(2);
+        }
+
+        int resultado = 0;
+        StandardProtocolFamily familia = endereco instanceof UnixDomainSocketAddress
+                ? StandardProtocolFamily.UNIX : StandardProtocolFamily.INET;
+        try (SocketChannel conexao = SocketChannel.open(familia)) {
+            conexao.connect(endereco);
+            if (familia == StandardProtocolFamily.INET) {
+                conexao.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            }
+            DataOutputStream para = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(conexao)));
+            DataInputStream de = new DataInputStream(new BufferedInputStream(Channels.newInputStream(conexao)));
+            for (String arquivo : arquivos) {
+                byte[] codigo = tipo == ServidorCompilacao.METRICAS ? new byte[0]
+                        : arquivo.equals("-") ? System.in.readAllBytes() : Files.readAllBytes(Path.of(arquivo));
+                para.writeByte(tipo);
+                para.writeUTF(arquivo);
+                para.writeInt(codigo.length);
+                para.write(codigo);
+                para.flush();
+                resultado = Math.max(resultado, receber(de));
+            }
+        } catch (IOException e) {
+            System.out.println("Não foi possível falar com o servidor em " + endereco + ": " + e.getMessage());
+            System.exit(2);
+        }
+        System.out.flush();
+        System.exit(resultado);
+    }
+
+    // escreve o texto da resposta enquanto ele chega; devolve o código do servidor
+    private static int receber(DataInputStream de) throws IOException {
+        byte[] buffer = new byte[8192];
+        while (true) {
+            byte tipo = de.readByte();
+            if (tipo == ServidorCompilacao.SAIDA) {
+                int n = de.readInt();
+                while (n > 0) {
+                    int k = de.read(buffer, 0, Math.min(n, buffer.length));
+                    if (k < 0) throw new IOException("conexão fechada no meio da resposta");
+                    System.out.write(buffer, 0, k);
+                    n -= k;
+                }
+                System.out.flush();
+            } else if (tipo == ServidorCompilacao.FIM) {
+                return de.readInt();
+            } else {
+                throw new IOException("resposta fora do protocolo");
+            }
+        }
+    }
+}
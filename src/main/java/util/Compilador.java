@@ -4,61 +4,193 @@
  */
 package util;
 
-import javax.tools.JavaCompiler;
-import javax.tools.ToolProvider;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
 import java.io.*;
 import java.lang.reflect.Method;
-import java.net.URL;
-import java.net.URLClassLoader;
-import javax.swing.JTextArea;
+import java.util.List;
+import java.util.Map;
 
 public class Compilador {
-    
+
+    private static final String NOME_CLASSE = "MinhaClasse";
+
+    // linhas que o envolver coloca antes do código do usuário
+    private static final int LINHAS_ANTES = 2;
+
+    // o System.out é do processo todo: uma execução sem processo separado de cada vez
+    private static final Object SAIDA_GLOBAL = new Object();
+
     private PrintStream printStream;
-    private JTextArea terminal;
-    
-    public Compilador(PrintStream printStream, JTextArea terminal) {
+
+    // sem execução dentro deste processo: nem pelo interpretador, nem quando falta o processo separado
+    private final boolean isolado;
+
+    // quanto o otimizador encolheu a árvore na última compilação
+    private int nosEliminados;
+
+    public Compilador(PrintStream printStream) {
+        this(printStream, false);
+    }
+
+    // isolado para quem atende vários programas ao mesmo tempo (o System.out e o tempo
+    // limite são do processo todo): todo programa roda num processo separado ou não roda
+    public Compilador(PrintStream printStream, boolean isolado) {
         this.printStream = printStream;
-        this.terminal = terminal;
+        this.isolado = isolado;
     }
 
-    
+
     public void compilar(String codigo) throws Exception {
-        terminal.append("Compilando na JVM...\nSaída:\n\n");
-        
-        File codigoFile = new File("MinhaClasse.java");
-        
-        // Adiciona um main em volta do código digitado
-        String mainString =
-            "public class MinhaClasse {\n" +
+        compilar(codigo, new analisadorLexico().tokenizeBuffer(codigo));
+    }
+
+    // tokens é a análise léxica de codigo (também a chave do cache de classes). As mensagens
+    // vão pelo mesmo stream da saída do programa para aparecerem na ordem certa
+    public void compilar(String codigo, TokenBuffer tokens) throws Exception {
+        // programa sem laço que cabe na gramática do Parser roda aqui mesmo, sem javac;
+        // com laço ele pode não terminar, então vai para um processo separado
+        Ast.Programa programa = arvore(tokens);
+        Interpretador interpretador = programa != null ? Interpretador.preparar(tokens, programa) : null;
+        nosEliminados = interpretador != null ? interpretador.nosEliminados() : 0;
+        if (!isolado && interpretador != null && !interpretador.temLaco()) {
+            printStream.print("Interpretando...\nSaída:\n\n");
+            WorkerPool.Resultado resultado;
+            try (Telemetria.Medida medida = Telemetria.get().iniciar(Telemetria.Fase.EXECUCAO)) {
+                resultado = interpretador.executar(printStream);
+                medida.fim(0, 0);
+            }
+            mostrarErro(resultado);
+            return;
+        }
+
+        printStream.print("Compilando na JVM...\nSaída:\n\n");
+
+        // erro de tipo ou de nome que o javac também daria: recusa sem esperar por ele
+        if (interpretador == null && programa != null) {
+            List<AnalisadorSemantico.Erro> erros = AnalisadorSemantico.analisar(tokens, programa);
+            if (!erros.isEmpty()) {
+                printStream.print("Erro!\n");
+                for (AnalisadorSemantico.Erro erro : erros) {
+                    printStream.print("linha " + Interpretador.linha(tokens, erro.token()) + ": " + erro.mensagem() + "\n");
+                }
+                throw new RuntimeException("Erro na compilação!");
+            }
+        }
+
+        executar(gerarClasses(codigo, tokens, interpretador));
+    }
+
+    // árvore do Parser, ou null se os tokens não cabem na gramática dele
+    private static Ast.Programa arvore(TokenBuffer tokens) {
+        if (!tokens.cobreTudo()) return null;
+        try {
+            return ParserTabela.analisar(tokens);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    public int nosEliminados() {
+        return nosEliminados;
+    }
+
+    // Adiciona um main em volta do código digitado
+    static String envolver(String codigo) {
+        return
+            "public class " + NOME_CLASSE + " {\n" +
             "    public static void main(String[] args) {\n" +
             codigo + "\n" +
             "    }\n" +
             "}";
+    }
+
+    public Map<String, byte[]> gerarClasses(String codigo) {
+        return gerarClasses(codigo, new analisadorLexico().tokenizeBuffer(codigo));
+    }
+
+    // Compila tudo em memória, no serviço de compilação que fica sempre aquecido.
+    // Se um programa com os mesmos tokens já foi compilado, reaproveita as classes
+    // (os números de linha delas são os da primeira compilação).
+    public Map<String, byte[]> gerarClasses(String codigo, TokenBuffer tokens) {
+        return gerarClasses(codigo, tokens, Interpretador.preparar(tokens));
+    }
+
+    // o mesmo para quem já analisou os tokens; programa é null se o Parser não os aceitou
+    public Map<String, byte[]> gerarClasses(String codigo, TokenBuffer tokens, Ast.Programa programa) {
+        return gerarClasses(codigo, tokens,
+                programa != null && tokens.cobreTudo() ? Interpretador.preparar(tokens, programa) : null);
+    }
 
-        try (FileWriter writer = new FileWriter(codigoFile)) {
-            writer.write(mainString);
+    // no subconjunto que a gramática cobre o .class é gerado direto da AST; sem
+    // interpretador (a AST não serve) vai direto para o cache e o javac
+    private Map<String, byte[]> gerarClasses(String codigo, TokenBuffer tokens, Interpretador interpretador) {
+        if (interpretador != null) {
+            return GeradorBytecode.gerar(NOME_CLASSE, interpretador.arvore(), tokens, LINHAS_ANTES);
         }
 
-        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
-        if (compiler == null) {
-            throw new IllegalStateException("JVM não tem compilador. Rode no JDK e não no JRE!");
+        ClassCache cache = ClassCache.padrao();
+        String chave = ClassCache.chave(NOME_CLASSE, tokens);
+        Map<String, byte[]> emCache = cache.get(chave);
+        if (emCache != null) {
+            return emCache;
         }
 
-        int result = compiler.run(null, null, null, codigoFile.getPath());
-        if (result != 0) {
-            terminal.append("Erro!\n");
+        CompilationService.Result resultado = CompilationService.get().compile(NOME_CLASSE, envolver(codigo));
+        if (!resultado.ok()) {
+            printStream.print("Erro!\n");
+            for (Diagnostic<? extends JavaFileObject> d : resultado.diagnostics()) {
+                printStream.print("linha " + (d.getLineNumber() - LINHAS_ANTES) + ": " + d.getMessage(null) + "\n");
+            }
             throw new RuntimeException("Erro na compilação!");
         }
+        cache.put(chave, resultado.classes());
+        return resultado.classes();
+    }
+
+    // Roda o main num processo separado. Só se o processo nem pôde ser criado
+    // o programa roda aqui mesmo (ou, isolado, não roda); qualquer outra falha do
+    // processo é erro da execução
+    public void executar(Map<String, byte[]> classes) throws Exception {
+        WorkerPool.Resultado resultado;
+        try (Telemetria.Medida medida = Telemetria.get().iniciar(Telemetria.Fase.EXECUCAO)) {
+            try {
+                resultado = WorkerPool.get().executar(classes, NOME_CLASSE, printStream);
+            } catch (WorkerPool.SemProcesso e) {
+                if (isolado) throw new RuntimeException(e.getMessage(), e);
+                printStream.print(e.getMessage() + "\nExecutando sem processo separado (sem tempo limite).\n\n");
+                executarAqui(classes);
+                medida.fim(0, 0);
+                return;
+            }
+            medida.fim(0, 0);
+        }
+        mostrarErro(resultado);
+    }
+
+    private void mostrarErro(WorkerPool.Resultado resultado) {
+        printStream.flush();
+        if (!resultado.ok()) {
+            printStream.print("\n" + resultado.erro());
+        }
+    }
 
-        // Carrega a classe compilada
-        URLClassLoader classLoader = URLClassLoader.newInstance(new URL[] { new File(".").toURI().toURL() });
-        Class<?> cls = Class.forName("MinhaClasse", true, classLoader);
+    // Carrega as classes num class loader próprio e invoca o main
+    private void executarAqui(Map<String, byte[]> classes) throws Exception {
+        ClassLoader classLoader = new ByteClassLoader(classes, Compilador.class.getClassLoader());
+        Class<?> cls = Class.forName(NOME_CLASSE, true, classLoader);
 
         // Invoca o main
         Method main = cls.getDeclaredMethod("main", String[].class);
         String[] args = new String[]{};
-        main.invoke(null, (Object) args);
+        synchronized (SAIDA_GLOBAL) {
+            PrintStream originalOut = System.out;
+            System.setOut(printStream);
+            try {
+                main.invoke(null, (Object) args);
+            } finally {
+                System.setOut(originalOut);
+            }
+        }
     }
 }
-
@@ -0,0 +1,334 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Compilação em lote, sem interface: análise léxica, sintática, semântica e
+ * geração das classes de cada arquivo, vários arquivos ao mesmo tempo num
+ * {@link ForkJoinPool} (uma thread livre rouba arquivos da fila das outras,
+ * então um arquivo grande não segura os pequenos que vêm depois).
+ *
+ * Os programas não são executados. Um arquivo passa se a janela aceitaria
+ * executá-lo: sem erro de sintaxe (todos são listados, como no
+ * {@link Parser#parseRecovering()}), sem erro de tipo ou de nome e com as
+ * classes geradas (direto da AST ou pelo javac).
+ *
+ * Uso: {@code java util.CompiladorLote [-t threads] [--metricas arquivo.json] caminho...}, onde cada
+ * caminho é um arquivo, uma pasta (todos os arquivos dentro dela) ou um glob
+ * como {@code entregas/*.txt}; nas pastas e nos globs ficam de fora os
+ * arquivos e as pastas ocultos (que começam com ponto). Cada arquivo sai numa linha, na
+ * ordem dos caminhos, e no fim vem o resumo com a vazão e o uso do
+ * {@link ClassCache}. O código de saída é 0 se todos passaram, 1 se algum
+ * teve erro e 2 se os argumentos estão errados.
+ * Com {@code --metricas} a {@link Telemetria} do lote vai para o arquivo.
+ *
+ * @author david
+ */
+public class CompiladorLote {
+
+    // fases na ordem em que rodam; os tempos de cada arquivo seguem esta ordem
+    private static final String[] FASES = {"léxica", "sintática", "semântica", "geração"};
+
+    /**
+     * O que aconteceu com um arquivo. {@code nanos} tem o tempo de cada fase
+     * (as que não rodaram ficam com zero) e {@code bytes} o tamanho das
+     * classes geradas.
+     */
+    public record Resultado(Path arquivo, boolean ok, int tokens, long bytes, List<String> erros, long[] nanos) {}
+
+    public static void main(String[] args) {
+        System.exit(executar(args, System.out));
+    }
+
+    // roda o lote e devolve o código de saída
+    public static int executar(String[] args, PrintStream saida) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path metricas = null;
+        List<String> caminhos = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-t") || args[i].equals("--threads")) {
+                if (i + 1 == args.length) return uso(saida);
+                try {
+                    threads = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    return uso(saida);
+                }
+                if (threads < 1) return uso(saida);
+            } else if (args[i].equals("--metricas")) {
+                if (i + 1 == args.length) return uso(saida);
+                metricas = Path.of(args[++i]);
+            } else {
+                caminhos.add(args[i]);
+            }
+        }
+        if (caminhos.isEmpty()) return uso(saida);
+
+        List<Path> arquivos;
+        try {
+            arquivos = arquivos(caminhos);
+        } catch (IOException | RuntimeException e) {
+            saida.println("Erro ao listar os arquivos: " + e.getMessage());
+            return 2;
+        }
+        if (arquivos.isEmpty()) {
+            saida.println("Nenhum arquivo encontrado.");
+            return 2;
+        }
+
+        List<Resultado> resultados = new ArrayList<>(arquivos.size());
+        ClassCache.Estatisticas cache = ClassCache.padrao().estatisticas();
+        long inicio = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<ForkJoinTask<Resultado>> tarefas = new ArrayList<>(arquivos.size());
+            for (Path arquivo : arquivos) {
+                tarefas.add(pool.submit(() -> compilar(arquivo)));
+            }
+            // na ordem dos arquivos, cada um assim que fica pronto
+            for (ForkJoinTask<Resultado> tarefa : tarefas) {
+                Resultado resultado = tarefa.join();
+                resultados.add(resultado);
+                mostrar(resultado, saida);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        long nanos = System.nanoTime() - inicio;
+
+        resumo(resultados, nanos, threads, ClassCache.padrao().estatisticas().desde(cache), saida);
+        if (metricas != null) {
+            try {
+                Files.writeString(metricas, Telemetria.get().json(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                saida.println("Não foi possível salvar as métricas: " + e.getMessage());
+            }
+        }
+        saida.flush();
+        for (Resultado resultado : resultados) {
+            if (!resultado.ok()) return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Passa um arquivo por todas as fases, parando na primeira que achar
+     * erro. Pode ser chamado de várias threads ao mesmo tempo.
+     */
+    public static Resultado compilar(Path arquivo) {
+        String codigo;
+        try {
+            codigo = Files.readString(arquivo, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return new Resultado(arquivo, false, 0, 0, List.of("não foi possível ler o arquivo: " + e), new long[FASES.length]);
+        }
+        return compilar(arquivo, codigo);
+    }
+
+    // o mesmo, com o código já lido (arquivo só dá nome ao resultado)
+    public static Resultado compilar(Path arquivo, String codigo) {
+        return compilarComClasses(arquivo, codigo).resultado();
+    }
+
+    // resultado e classes geradas (null se o arquivo teve erro), para quem ainda vai executá-las
+    record Compilado(Resultado resultado, Map<String, byte[]> classes) {}
+
+    static Compilado compilarComClasses(Path arquivo, String codigo) {
+        long[] nanos = new long[FASES.length];
+        List<String> erros = new ArrayList<>();
+
+        long t = System.nanoTime();
+        TokenBuffer tokens = new analisadorLexico().tokenizeBuffer(codigo);
+        nanos[0] = System.nanoTime() - t;
+
+        t = System.nanoTime();
+        Ast.Programa programa = null;
+        List<Parser.Diagnostico> diagnosticos;
+        if (ParserTabela.profundo(tokens)) {
+            // aninhado demais para o Parser recursivo: sem recuperação, só o primeiro erro
+            ParserTabela tabela = new ParserTabela(tokens);
+            try {
+                programa = tabela.parse();
+                diagnosticos = List.of();
+            } catch (RuntimeException e) {
+                diagnosticos = List.of(tabela.erro());
+            }
+        } else {
+            Parser parser = new Parser(tokens);
+            programa = parser.parseRecovering();
+            diagnosticos = parser.diagnosticos();
+        }
+        nanos[1] = System.nanoTime() - t;
+        for (Parser.Diagnostico d : diagnosticos) {
+            erros.add("linha " + d.linha() + ": " + d.mensagem());
+        }
+        if (!erros.isEmpty()) {
+            return new Compilado(new Resultado(arquivo, false, tokens.size(), 0, erros, nanos), null);
+        }
+
+        // como no Compilador: com caracteres que o léxico pulou (um 'a', por exemplo) os tokens
+        // não são o programa inteiro e quem decide é o javac
+        if (tokens.cobreTudo()) {
+            t = System.nanoTime();
+            for (AnalisadorSemantico.Erro erro : AnalisadorSemantico.analisar(tokens, programa)) {
+                erros.add("linha " + Interpretador.linha(tokens, erro.token()) + ": " + erro.mensagem());
+            }
+            nanos[2] = System.nanoTime() - t;
+        }
+        if (!erros.isEmpty()) {
+            return new Compilado(new Resultado(arquivo, false, tokens.size(), 0, erros, nanos), null);
+        }
+
+        // o Compilador escreve os erros do javac no stream; aqui eles viram a lista do arquivo
+        t = System.nanoTime();
+        ByteArrayOutputStream mensagens = new ByteArrayOutputStream();
+        long bytes = 0;
+        Map<String, byte[]> classes = null;
+        try {
+            classes = new Compilador(new PrintStream(mensagens, true, StandardCharsets.UTF_8))
+                    .gerarClasses(codigo, tokens, programa);
+            for (byte[] classe : classes.values()) {
+                bytes += classe.length;
+            }
+        } catch (RuntimeException e) {
+            for (String linha : mensagens.toString(StandardCharsets.UTF_8).split("\n")) {
+                if (!linha.isBlank() && !linha.equals("Erro!")) erros.add(linha);
+            }
+            if (erros.isEmpty()) erros.add(String.valueOf(e.getMessage()));
+            classes = null;
+        }
+        nanos[3] = System.nanoTime() - t;
+        return new Compilado(new Resultado(arquivo, erros.isEmpty(), tokens.size(), bytes, erros, nanos), classes);
+    }
+
+    // arquivos dos caminhos, sem repetir, cada pasta e cada glob em ordem alfabética
+    static List<Path> arquivos(List<String> caminhos) throws IOException {
+        Set<Path> arquivos = new LinkedHashSet<>();
+        for (String caminho : caminhos) {
+            int glob = primeiroGlob(caminho);
+            if (glob >= 0) {
+                // anda a partir da parte do caminho que vem antes do primeiro curinga
+                int barra = Math.max(caminho.lastIndexOf('/', glob), caminho.lastIndexOf(java.io.File.separatorChar, glob));
+                Path base = Path.of(barra >= 0 ? caminho.substring(0, barra + 1) : ".");
+                PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + caminho);
+                for (Path p : visiveis(base)) {
+                    if (matcher.matches(barra >= 0 ? p : base.relativize(p))) arquivos.add(p);
+                }
+            } else {
+                Path path = Path.of(caminho);
+                if (Files.isDirectory(path)) {
+                    arquivos.addAll(visiveis(path));
+                } else if (Files.isRegularFile(path)) {
+                    arquivos.add(path);
+                } else {
+                    throw new IOException("não existe: " + caminho);
+                }
+            }
+        }
+        return new ArrayList<>(arquivos);
+    }
+
+    // arquivos abaixo da raiz em ordem alfabética, sem os ocultos e sem entrar em
+    // pastas ocultas (.git, .idea...)
+    private static List<Path> visiveis(Path raiz) throws IOException {
+        List<Path> arquivos = new ArrayList<>();
+        Files.walkFileTree(raiz, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path pasta, BasicFileAttributes atributos) {
+                return !pasta.equals(raiz) && oculto(pasta) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path arquivo, BasicFileAttributes atributos) {
+                if (!oculto(arquivo) && Files.isRegularFile(arquivo)) arquivos.add(arquivo);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        arquivos.sort(null);
+        return arquivos;
+    }
+
+    private static boolean oculto(Path path) {
+        return path.getFileName().toString().startsWith(".");
+    }
+
+    private static int primeiroGlob(String caminho) {
+        for (int i = 0; i < caminho.length(); i++) {
+            if ("*?[{".indexOf(caminho.charAt(i)) >= 0) return i;
+        }
+        return -1;
+    }
+
+    static void mostrar(Resultado resultado, PrintStream saida) {
+        long total = 0;
+        for (long n : resultado.nanos()) total += n;
+        if (resultado.ok()) {
+            saida.printf("ok    %s (%d tokens, %d bytes, %.2f ms)%n",
+                    resultado.arquivo(), resultado.tokens(), resultado.bytes(), total / 1e6);
+        } else {
+            saida.printf("erro  %s (%d tokens, %.2f ms)%n", resultado.arquivo(), resultado.tokens(), total / 1e6);
+            for (String erro : resultado.erros()) {
+                saida.println("      " + erro);
+            }
+        }
+    }
+
+    private static void resumo(List<Resultado> resultados, long nanos, int threads, ClassCache.Estatisticas cache,
+            PrintStream saida) {
+        int ok = 0;
+        long tokens = 0;
+        long[] fases = new long[FASES.length];
+        for (Resultado resultado : resultados) {
+            if (resultado.ok()) ok++;
+            tokens += resultado.tokens();
+            for (int i = 0; i < fases.length; i++) {
+                fases[i] += resultado.nanos()[i];
+            }
+        }
+        long somaFases = 0;
+        for (long n : fases) somaFases += n;
+
+        double segundos = nanos / 1e9;
+        saida.println();
+        saida.printf("%d arquivo(s): %d ok, %d com erro, em %.3f s com %d thread(s)%n",
+                resultados.size(), ok, resultados.size() - ok, segundos, threads);
+        saida.printf("%.1f arquivos/s, %.0f tokens/s (%d tokens)%n",
+                resultados.size() / segundos, tokens / segundos, tokens);
+        // soma dos tempos de todas as threads; maior que o tempo total quando há paralelismo
+        saida.print("tempo por fase:");
+        for (int i = 0; i < fases.length; i++) {
+            saida.printf(" %s %.1f ms (%.0f%%)%s", FASES[i], fases[i] / 1e6,
+                    somaFases > 0 ? 100.0 * fases[i] / somaFases : 0.0, i + 1 < fases.length ? "," : "");
+        }
+        saida.println();
+        // só os arquivos que vão para o javac passam pelo cache
+        saida.printf("cache de classes: %d acerto(s) (%d do disco), %d falta(s), %d despejo(s)%n",
+                cache.acertos(), cache.acertosDisco(), cache.faltas(), cache.despejos());
+    }
+
+    private static int uso(PrintStream saida) {
+        saida.println("Uso: java util.CompiladorLote [-t threads] [--metricas arquivo.json] caminho...");
+        saida.println("  caminho: arquivo, pasta (todos os arquivos dentro dela) ou glob (entregas/**/*.txt)");
+        return 2;
+    }
+}
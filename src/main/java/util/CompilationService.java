@@ -0,0 +1,122 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * Serviço de compilação que vive enquanto o programa estiver aberto.
+ *
+ * O javac frio é lento: a primeira compilação carrega centenas de classes,
+ * abre o jrt:/ e lista os pacotes da plataforma, e roda tudo interpretado.
+ * Aqui o compilador é obtido uma vez só, os gerenciadores de arquivos
+ * padrão (que guardam em cache a busca pelas classes da plataforma) são
+ * reaproveitados entre compilações, e {@link #warmUp()} compila várias vezes
+ * um programa de exemplo numa thread de fundo para o JIT aquecer o javac
+ * antes do primeiro Executar.
+ *
+ * Cada compilação pega um gerenciador livre do pool (ou cria um), então
+ * compilações simultâneas não disputam o mesmo objeto.
+ *
+ * @author david
+ */
+public class CompilationService {
+
+    private static final CompilationService INSTANCE = new CompilationService();
+
+    // sem processadores de anotação: o javac nem procura por eles
+    private static final List<String> OPCOES = List.of("-proc:none", "-implicit:none");
+
+    private static final String PROGRAMA_AQUECIMENTO =
+        "public class Aquecimento {\n" +
+        "    public static void main(String[] args) {\n" +
+        "        int a = 1; float b = 2; boolean c = a < b; String d = \"x\" + a;\n" +
+        "        if (c) { System.out.println(d); } else { a = a * 2 - 1 / 1; }\n" +
+        "        while (a < 10) { a = a + 1; }\n" +
+        "    }\n" +
+        "}";
+
+    private final JavaCompiler compiler;
+    private final ConcurrentLinkedQueue<StandardJavaFileManager> livres = new ConcurrentLinkedQueue<>();
+    private volatile boolean aquecido;
+
+    public record Result(boolean ok, Map<String, byte[]> classes, List<Diagnostic<? extends JavaFileObject>> diagnostics) {}
+
+    private CompilationService() {
+        this.compiler = ToolProvider.getSystemJavaCompiler();
+    }
+
+    public static CompilationService get() {
+        return INSTANCE;
+    }
+
+    public boolean isWarm() {
+        return aquecido;
+    }
+
+    // aquece o compilador numa thread de fundo (pode ser chamado mais de uma vez)
+    public void warmUp() {
+        if (compiler == null || aquecido) return;
+        Thread thread = new Thread(() -> {
+            for (int i = 0; i < 200; i++) {
+                compilar("Aquecimento", PROGRAMA_AQUECIMENTO, false);
+            }
+            aquecido = true;
+        }, "aquecimento-javac");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    public Result compile(String className, String source) {
+        return compilar(className, source, true);
+    }
+
+    // o aquecimento não entra na Telemetria: ele roda em paralelo com os primeiros pedidos
+    // e as compilações frias dele estragariam os percentis do javac
+    private Result compilar(String className, String source, boolean medir) {
+        if (compiler == null) {
+            throw new IllegalStateException("JVM não tem compilador. Rode no JDK e não no JRE!");
+        }
+
+        Telemetria.Medida medida = medir ? Telemetria.get().iniciar(Telemetria.Fase.JAVAC) : null;
+        StandardJavaFileManager padrao = livres.poll();
+        try {
+            if (padrao == null) {
+                padrao = compiler.getStandardFileManager(null, null, null);
+            }
+
+            DiagnosticCollector<JavaFileObject> diagnosticos = new DiagnosticCollector<>();
+            InMemoryFileManager fileManager = new InMemoryFileManager(padrao);
+            JavaFileObject fonte = InMemoryFileManager.source(className, source);
+            boolean ok = compiler.getTask(null, fileManager, diagnosticos, OPCOES, null, List.of(fonte)).call();
+
+            try {
+                padrao.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (medida != null) medida.fim(0, 0);
+            return new Result(ok, fileManager.classes(), diagnosticos.getDiagnostics());
+        } finally {
+            // o gerenciador em memória é descartável; o padrão volta para o pool
+            // mesmo se o javac lançou, e a medida conta a compilação que falhou
+            if (padrao != null) {
+                livres.add(padrao);
+            }
+            if (medida != null) medida.close();
+        }
+    }
+}
@@ -0,0 +1,384 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import java.lang.classfile.ClassFile;
+import java.lang.classfile.CodeBuilder;
+import java.lang.classfile.Label;
+import java.lang.classfile.attribute.SourceFileAttribute;
+import java.lang.constant.ClassDesc;
+import java.lang.constant.ConstantDescs;
+import java.lang.constant.DirectMethodHandleDesc;
+import java.lang.constant.DynamicCallSiteDesc;
+import java.lang.constant.MethodTypeDesc;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import util.Ast.*;
+
+import static java.lang.constant.ConstantDescs.CD_Object;
+import static java.lang.constant.ConstantDescs.CD_String;
+import static java.lang.constant.ConstantDescs.CD_boolean;
+import static java.lang.constant.ConstantDescs.CD_float;
+import static java.lang.constant.ConstantDescs.CD_int;
+import static java.lang.constant.ConstantDescs.CD_void;
+
+/**
+ * Gera direto o .class do programa a partir da AST, com a API
+ * {@code java.lang.classfile}, sem passar pelo javac.
+ *
+ * A classe gerada é equivalente à que o javac faria com o código envolvido
+ * pelo {@link Compilador}: {@code public class MinhaClasse} com um
+ * {@code main}, variáveis em slots locais, concatenação de Strings por
+ * {@code invokedynamic} (StringConcatFactory) e números de linha iguais
+ * aos do arquivo envolvido, então a pilha de uma exceção aponta para a
+ * mesma linha.
+ *
+ * Só trata o subconjunto que o {@link Interpretador} aceita (que é o que
+ * dá para garantir que o javac também aceitaria); fora dele devolve null.
+ * A árvore usada é a que o Interpretador deixou, já passada pelo
+ * {@link Otimizador}.
+ *
+ * @author david
+ */
+public class GeradorBytecode {
+
+    private static final ClassDesc CD_System = ClassDesc.of("java.lang.System");
+    private static final ClassDesc CD_PrintStream = ClassDesc.of("java.io.PrintStream");
+
+    private static final DirectMethodHandleDesc CONCATENAR = ConstantDescs.ofCallsiteBootstrap(
+            ClassDesc.of("java.lang.invoke.StringConcatFactory"), "makeConcatWithConstants", ConstantDescs.CD_CallSite,
+            CD_String, ConstantDescs.CD_Object.arrayType());
+
+    // a JVM limita a quantidade de argumentos de um invokedynamic
+    private static final int MAX_PEDACOS = 100;
+
+    private enum Tipo { INT, FLOAT, BOOLEAN, STRING }
+
+    private record Var(Tipo tipo, int slot) {}
+
+    private final TokenBuffer tokens;
+    private final int[] inicioLinhas;
+    private final int linhasAntes;
+    private final Deque<Map<String, Var>> escopos = new ArrayDeque<>();
+    private int proximoSlot = 1; // slot 0 é o args
+
+    private GeradorBytecode(TokenBuffer tokens, int linhasAntes) {
+        this.tokens = tokens;
+        this.inicioLinhas = inicioLinhas(tokens.source());
+        this.linhasAntes = linhasAntes;
+    }
+
+    /**
+     * Classes do programa, no mesmo formato de {@link Compilador#gerarClasses},
+     * ou null se o programa precisar do javac. {@code linhasAntes} é quantas
+     * linhas o código envolvido tem antes do que o usuário digitou.
+     */
+    public static Map<String, byte[]> gerar(String nomeClasse, TokenBuffer tokens, int linhasAntes) {
+        Interpretador interpretador = Interpretador.preparar(tokens);
+        if (interpretador == null) return null;
+        return gerar(nomeClasse, interpretador.arvore(), tokens, linhasAntes);
+    }
+
+    // programa precisa ser um que o Interpretador aceitou para estes tokens
+    static Map<String, byte[]> gerar(String nomeClasse, Programa programa, TokenBuffer tokens, int linhasAntes) {
+        try (Telemetria.Medida medida = Telemetria.get().iniciar(Telemetria.Fase.GERACAO)) {
+            GeradorBytecode gerador = new GeradorBytecode(tokens, linhasAntes);
+            byte[] bytes = ClassFile.of().build(ClassDesc.of(nomeClasse), classe -> {
+                classe.withFlags(ClassFile.ACC_PUBLIC | ClassFile.ACC_SUPER);
+                classe.withSuperclass(CD_Object);
+                classe.with(SourceFileAttribute.of(nomeClasse + ".java"));
+
+                classe.withMethodBody(ConstantDescs.INIT_NAME, ConstantDescs.MTD_void, ClassFile.ACC_PUBLIC, code -> {
+                    code.aload(0);
+                    code.invokespecial(CD_Object, ConstantDescs.INIT_NAME, ConstantDescs.MTD_void);
+                    code.return_();
+                });
+
+                classe.withMethodBody("main", MethodTypeDesc.of(CD_void, CD_String.arrayType()),
+                        ClassFile.ACC_PUBLIC | ClassFile.ACC_STATIC, code -> {
+                    gerador.bloco(code, programa.comandos());
+                    code.return_();
+                });
+            });
+            medida.fim(tokens.size(), 0);
+            return Map.of(nomeClasse, bytes);
+        }
+    }
+
+    private void bloco(CodeBuilder code, List<Comando> comandos) {
+        // como o javac, os slots das variáveis do bloco voltam a ficar livres no fim dele
+        int slots = proximoSlot;
+        escopos.push(new HashMap<>());
+        for (Comando comando : comandos) {
+            code.lineNumber(linha(comando.token()));
+            comando(code, comando);
+        }
+        escopos.pop();
+        proximoSlot = slots;
+    }
+
+    private void comando(CodeBuilder code, Comando comando) {
+        switch (comando) {
+            case Declaracao d -> {
+                Tipo tipo = switch (d.tipo()) {
+                    case "int" -> Tipo.INT;
+                    case "float" -> Tipo.FLOAT;
+                    case "boolean" -> Tipo.BOOLEAN;
+                    default -> Tipo.STRING;
+                };
+                // o inicializador não enxerga a variável que está sendo declarada
+                Var var = new Var(tipo, proximoSlot++);
+                if (d.valor() != null) {
+                    guardar(code, var, d.valor());
+                }
+                escopos.peek().put(d.nome(), var);
+            }
+            case Atribuicao a -> guardar(code, procurar(a.nome()), a.valor());
+            case Impressao i -> {
+                code.getstatic(CD_System, "out", CD_PrintStream);
+                Tipo tipo = valor(code, i.valor());
+                code.invokevirtual(CD_PrintStream, "println", MethodTypeDesc.of(CD_void, descritor(tipo)));
+            }
+            case Se s -> {
+                Label senao = code.newLabel();
+                condicao(code, s.condicao(), senao);
+                bloco(code, s.entao());
+                if (s.senao() == null) {
+                    code.labelBinding(senao);
+                } else {
+                    Label fim = code.newLabel();
+                    code.goto_(fim);
+                    code.labelBinding(senao);
+                    bloco(code, s.senao());
+                    code.labelBinding(fim);
+                }
+            }
+            case Enquanto e -> {
+                Label inicio = code.newBoundLabel();
+                Label fim = code.newLabel();
+                condicao(code, e.condicao(), fim);
+                bloco(code, e.corpo());
+                code.goto_(inicio);
+                code.labelBinding(fim);
+            }
+        }
+    }
+
+    private void guardar(CodeBuilder code, Var var, Expressao expressao) {
+        Tipo tipo = valor(code, expressao);
+        if (var.tipo() == Tipo.FLOAT && tipo == Tipo.INT) {
+            code.i2f();
+        }
+        switch (var.tipo()) {
+            case INT, BOOLEAN -> code.istore(var.slot());
+            case FLOAT -> code.fstore(var.slot());
+            case STRING -> code.astore(var.slot());
+        }
+    }
+
+    private Var procurar(String nome) {
+        for (Map<String, Var> escopo : escopos) {
+            Var var = escopo.get(nome);
+            if (var != null) return var;
+        }
+        throw new IllegalStateException("Variável não declarada: " + nome);
+    }
+
+    // empilha o valor da expressão e devolve o tipo dele
+    private Tipo valor(CodeBuilder code, Expressao expressao) {
+        switch (expressao) {
+            case Numero n -> {
+                code.loadConstant(Integer.parseInt(n.valor()));
+                return Tipo.INT;
+            }
+            case Real r -> {
+                code.loadConstant(r.valor());
+                return Tipo.FLOAT;
+            }
+            case Texto t -> {
+                code.loadConstant(t.valor());
+                return Tipo.STRING;
+            }
+            case Booleano b -> {
+                if (b.valor()) code.iconst_1(); else code.iconst_0();
+                return Tipo.BOOLEAN;
+            }
+            case Variavel v -> {
+                Var var = procurar(v.nome());
+                switch (var.tipo()) {
+                    case INT, BOOLEAN -> code.iload(var.slot());
+                    case FLOAT -> code.fload(var.slot());
+                    case STRING -> code.aload(var.slot());
+                }
+                return var.tipo();
+            }
+            case Binaria b -> {
+                return binaria(code, b);
+            }
+        }
+    }
+
+    private Tipo binaria(CodeBuilder code, Binaria b) {
+        Operador op = b.operador();
+        if (op.relacional()) {
+            // true/false a partir de um salto, como o javac faz fora de um if
+            Label falso = code.newLabel();
+            Label fim = code.newLabel();
+            condicao(code, b, falso);
+            code.iconst_1();
+            code.goto_(fim);
+            code.labelBinding(falso);
+            code.iconst_0();
+            code.labelBinding(fim);
+            return Tipo.BOOLEAN;
+        }
+
+        if (op == Operador.SOMA && (tipo(b.esquerda()) == Tipo.STRING || tipo(b.direita()) == Tipo.STRING)) {
+            concatenar(code, b);
+            return Tipo.STRING;
+        }
+
+        Tipo esq = tipo(b.esquerda());
+        Tipo dir = tipo(b.direita());
+        boolean real = esq == Tipo.FLOAT || dir == Tipo.FLOAT;
+        valor(code, b.esquerda());
+        if (real && esq == Tipo.INT) code.i2f();
+        valor(code, b.direita());
+        if (real && dir == Tipo.INT) code.i2f();
+
+        switch (op) {
+            case SOMA -> { if (real) code.fadd(); else code.iadd(); }
+            case SUBTRACAO -> { if (real) code.fsub(); else code.isub(); }
+            case MULTIPLICACAO -> { if (real) code.fmul(); else code.imul(); }
+            case DIVISAO -> { if (real) code.fdiv(); else code.idiv(); }
+            default -> throw new IllegalStateException(op.simbolo);
+        }
+        return real ? Tipo.FLOAT : Tipo.INT;
+    }
+
+    // salta para "falso" quando a condição não vale; senão segue em frente
+    private void condicao(CodeBuilder code, Expressao expressao, Label falso) {
+        if (!(expressao instanceof Binaria b) || !b.operador().relacional()) {
+            valor(code, expressao);
+            code.ifeq(falso);
+            return;
+        }
+
+        Tipo esq = tipo(b.esquerda());
+        Tipo dir = tipo(b.direita());
+        boolean real = esq == Tipo.FLOAT || dir == Tipo.FLOAT;
+        valor(code, b.esquerda());
+        if (real && esq == Tipo.INT) code.i2f();
+        valor(code, b.direita());
+        if (real && dir == Tipo.INT) code.i2f();
+
+        if (!real) {
+            switch (b.operador()) {
+                case IGUAL -> code.if_icmpne(falso);
+                case DIFERENTE -> code.if_icmpeq(falso);
+                case MENOR -> code.if_icmpge(falso);
+                case MAIOR -> code.if_icmple(falso);
+                case MENOR_IGUAL -> code.if_icmpgt(falso);
+                case MAIOR_IGUAL -> code.if_icmplt(falso);
+                default -> throw new IllegalStateException(b.operador().simbolo);
+            }
+            return;
+        }
+
+        // fcmpg/fcmpl escolhidos para que NaN sempre torne a comparação falsa (exceto !=)
+        switch (b.operador()) {
+            case IGUAL -> { code.fcmpl(); code.ifne(falso); }
+            case DIFERENTE -> { code.fcmpl(); code.ifeq(falso); }
+            case MENOR -> { code.fcmpg(); code.ifge(falso); }
+            case MAIOR -> { code.fcmpl(); code.ifle(falso); }
+            case MENOR_IGUAL -> { code.fcmpg(); code.ifgt(falso); }
+            case MAIOR_IGUAL -> { code.fcmpl(); code.iflt(falso); }
+            default -> throw new IllegalStateException(b.operador().simbolo);
+        }
+    }
+
+    // a + b + c + ... vira um único invokedynamic, como no javac
+    private void concatenar(CodeBuilder code, Binaria b) {
+        List<Expressao> pedacos = new ArrayList<>();
+        juntarPedacos(b, pedacos);
+
+        List<ClassDesc> tipos = new ArrayList<>();
+        for (Expressao pedaco : pedacos) {
+            if (tipos.size() == MAX_PEDACOS) {
+                invocarConcatenacao(code, tipos);
+                tipos.clear();
+                tipos.add(CD_String);
+            }
+            tipos.add(descritor(valor(code, pedaco)));
+        }
+        invocarConcatenacao(code, tipos);
+    }
+
+    private void juntarPedacos(Expressao expressao, List<Expressao> pedacos) {
+        if (expressao instanceof Binaria b && b.operador() == Operador.SOMA && tipo(b) == Tipo.STRING) {
+            juntarPedacos(b.esquerda(), pedacos);
+            pedacos.add(b.direita());
+        } else {
+            pedacos.add(expressao);
+        }
+    }
+
+    private void invocarConcatenacao(CodeBuilder code, List<ClassDesc> tipos) {
+        MethodTypeDesc tipo = MethodTypeDesc.of(CD_String, tipos.toArray(new ClassDesc[0]));
+        code.invokedynamic(DynamicCallSiteDesc.of(CONCATENAR, "makeConcatWithConstants", tipo, "\u0001".repeat(tipos.size())));
+    }
+
+    private Tipo tipo(Expressao expressao) {
+        return switch (expressao) {
+            case Numero n -> Tipo.INT;
+            case Real r -> Tipo.FLOAT;
+            case Texto t -> Tipo.STRING;
+            case Booleano b -> Tipo.BOOLEAN;
+            case Variavel v -> procurar(v.nome()).tipo();
+            case Binaria b -> {
+                if (b.operador().relacional()) yield Tipo.BOOLEAN;
+                Tipo esq = tipo(b.esquerda());
+                Tipo dir = tipo(b.direita());
+                if (b.operador() == Operador.SOMA && (esq == Tipo.STRING || dir == Tipo.STRING)) yield Tipo.STRING;
+                yield esq == Tipo.FLOAT || dir == Tipo.FLOAT ? Tipo.FLOAT : Tipo.INT;
+            }
+        };
+    }
+
+    private static ClassDesc descritor(Tipo tipo) {
+        return switch (tipo) {
+            case INT -> CD_int;
+            case FLOAT -> CD_float;
+            case BOOLEAN -> CD_boolean;
+            case STRING -> CD_String;
+        };
+    }
+
+    // linha no arquivo envolvido, a mesma que o javac colocaria
+    private int linha(int token) {
+        int i = Arrays.binarySearch(inicioLinhas, tokens.start(token));
+        int linha = i >= 0 ? i + 1 : -i - 1;
+        return linha + linhasAntes;
+    }
+
+    private static int[] inicioLinhas(CharSequence fonte) {
+        int[] inicios = new int[16];
+        int n = 0;
+        inicios[n++] = 0;
+        for (int i = 0; i < fonte.length(); i++) {
+            char c = fonte.charAt(i);
+            if (c == '\n' || (c == '\r' && (i + 1 == fonte.length() || fonte.charAt(i + 1) != '\n'))) {
+                if (n == inicios.length) inicios = Arrays.copyOf(inicios, n * 2);
+                inicios[n++] = i + 1;
+            }
+        }
+        return Arrays.copyOf(inicios, n);
+    }
+}
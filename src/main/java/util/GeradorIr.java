@@ -0,0 +1,192 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import util.Ast.*;
+import util.Ir.*;
+
+/**
+ * Traduz a AST para a {@link Ir}: um {@code if} vira um desvio para dois
+ * blocos que se juntam depois, um {@code while} vira um bloco de teste no
+ * começo e um salto de volta no fim do corpo, e cada expressão vira uma
+ * sequência de instruções de três endereços.
+ *
+ * Como o {@link GeradorBytecode}, só recebe árvores que o
+ * {@link Interpretador} aceitou (tipos certos, variáveis declaradas e com
+ * valor antes de serem lidas).
+ *
+ * @author david
+ */
+public class GeradorIr {
+
+    private final Funcao funcao = new Funcao();
+    private final Deque<Map<String, Registrador>> escopos = new ArrayDeque<>();
+    private Bloco atual;
+
+    private GeradorIr() {
+    }
+
+    public static Funcao gerar(Programa programa) {
+        GeradorIr gerador = new GeradorIr();
+        gerador.atual = gerador.funcao.novoBloco();
+        gerador.bloco(programa.comandos());
+        gerador.funcao.ligar();
+        return gerador.funcao;
+    }
+
+    private void bloco(List<Comando> comandos) {
+        escopos.push(new HashMap<>());
+        for (Comando comando : comandos) {
+            comando(comando);
+        }
+        escopos.pop();
+    }
+
+    private void comando(Comando comando) {
+        switch (comando) {
+            case Declaracao d -> {
+                Tipo tipo = switch (d.tipo()) {
+                    case "int" -> Tipo.INT;
+                    case "float" -> Tipo.FLOAT;
+                    case "boolean" -> Tipo.BOOLEAN;
+                    default -> Tipo.STRING;
+                };
+                Registrador var = funcao.novoRegistrador(tipo, d.nome());
+                // o inicializador é traduzido antes: ele não enxerga a variável nova
+                if (d.valor() != null) {
+                    guardar(var, d.valor());
+                }
+                escopos.peek().put(d.nome(), var);
+            }
+            case Atribuicao a -> guardar(procurar(a.nome()), a.valor());
+            case Impressao i -> emitir(Op.IMPRIME, null, valor(i.valor()), null, i.token());
+            case Se s -> {
+                Bloco entao = funcao.novoBloco();
+                Bloco senao = s.senao() != null ? funcao.novoBloco() : null;
+                Bloco depois = funcao.novoBloco();
+                atual.desviar(valor(s.condicao()), entao, senao != null ? senao : depois);
+
+                atual = entao;
+                bloco(s.entao());
+                atual.saltar(depois);
+                if (senao != null) {
+                    atual = senao;
+                    bloco(s.senao());
+                    atual.saltar(depois);
+                }
+                atual = depois;
+            }
+            case Enquanto e -> {
+                Bloco teste = funcao.novoBloco();
+                Bloco corpo = funcao.novoBloco();
+                Bloco depois = funcao.novoBloco();
+                atual.saltar(teste);
+
+                atual = teste;
+                atual.desviar(valor(e.condicao()), corpo, depois);
+                atual = corpo;
+                bloco(e.corpo());
+                atual.saltar(teste);
+                atual = depois;
+            }
+        }
+    }
+
+    // x = a op b grava direto em x: a operação de fora é sempre a última instrução
+    private void guardar(Registrador var, Expressao expressao) {
+        if (expressao instanceof Binaria b && !b.operador().relacional() && tipo(b) == var.tipo()) {
+            binaria(b, var);
+            return;
+        }
+        Valor valor = converter(valor(expressao), var.tipo(), expressao.token());
+        emitir(Op.COPIA, var, valor, null, expressao.token());
+    }
+
+    private Registrador procurar(String nome) {
+        for (Map<String, Registrador> escopo : escopos) {
+            Registrador var = escopo.get(nome);
+            if (var != null) return var;
+        }
+        throw new IllegalStateException("Variável não declarada: " + nome);
+    }
+
+    private Valor valor(Expressao expressao) {
+        return switch (expressao) {
+            case Numero n -> new Constante(Integer.parseInt(n.valor()), Tipo.INT);
+            case Real r -> new Constante(r.valor(), Tipo.FLOAT);
+            case Texto t -> new Constante(t.valor(), Tipo.STRING);
+            case Booleano b -> new Constante(b.valor(), Tipo.BOOLEAN);
+            case Variavel v -> procurar(v.nome());
+            case Binaria b -> binaria(b, null);
+        };
+    }
+
+    // destino == null: grava num temporário novo
+    private Registrador binaria(Binaria b, Registrador destino) {
+        Tipo esq = tipo(b.esquerda());
+        Tipo dir = tipo(b.direita());
+        Op op = switch (b.operador()) {
+            case SOMA -> esq == Tipo.STRING || dir == Tipo.STRING ? Op.CONCATENA : Op.SOMA;
+            case SUBTRACAO -> Op.SUBTRACAO;
+            case MULTIPLICACAO -> Op.MULTIPLICACAO;
+            case DIVISAO -> Op.DIVISAO;
+            case IGUAL -> Op.IGUAL;
+            case DIFERENTE -> Op.DIFERENTE;
+            case MENOR -> Op.MENOR;
+            case MAIOR -> Op.MAIOR;
+            case MENOR_IGUAL -> Op.MENOR_IGUAL;
+            case MAIOR_IGUAL -> Op.MAIOR_IGUAL;
+        };
+
+        Valor a = valor(b.esquerda());
+        Valor c = valor(b.direita());
+        // conta entre int e float é feita em float, como no Java
+        if (op != Op.CONCATENA && (esq == Tipo.FLOAT || dir == Tipo.FLOAT)) {
+            a = converter(a, Tipo.FLOAT, b.token());
+            c = converter(c, Tipo.FLOAT, b.token());
+        }
+
+        if (destino == null) {
+            destino = funcao.novoRegistrador(tipo(b), null);
+        }
+        emitir(op, destino, a, c, b.token());
+        return destino;
+    }
+
+    // int para float: constante já convertida, registrador com uma instrução
+    private Valor converter(Valor valor, Tipo tipo, int token) {
+        if (tipo != Tipo.FLOAT || valor.tipo() != Tipo.INT) return valor;
+        if (valor instanceof Constante c) return new Constante(((Integer) c.valor()).floatValue(), Tipo.FLOAT);
+        Registrador convertido = funcao.novoRegistrador(Tipo.FLOAT, null);
+        emitir(Op.PARA_FLOAT, convertido, valor, null, token);
+        return convertido;
+    }
+
+    private void emitir(Op op, Registrador destino, Valor a, Valor b, int token) {
+        atual.instrucoes.add(new Instrucao(op, destino, a, b, token));
+    }
+
+    private Tipo tipo(Expressao expressao) {
+        return switch (expressao) {
+            case Numero n -> Tipo.INT;
+            case Real r -> Tipo.FLOAT;
+            case Texto t -> Tipo.STRING;
+            case Booleano b -> Tipo.BOOLEAN;
+            case Variavel v -> procurar(v.nome()).tipo();
+            case Binaria b -> {
+                if (b.operador().relacional()) yield Tipo.BOOLEAN;
+                Tipo esq = tipo(b.esquerda());
+                Tipo dir = tipo(b.direita());
+                if (b.operador() == Operador.SOMA && (esq == Tipo.STRING || dir == Tipo.STRING)) yield Tipo.STRING;
+                yield esq == Tipo.FLOAT || dir == Tipo.FLOAT ? Tipo.FLOAT : Tipo.INT;
+            }
+        };
+    }
+}
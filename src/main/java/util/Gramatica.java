@@ -0,0 +1,422 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import util.analisadorLexico.TokenType;
+
+/**
+ * Uma gramática LL(1) lida de um arquivo de especificação (o formato está
+ * no começo de {@code gramatica.ll1}) e a tabela de análise gerada dela:
+ * FIRST e FOLLOW de cada não terminal e, para cada par (não terminal,
+ * terminal), a regra a usar. Se duas regras disputam a mesma célula a
+ * gramática não é LL(1) e o carregamento falha, mostrando onde.
+ *
+ * Os símbolos das regras são ints: o tipo fica nos bits altos
+ * ({@link #NAO_TERMINAL}, {@link #ACAO}, {@link #GUARDA}) e o número do
+ * símbolo nos baixos. O terminal 0 é o fim dos tokens.
+ *
+ * @author david
+ */
+public final class Gramatica {
+
+    static final int NAO_TERMINAL = 1 << 20;
+    static final int ACAO = 2 << 20;
+    static final int TIPO = 3 << 20;
+    // terminal cujo token vai para a pilha de tokens das ações
+    static final int GUARDA = 1 << 23;
+    static final int NUMERO = (1 << 20) - 1;
+
+    static final int FIM = 0;
+
+    // terminais: nome para mensagens; texto (literal) ou tipo de token (classe)
+    private final List<String> terminais = new ArrayList<>();
+    private final List<String> textos = new ArrayList<>();
+    private final List<TokenType> classes = new ArrayList<>();
+
+    private final List<String> naoTerminais = new ArrayList<>();
+    private final List<String> acoes = new ArrayList<>();
+    private final Map<String, String> erros = new HashMap<>();
+
+    // regras: lado esquerdo e símbolos do lado direito
+    private final List<Integer> cabecas = new ArrayList<>();
+    private final List<int[]> corpos = new ArrayList<>();
+
+    private int[][] tabela;
+    private String[] mensagens;
+    // literais pela primeira letra, para classificar um token sem criar String
+    private int[][] literaisPorLetra;
+    private String[] textoDe;
+    private int[] terminalDaClasse;
+    private int[][] regras;
+
+    private Gramatica() {
+        terminais.add("fim dos tokens");
+        textos.add(null);
+        classes.add(null);
+    }
+
+    private static final class Padrao {
+        static final Gramatica GRAMATICA = carregar("gramatica.ll1");
+    }
+
+    // a gramática da linguagem, lida uma vez do arquivo ao lado desta classe
+    public static Gramatica padrao() {
+        return Padrao.GRAMATICA;
+    }
+
+    public static Gramatica carregar(String recurso) {
+        try (InputStream entrada = Gramatica.class.getResourceAsStream(recurso)) {
+            if (entrada == null) {
+                throw new IllegalStateException("Gramática não encontrada: " + recurso);
+            }
+            return ler(new String(entrada.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new IllegalStateException("Erro ao ler a gramática " + recurso, e);
+        }
+    }
+
+    public static Gramatica ler(String especificacao) {
+        Gramatica gramatica = new Gramatica();
+        gramatica.regras(especificacao);
+        gramatica.gerarTabela();
+        return gramatica;
+    }
+
+    // ---- leitura da especificação ----
+
+    private void regras(String especificacao) {
+        // junta as linhas de cada regra (as que começam com '|' continuam a anterior)
+        List<String> definicoes = new ArrayList<>();
+        for (String linha : especificacao.split("\\R")) {
+            String texto = linha.strip();
+            if (texto.isEmpty() || texto.startsWith("#")) continue;
+            if (texto.startsWith("|") && !definicoes.isEmpty()) {
+                int ultima = definicoes.size() - 1;
+                definicoes.set(ultima, definicoes.get(ultima) + " " + texto);
+            } else {
+                definicoes.add(texto);
+            }
+        }
+
+        // primeiro os nomes: um não terminal pode ser usado antes da sua regra
+        for (String definicao : definicoes) {
+            if (definicao.startsWith("%")) continue;
+            int seta = definicao.indexOf("->");
+            if (seta < 0) throw new IllegalStateException("Regra sem '->': " + definicao);
+            String nome = definicao.substring(0, seta).strip();
+            if (naoTerminais.contains(nome)) throw new IllegalStateException("Regra repetida: " + nome);
+            naoTerminais.add(nome);
+        }
+
+        for (String definicao : definicoes) {
+            if (definicao.startsWith("%")) {
+                diretiva(definicao);
+                continue;
+            }
+            int seta = definicao.indexOf("->");
+            int cabeca = naoTerminais.indexOf(definicao.substring(0, seta).strip());
+            for (String alternativa : alternativas(definicao.substring(seta + 2))) {
+                cabecas.add(cabeca);
+                corpos.add(simbolos(alternativa));
+            }
+        }
+        if (naoTerminais.isEmpty()) throw new IllegalStateException("Gramática vazia");
+    }
+
+    private void diretiva(String definicao) {
+        List<String> partes = palavras(definicao);
+        if (partes.size() != 3 || !partes.get(0).equals("%erro") || !naoTerminais.contains(partes.get(1))
+                || !partes.get(2).startsWith("\"")) {
+            throw new IllegalStateException("Diretiva inválida: " + definicao);
+        }
+        erros.put(partes.get(1), partes.get(2).substring(1, partes.get(2).length() - 1));
+    }
+
+    // separa no '|' que não está entre aspas
+    private static List<String> alternativas(String corpo) {
+        List<String> lista = new ArrayList<>();
+        boolean aspas = false;
+        int inicio = 0;
+        for (int i = 0; i < corpo.length(); i++) {
+            char c = corpo.charAt(i);
+            if (c == '"') aspas = !aspas;
+            else if (c == '|' && !aspas) {
+                lista.add(corpo.substring(inicio, i));
+                inicio = i + 1;
+            }
+        }
+        lista.add(corpo.substring(inicio));
+        return lista;
+    }
+
+    // palavras separadas por espaço; "texto entre aspas" é uma palavra só
+    private static List<String> palavras(String texto) {
+        List<String> lista = new ArrayList<>();
+        int i = 0;
+        while (i < texto.length()) {
+            if (Character.isWhitespace(texto.charAt(i))) {
+                i++;
+                continue;
+            }
+            int inicio = i;
+            boolean aspas = false;
+            while (i < texto.length() && (aspas || !Character.isWhitespace(texto.charAt(i)))) {
+                if (texto.charAt(i) == '"') aspas = !aspas;
+                i++;
+            }
+            lista.add(texto.substring(inicio, i));
+        }
+        return lista;
+    }
+
+    private int[] simbolos(String alternativa) {
+        List<String> partes = palavras(alternativa);
+        int[] simbolos = new int[partes.size()];
+        int n = 0;
+        for (String parte : partes) {
+            if (parte.equals("ε")) continue;
+            if (parte.startsWith("#")) {
+                String acao = parte.substring(1);
+                if (!acoes.contains(acao)) acoes.add(acao);
+                simbolos[n++] = ACAO | acoes.indexOf(acao);
+                continue;
+            }
+            boolean guarda = parte.startsWith("@");
+            String nome = guarda ? parte.substring(1) : parte;
+            if (naoTerminais.contains(nome)) {
+                if (guarda) throw new IllegalStateException("Só terminal pode ter @: " + parte);
+                simbolos[n++] = NAO_TERMINAL | naoTerminais.indexOf(nome);
+            } else {
+                simbolos[n++] = terminal(nome) | (guarda ? GUARDA : 0);
+            }
+        }
+        return Arrays.copyOf(simbolos, n);
+    }
+
+    private int terminal(String nome) {
+        String texto = null;
+        TokenType classe = null;
+        if (nome.length() >= 2 && nome.startsWith("\"") && nome.endsWith("\"")) {
+            texto = nome.substring(1, nome.length() - 1);
+            nome = texto;
+        } else {
+            try {
+                classe = TokenType.valueOf(nome);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException("Símbolo desconhecido na gramática: " + nome);
+            }
+        }
+        int indice = terminais.indexOf(nome);
+        if (indice < 0) {
+            indice = terminais.size();
+            terminais.add(nome);
+            textos.add(texto);
+            classes.add(classe);
+        }
+        return indice;
+    }
+
+    // ---- tabela LL(1) ----
+
+    private void gerarTabela() {
+        int n = naoTerminais.size();
+        int t = terminais.size();
+        BitSet[] first = new BitSet[n];
+        BitSet[] follow = new BitSet[n];
+        boolean[] vazio = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            first[i] = new BitSet(t);
+            follow[i] = new BitSet(t);
+        }
+        follow[0].set(FIM);
+
+        // FIRST e "deriva vazio", até não mudar mais
+        boolean mudou = true;
+        while (mudou) {
+            mudou = false;
+            for (int p = 0; p < corpos.size(); p++) {
+                int cabeca = cabecas.get(p);
+                BitSet inicio = new BitSet(t);
+                boolean podeVazio = first(corpos.get(p), 0, first, vazio, inicio);
+                int antes = first[cabeca].cardinality();
+                first[cabeca].or(inicio);
+                if (first[cabeca].cardinality() != antes || (podeVazio && !vazio[cabeca])) {
+                    vazio[cabeca] |= podeVazio;
+                    mudou = true;
+                }
+            }
+        }
+
+        // FOLLOW: o que pode vir depois de cada não terminal
+        mudou = true;
+        while (mudou) {
+            mudou = false;
+            for (int p = 0; p < corpos.size(); p++) {
+                int[] corpo = corpos.get(p);
+                for (int i = 0; i < corpo.length; i++) {
+                    if ((corpo[i] & TIPO) != NAO_TERMINAL) continue;
+                    int b = corpo[i] & NUMERO;
+                    BitSet depois = new BitSet(t);
+                    boolean resto = first(corpo, i + 1, first, vazio, depois);
+                    if (resto) depois.or(follow[cabecas.get(p)]);
+                    int antes = follow[b].cardinality();
+                    follow[b].or(depois);
+                    mudou |= follow[b].cardinality() != antes;
+                }
+            }
+        }
+
+        // a coluna extra (t) é a dos tokens que a gramática não conhece: sempre erro
+        tabela = new int[n][t + 1];
+        for (int[] linha : tabela) Arrays.fill(linha, -1);
+        for (int p = 0; p < corpos.size(); p++) {
+            int cabeca = cabecas.get(p);
+            BitSet escolhe = new BitSet(t);
+            if (first(corpos.get(p), 0, first, vazio, escolhe)) escolhe.or(follow[cabeca]);
+            for (int terminal = escolhe.nextSetBit(0); terminal >= 0; terminal = escolhe.nextSetBit(terminal + 1)) {
+                if (tabela[cabeca][terminal] >= 0) {
+                    throw new IllegalStateException("A gramática não é LL(1): " + naoTerminais.get(cabeca)
+                            + " tem duas regras para '" + terminais.get(terminal) + "'");
+                }
+                tabela[cabeca][terminal] = p;
+            }
+        }
+
+        // célula vazia de quem deriva vazio (e não tem %erro) fica com a regra vazia: o erro
+        // aparece logo depois, no terminal que devia vir (o ';', o ')'), como no Parser
+        for (int p = 0; p < corpos.size(); p++) {
+            int cabeca = cabecas.get(p);
+            if (erros.containsKey(naoTerminais.get(cabeca))) continue;
+            if (!first(corpos.get(p), 0, first, vazio, new BitSet(t))) continue;
+            for (int terminal = 0; terminal <= t; terminal++) {
+                if (tabela[cabeca][terminal] < 0) tabela[cabeca][terminal] = p;
+            }
+        }
+
+        mensagens = new String[n];
+        for (int i = 0; i < n; i++) {
+            mensagens[i] = erros.get(naoTerminais.get(i));
+        }
+
+        terminalDaClasse = new int[TokenType.values().length];
+        Arrays.fill(terminalDaClasse, -1);
+        textoDe = textos.toArray(new String[0]);
+        literaisPorLetra = new int[128][0];
+        for (int i = 1; i < t; i++) {
+            if (classes.get(i) != null) {
+                terminalDaClasse[classes.get(i).ordinal()] = i;
+            } else {
+                char letra = textoDe[i].charAt(0);
+                if (letra >= 128) throw new IllegalStateException("Terminal fora do ASCII: " + textoDe[i]);
+                int[] lista = literaisPorLetra[letra];
+                lista = Arrays.copyOf(lista, lista.length + 1);
+                lista[lista.length - 1] = i;
+                literaisPorLetra[letra] = lista;
+            }
+        }
+        regras = corpos.toArray(new int[0][]);
+    }
+
+    // FIRST de corpo[desde..]; devolve se essa parte pode ser vazia (ações não contam)
+    private static boolean first(int[] corpo, int desde, BitSet[] first, boolean[] vazio, BitSet saida) {
+        for (int i = desde; i < corpo.length; i++) {
+            int simbolo = corpo[i];
+            switch (simbolo & TIPO) {
+                case ACAO -> {
+                }
+                case NAO_TERMINAL -> {
+                    int nt = simbolo & NUMERO;
+                    saida.or(first[nt]);
+                    if (!vazio[nt]) return false;
+                }
+                default -> {
+                    saida.set(simbolo & NUMERO);
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // ---- consulta, para o ParserTabela ----
+
+    // terminal do token i (o tipo vence o texto); terminais() quando a gramática não conhece
+    int terminal(TokenBuffer tokens, int i) {
+        if (i >= tokens.size()) return FIM;
+        TokenType tipo = tokens.type(i);
+        int classe = terminalDaClasse[tipo.ordinal()];
+        if (classe >= 0) return classe;
+        char letra = tokens.source().charAt(tokens.start(i));
+        if (letra < 128) {
+            for (int literal : literaisPorLetra[letra]) {
+                if (tokens.is(i, tipo, textoDe[literal])) return literal;
+            }
+        }
+        return terminais.size();
+    }
+
+    int terminais() {
+        return terminais.size();
+    }
+
+    String nomeTerminal(int terminal) {
+        return terminais.get(terminal);
+    }
+
+    String nomeAcao(int acao) {
+        return acoes.get(acao);
+    }
+
+    int acoes() {
+        return acoes.size();
+    }
+
+    // regra para o não terminal com esse terminal à frente, ou -1
+    int regra(int naoTerminal, int terminal) {
+        return tabela[naoTerminal][terminal];
+    }
+
+    int[] corpo(int regra) {
+        return regras[regra];
+    }
+
+    // mensagem do %erro (com %s no lugar do token), ou null
+    String mensagem(int naoTerminal) {
+        return mensagens[naoTerminal];
+    }
+
+    // tabela legível, para conferir o que foi gerado
+    @Override
+    public String toString() {
+        StringBuilder texto = new StringBuilder();
+        for (int nt = 0; nt < naoTerminais.size(); nt++) {
+            texto.append(naoTerminais.get(nt)).append(":\n");
+            for (int terminal = 0; terminal < terminais.size(); terminal++) {
+                int regra = tabela[nt][terminal];
+                if (regra < 0) continue;
+                texto.append("  ").append(terminais.get(terminal)).append(" ->");
+                for (int simbolo : corpos.get(regra)) {
+                    texto.append(' ').append(switch (simbolo & TIPO) {
+                        case NAO_TERMINAL -> naoTerminais.get(simbolo & NUMERO);
+                        case ACAO -> "#" + acoes.get(simbolo & NUMERO);
+                        default -> ((simbolo & GUARDA) != 0 ? "@" : "") + terminais.get(simbolo & NUMERO);
+                    });
+                }
+                if (corpos.get(regra).length == 0) texto.append(" ε");
+                texto.append('\n');
+            }
+        }
+        return texto.toString();
+    }
+}
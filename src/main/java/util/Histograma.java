@@ -0,0 +1,130 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de valores não negativos (nanossegundos, bytes) no formato do
+ * HdrHistogram: faixas que dobram de tamanho, cada uma dividida em
+ * {@value #SUBFAIXAS} partes iguais. O erro de um percentil fica abaixo de
+ * 1/{@value #SUBFAIXAS} do valor (uns 3%), de 0 até {@code Long.MAX_VALUE},
+ * com um vetor fixo de contadores.
+ *
+ * {@link #registrar} não trava nem aloca e pode ser chamado de qualquer
+ * thread. As leituras são aproximadas enquanto alguém registra.
+ *
+ * @author david
+ */
+public class Histograma {
+
+    private static final int BITS = 5;
+    static final int SUBFAIXAS = 1 << BITS;
+    // valores abaixo de SUBFAIXAS têm uma posição cada; depois, SUBFAIXAS posições por potência de 2
+    private static final int POSICOES = (64 - BITS) * SUBFAIXAS;
+
+    private final AtomicLongArray contagens = new AtomicLongArray(POSICOES);
+    private final LongAdder amostras = new LongAdder();
+    private final LongAdder soma = new LongAdder();
+    private final AtomicLong minimo = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong maximo = new AtomicLong(Long.MIN_VALUE);
+
+    public void registrar(long valor) {
+        if (valor < 0) valor = 0;
+        contagens.incrementAndGet(posicao(valor));
+        amostras.increment();
+        soma.add(valor);
+        if (valor < minimo.get()) minimo.accumulateAndGet(valor, Math::min);
+        if (valor > maximo.get()) maximo.accumulateAndGet(valor, Math::max);
+    }
+
+    public void zerar() {
+        for (int i = 0; i < POSICOES; i++) contagens.set(i, 0);
+        amostras.reset();
+        soma.reset();
+        minimo.set(Long.MAX_VALUE);
+        maximo.set(Long.MIN_VALUE);
+    }
+
+    public long amostras() {
+        return amostras.sum();
+    }
+
+    public long soma() {
+        return soma.sum();
+    }
+
+    public long minimo() {
+        return amostras() == 0 ? 0 : minimo.get();
+    }
+
+    public long maximo() {
+        return amostras() == 0 ? 0 : maximo.get();
+    }
+
+    public double media() {
+        long n = amostras();
+        return n == 0 ? 0 : (double) soma() / n;
+    }
+
+    // menor valor com pelo menos p% das amostras até ele (p entre 0 e 100)
+    public long percentil(double p) {
+        long total = 0;
+        long[] copia = new long[POSICOES];
+        for (int i = 0; i < POSICOES; i++) {
+            copia[i] = contagens.get(i);
+            total += copia[i];
+        }
+        if (total == 0) return 0;
+        long alvo = Math.max(1, (long) Math.ceil(total * p / 100));
+        long acumulado = 0;
+        for (int i = 0; i < POSICOES; i++) {
+            acumulado += copia[i];
+            if (acumulado >= alvo) {
+                // o fim da faixa, sem passar do maior valor visto
+                return Math.min(maior(i), maximo());
+            }
+        }
+        return maximo();
+    }
+
+    // faixas com alguma amostra, como pares (menor valor da faixa, contagem)
+    public long[][] faixas() {
+        int n = 0;
+        long[] copia = new long[POSICOES];
+        for (int i = 0; i < POSICOES; i++) {
+            copia[i] = contagens.get(i);
+            if (copia[i] > 0) n++;
+        }
+        long[][] faixas = new long[n][];
+        int k = 0;
+        for (int i = 0; i < POSICOES && k < n; i++) {
+            if (copia[i] > 0) faixas[k++] = new long[]{menor(i), copia[i]};
+        }
+        return faixas;
+    }
+
+    static int posicao(long valor) {
+        if (valor < SUBFAIXAS) return (int) valor;
+        int expoente = 63 - Long.numberOfLeadingZeros(valor);
+        int sub = (int) (valor >>> (expoente - BITS)) - SUBFAIXAS;
+        return (expoente - BITS + 1) * SUBFAIXAS + sub;
+    }
+
+    static long menor(int posicao) {
+        if (posicao < SUBFAIXAS) return posicao;
+        int expoente = posicao / SUBFAIXAS + BITS - 1;
+        long sub = posicao % SUBFAIXAS;
+        return (SUBFAIXAS + sub) << (expoente - BITS);
+    }
+
+    static long maior(int posicao) {
+        if (posicao < SUBFAIXAS) return posicao;
+        long proximo = posicao + 1 < POSICOES ? menor(posicao + 1) : Long.MAX_VALUE;
+        return proximo - 1;
+    }
+}
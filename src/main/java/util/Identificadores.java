@@ -0,0 +1,102 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Dá um número (0, 1, 2...) para cada nome diferente que aparece no
+ * {@link TokenBuffer}. A busca compara direto os caracteres do fonte, sem
+ * criar String, numa tabela de endereçamento aberto; a partir daí as
+ * tabelas de quem usa os nomes podem ser vetores indexados pelo número.
+ *
+ * @author david
+ */
+public final class Identificadores {
+
+    private final TokenBuffer tokens;
+    private final CharSequence fonte;
+
+    // posição da tabela -> número + 1 (0 = livre)
+    private int[] tabela = new int[64];
+    // número -> token da primeira ocorrência e hash do texto
+    private int[] primeiro = new int[16];
+    private int[] hashes = new int[16];
+    private int quantidade;
+
+    public Identificadores(TokenBuffer tokens) {
+        this.tokens = tokens;
+        this.fonte = tokens.source();
+    }
+
+    // número do nome escrito no token
+    public int id(int token) {
+        int hash = hash(token);
+        int mascara = tabela.length - 1;
+        for (int i = hash & mascara; ; i = (i + 1) & mascara) {
+            int ocupado = tabela[i];
+            if (ocupado == 0) {
+                return novo(token, hash, i);
+            }
+            if (hashes[ocupado - 1] == hash && iguais(primeiro[ocupado - 1], token)) {
+                return ocupado - 1;
+            }
+        }
+    }
+
+    public int quantidade() {
+        return quantidade;
+    }
+
+    // o texto só é criado aqui, para mensagens
+    public String nome(int id) {
+        return tokens.text(primeiro[id]);
+    }
+
+    private int novo(int token, int hash, int posicao) {
+        if (quantidade == primeiro.length) {
+            primeiro = Arrays.copyOf(primeiro, quantidade * 2);
+            hashes = Arrays.copyOf(hashes, quantidade * 2);
+        }
+        int id = quantidade++;
+        primeiro[id] = token;
+        hashes[id] = hash;
+        tabela[posicao] = id + 1;
+        // até metade cheia; acima disso a sondagem linear começa a andar muito
+        if (quantidade * 2 > tabela.length) {
+            crescer();
+        }
+        return id;
+    }
+
+    private void crescer() {
+        tabela = new int[tabela.length * 2];
+        int mascara = tabela.length - 1;
+        for (int id = 0; id < quantidade; id++) {
+            int i = hashes[id] & mascara;
+            while (tabela[i] != 0) i = (i + 1) & mascara;
+            tabela[i] = id + 1;
+        }
+    }
+
+    private int hash(int token) {
+        int h = 0;
+        for (int k = tokens.start(token), fim = tokens.end(token); k < fim; k++) {
+            h = 31 * h + fonte.charAt(k);
+        }
+        // espalha os bits baixos, que são os usados como posição
+        return h ^ (h >>> 16);
+    }
+
+    private boolean iguais(int a, int b) {
+        int inicioA = tokens.start(a), inicioB = tokens.start(b);
+        int tamanho = tokens.end(a) - inicioA;
+        if (tokens.end(b) - inicioB != tamanho) return false;
+        for (int k = 0; k < tamanho; k++) {
+            if (fonte.charAt(inicioA + k) != fonte.charAt(inicioB + k)) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+
+/**
+ * Gerenciador de arquivos do javac que não toca no disco: o código fonte
+ * vem de uma String e os .class gerados ficam num mapa nome -> bytes.
+ * As classes da plataforma continuam vindo do gerenciador padrão.
+ *
+ * Cada compilação usa a sua instância, então várias podem rodar juntas.
+ *
+ * @author david
+ */
+public class InMemoryFileManager extends ForwardingJavaFileManager<JavaFileManager> {
+
+    private final Map<String, byte[]> classes = new LinkedHashMap<>();
+
+    public InMemoryFileManager(JavaFileManager fileManager) {
+        super(fileManager);
+    }
+
+    // classes compiladas até agora, pelo nome binário
+    public Map<String, byte[]> classes() {
+        return classes;
+    }
+
+    @Override
+    public JavaFileObject getJavaFileForOutput(Location location, String className,
+            JavaFileObject.Kind kind, FileObject sibling) {
+        return new SimpleJavaFileObject(URI.create("mem:///" + className.replace('.', '/') + kind.extension), kind) {
+            @Override
+            public OutputStream openOutputStream() {
+                return new ByteArrayOutputStream() {
+                    @Override
+                    public void close() {
+                        classes.put(className, toByteArray());
+                    }
+                };
+            }
+        };
+    }
+
+    // fonte Java guardado numa String
+    public static JavaFileObject source(String className, String code) {
+        return new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+    }
+}
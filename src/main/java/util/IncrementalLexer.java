@@ -0,0 +1,244 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import java.util.Arrays;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+import javax.swing.text.Segment;
+import util.analisadorLexico.TokenType;
+
+/**
+ * Mantém os tokens de um {@link Document} sempre atualizados, refazendo a
+ * análise léxica só das linhas atingidas por cada edição.
+ *
+ * Nenhum token do analisador atravessa um fim de linha (comentário e string
+ * param nele), então o estado do automato no início de cada linha é sempre o
+ * inicial. Por isso a região danificada são as linhas da edição: depois da
+ * última delas o fluxo novo volta a coincidir com o antigo.
+ *
+ * Os tokens ficam num gap buffer. Os que estão depois do gap guardam o
+ * deslocamento relativo ao fim do documento, assim uma edição não precisa
+ * corrigir a posição de todos os tokens seguintes.
+ *
+ * @author david
+ */
+public class IncrementalLexer implements DocumentListener {
+
+    private byte[] types = new byte[64];
+    private int[] starts = new int[64];
+    private int[] ends = new int[64];
+
+    // posições físicas [gapStart, gapEnd) estão livres
+    private int gapStart = 0;
+    private int gapEnd = 64;
+
+    private int length;
+    private Document document;
+
+    private final Segment segment = new Segment();
+    private final int[] limites = new int[2];
+
+    // desde a última chamada de marcar(): tokens que nenhuma edição tocou no começo e no fim
+    private int intactosNoInicio;
+    private int intactosNoFim;
+
+    public record Edicao(int intactosNoInicio, int intactosNoFim) {}
+
+    // passa a acompanhar o documento, analisando o texto atual por inteiro
+    public void attach(Document document) {
+        detach();
+        this.document = document;
+        gapStart = 0;
+        gapEnd = types.length;
+        length = 0;
+        relex(0, document.getLength(), document.getLength());
+        intactosNoInicio = 0;
+        intactosNoFim = 0;
+        document.addDocumentListener(this);
+    }
+
+    public void detach() {
+        if (document != null) {
+            document.removeDocumentListener(this);
+            document = null;
+        }
+    }
+
+    @Override
+    public void insertUpdate(DocumentEvent e) {
+        relex(e.getOffset(), e.getLength(), e.getLength());
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e) {
+        relex(e.getOffset(), 0, -e.getLength());
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e) {
+        // mudança só de atributos, o texto é o mesmo
+    }
+
+    public int size() {
+        return types.length - (gapEnd - gapStart);
+    }
+
+    public TokenType type(int i) {
+        return analisadorLexico.tipos[types[physical(i)]];
+    }
+
+    public int start(int i) {
+        int p = physical(i);
+        return p < gapStart ? starts[p] : starts[p] + length;
+    }
+
+    public int end(int i) {
+        int p = physical(i);
+        return p < gapStart ? ends[p] : ends[p] + length;
+    }
+
+    /**
+     * O que mudou desde a chamada anterior: quantos tokens do começo e do fim
+     * continuam os mesmos (mesmo tipo e texto; a posição no texto pode ter
+     * mudado). Chamado junto com {@link #snapshot()}, diz ao
+     * {@link ParserIncremental} qual parte do snapshot anterior ainda vale.
+     */
+    public Edicao marcar() {
+        // as contas daqui incluem os comentários, que o snapshot deixa de fora
+        Edicao edicao = new Edicao(semComentarios(0, intactosNoInicio), semComentarios(size() - intactosNoFim, size()));
+        intactosNoInicio = size();
+        intactosNoFim = size();
+        return edicao;
+    }
+
+    // cópia dos tokens atuais junto com o texto do documento
+    public TokenBuffer snapshot() {
+        String text;
+        try {
+            text = document.getText(0, length);
+        } catch (BadLocationException e) {
+            throw new RuntimeException(e);
+        }
+        int size = size();
+        TokenBuffer buffer = new TokenBuffer(text, Math.max(16, size));
+        for (int i = 0; i < size; i++) {
+            buffer.add(type(i), start(i), end(i));
+        }
+        return buffer;
+    }
+
+    // tokens em [de, ate) que entram no snapshot
+    private int semComentarios(int de, int ate) {
+        int quantos = 0;
+        for (int i = de; i < ate; i++) {
+            if (type(i) != TokenType.COMMENT) quantos++;
+        }
+        return quantos;
+    }
+
+    private int physical(int i) {
+        return i < gapStart ? i : i + (gapEnd - gapStart);
+    }
+
+    // refaz os tokens das linhas tocadas por uma edição em offset; fica numa fase à parte
+    // para não misturar os microssegundos de cada tecla com os tokenize inteiros da LEXICA
+    private void relex(int offset, int inserted, int delta) {
+        try (Telemetria.Medida medida = Telemetria.get().iniciar(Telemetria.Fase.LEXICA_INCREMENTAL)) {
+            Element root = document.getDefaultRootElement();
+            int newLength = document.getLength();
+            int from = root.getElement(root.getElementIndex(offset)).getStartOffset();
+            int to = Math.min(newLength, root.getElement(root.getElementIndex(offset + inserted)).getEndOffset());
+
+            // tokens antigos dentro de [from, to - delta) saem, o resto só muda de lugar
+            int first = firstStartingAt(from);
+            int last = firstStartingAt(to - delta);
+            moveGap(first);
+            gapEnd += last - first;
+            length = newLength;
+
+            try {
+                document.getText(from, to - from, segment);
+            } catch (BadLocationException e) {
+                throw new RuntimeException(e);
+            }
+            int pos = 0;
+            int tipo;
+            int novos = 0;
+            while ((tipo = analisadorLexico.proximoToken(segment, pos, segment.length(), limites)) >= 0) {
+                insert((byte) tipo, from + limites[0], from + limites[1]);
+                pos = limites[1];
+                novos++;
+            }
+
+            // antes de first o índice não muda; depois dos tokens novos, a distância até o fim
+            intactosNoInicio = Math.min(intactosNoInicio, first);
+            intactosNoFim = Math.min(intactosNoFim, size() - gapStart);
+            medida.fim(novos, 0);
+        }
+    }
+
+    // primeiro token (índice lógico) que começa em offset ou depois
+    private int firstStartingAt(int offset) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (start(mid) < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void moveGap(int index) {
+        while (gapStart > index) {
+            // token antes do gap passa para depois dele: vira relativo ao fim
+            gapStart--;
+            gapEnd--;
+            types[gapEnd] = types[gapStart];
+            starts[gapEnd] = starts[gapStart] - length;
+            ends[gapEnd] = ends[gapStart] - length;
+        }
+        while (gapStart < index) {
+            types[gapStart] = types[gapEnd];
+            starts[gapStart] = starts[gapEnd] + length;
+            ends[gapStart] = ends[gapEnd] + length;
+            gapStart++;
+            gapEnd++;
+        }
+    }
+
+    private void insert(byte type, int start, int end) {
+        if (gapStart == gapEnd) {
+            grow();
+        }
+        types[gapStart] = type;
+        starts[gapStart] = start;
+        ends[gapStart] = end;
+        gapStart++;
+    }
+
+    private void grow() {
+        int capacity = types.length * 2;
+        int tail = types.length - gapEnd;
+        int newGapEnd = capacity - tail;
+        byte[] newTypes = Arrays.copyOf(types, capacity);
+        int[] newStarts = Arrays.copyOf(starts, capacity);
+        int[] newEnds = Arrays.copyOf(ends, capacity);
+        System.arraycopy(types, gapEnd, newTypes, newGapEnd, tail);
+        System.arraycopy(starts, gapEnd, newStarts, newGapEnd, tail);
+        System.arraycopy(ends, gapEnd, newEnds, newGapEnd, tail);
+        types = newTypes;
+        starts = newStarts;
+        ends = newEnds;
+        gapEnd = newGapEnd;
+    }
+}
@@ -0,0 +1,640 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import util.Ast.*;
+
+/**
+ * Executa direto, sem javac, os programas que cabem na gramática do
+ * {@link Parser}.
+ *
+ * A AST é traduzida uma vez para uma árvore de lambdas já especializadas
+ * pelo tipo: cada variável ganha um slot no vetor do seu tipo (int, float,
+ * boolean ou String), então ler ou escrever uma variável é um acesso a
+ * vetor, sem mapa de nomes nem boxing. Os casos mais comuns dentro de laços
+ * ({@code i < 10}, {@code i + 1}, {@code i = i + 1}) viram nós próprios que
+ * leem o slot direto.
+ *
+ * A tradução só aceita o que ela consegue garantir que o javac também
+ * aceitaria e executaria igual. Na dúvida (escape em string, tipos que não
+ * batem, variável talvez não inicializada, {@code ==} entre Strings, laço
+ * com condição constante...) {@link #preparar} devolve null e o programa
+ * segue pelo {@link Compilador}. Essa decisão é tomada sobre a árvore do
+ * jeito que foi escrita; o que roda é a árvore depois do {@link Otimizador}.
+ *
+ * @author david
+ */
+public class Interpretador {
+
+    // maior String que o programa pode montar; o processo de execução tem 256 MB
+    static final int LIMITE_TEXTO = 32 << 20;
+
+    // de quantas em quantas voltas de um while o relógio é consultado
+    static final int VOLTAS_ENTRE_VERIFICACOES = 1024;
+
+    // palavras que o analisador léxico aceita como identificador mas o javac não
+    static final Set<String> RESERVADAS = Set.of(
+        "abstract", "assert", "break", "byte", "case", "catch", "char", "const", "continue",
+        "default", "do", "double", "enum", "extends", "final", "finally", "goto", "implements",
+        "import", "instanceof", "interface", "long", "native", "package", "private", "protected",
+        "short", "strictfp", "super", "switch", "synchronized", "this", "throw", "throws",
+        "transient", "try", "volatile", "null", "_", "var", "yield", "record", "sealed", "permits",
+        // já existem no main gerado pelo Compilador
+        "args", "System"
+    );
+
+    private enum Tipo { INT, FLOAT, BOOLEAN, STRING }
+
+    private interface Acao { void executar(Quadro q); }
+    private interface ExprInt { int valor(Quadro q); }
+    private interface ExprFloat { float valor(Quadro q); }
+    private interface ExprBoolean { boolean valor(Quadro q); }
+    private interface ExprString { String valor(Quadro q); }
+
+    // estado de uma execução: um vetor de slots por tipo
+    private static final class Quadro {
+        final int[] ints;
+        final float[] floats;
+        final boolean[] booleans;
+        final String[] strings;
+        final PrintStream saida;
+        final long prazo;
+        int voltas;
+
+        Quadro(Interpretador programa, PrintStream saida) {
+            this.ints = new int[programa.ints];
+            this.floats = new float[programa.floats];
+            this.booleans = new boolean[programa.booleans];
+            this.strings = new String[programa.strings];
+            this.saida = saida;
+            this.prazo = System.nanoTime() + WorkerPool.TEMPO_LIMITE_MS * 1_000_000;
+        }
+
+        void verificarPrazo() {
+            if (System.nanoTime() - prazo > 0) {
+                throw new Falha("Tempo limite de " + WorkerPool.TEMPO_LIMITE_MS / 1000 + " s excedido, programa interrompido.", -1);
+            }
+        }
+    }
+
+    // erro do programa do usuário durante a execução
+    private static final class Falha extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int token;
+
+        Falha(String mensagem, int token) {
+            super(mensagem, null, false, false);
+            this.token = token;
+        }
+    }
+
+    // o programa usa algo que só o javac sabe tratar
+    private static final class NaoSuportado extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        NaoSuportado(String motivo) {
+            super(motivo, null, false, false);
+        }
+    }
+
+    private final TokenBuffer tokens;
+    private final Programa arvore;
+    private final int nosEliminados;
+    private final Acao programa;
+    private final int ints, floats, booleans, strings;
+    private final boolean temLaco;
+
+    private Interpretador(TokenBuffer tokens, Programa arvore, int nosEliminados, Acao programa, Tradutor tradutor) {
+        this.tokens = tokens;
+        this.arvore = arvore;
+        this.nosEliminados = nosEliminados;
+        this.programa = programa;
+        this.ints = tradutor.ints;
+        this.floats = tradutor.floats;
+        this.booleans = tradutor.booleans;
+        this.strings = tradutor.strings;
+        this.temLaco = tradutor.temLaco;
+    }
+
+    // null quando o programa precisa do javac (ou não passa no parser)
+    public static Interpretador preparar(TokenBuffer tokens) {
+        if (!tokens.cobreTudo()) return null;
+        try {
+            return preparar(tokens, ParserTabela.analisar(tokens));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    // para quem já tem a árvore de tokens que cobrem tudo
+    static Interpretador preparar(TokenBuffer tokens, Programa programa) {
+        try {
+            // as regras do javac (atribuição definida, alcance) valem para o código escrito,
+            // então quem decide se o programa é aceito é a tradução da árvore original
+            Tradutor tradutor = new Tradutor();
+            Acao acao = tradutor.bloco(programa.comandos());
+
+            Otimizador otimizador = new Otimizador();
+            Programa otimizado;
+            try (Telemetria.Medida medida = Telemetria.get().iniciar(Telemetria.Fase.OTIMIZACAO)) {
+                otimizado = otimizador.otimizar(programa);
+                medida.fim(tokens.size(), 0);
+            }
+            if (otimizador.eliminados() == 0) {
+                return new Interpretador(tokens, programa, 0, acao, tradutor);
+            }
+            try {
+                Tradutor outro = new Tradutor();
+                Acao otimizada = outro.bloco(otimizado.comandos());
+                // só conta o que foi tirado de uma árvore que vai rodar
+                Telemetria.get().fase(Telemetria.Fase.OTIMIZACAO).eliminados.add(otimizador.eliminados());
+                return new Interpretador(tokens, otimizado, otimizador.eliminados(), otimizada, outro);
+            } catch (NaoSuportado e) {
+                // a árvore otimizada caiu numa regra conservadora (ex.: while que ficou constante)
+                return new Interpretador(tokens, programa, 0, acao, tradutor);
+            }
+        } catch (RuntimeException | StackOverflowError e) {
+            return null;
+        }
+    }
+
+    // a árvore que é executada (já otimizada, quando deu)
+    public Programa arvore() {
+        return arvore;
+    }
+
+    public int nosEliminados() {
+        return nosEliminados;
+    }
+
+    // sem while o programa sempre termina logo
+    public boolean temLaco() {
+        return temLaco;
+    }
+
+    public WorkerPool.Resultado executar(PrintStream saida) {
+        try {
+            programa.executar(new Quadro(this, saida));
+        } catch (Falha f) {
+            saida.flush();
+            String mensagem = f.getMessage();
+            if (f.token >= 0) {
+                mensagem += "\n\tna linha " + linha(tokens, f.token) + "\n";
+            }
+            return new WorkerPool.Resultado(false, mensagem);
+        }
+        saida.flush();
+        return new WorkerPool.Resultado(true, "");
+    }
+
+    // linha do token no código digitado (a mesma numeração das mensagens do javac)
+    static int linha(TokenBuffer tokens, int token) {
+        CharSequence fonte = tokens.source();
+        int linha = 1;
+        for (int i = 0, fim = tokens.start(token); i < fim; i++) {
+            char c = fonte.charAt(i);
+            if (c == '\n' || (c == '\r' && (i + 1 == fonte.length() || fonte.charAt(i + 1) != '\n'))) {
+                linha++;
+            }
+        }
+        return linha;
+    }
+
+    private static String concatenar(String a, String b, int token) {
+        if ((long) a.length() + b.length() > LIMITE_TEXTO) {
+            throw new Falha("java.lang.OutOfMemoryError: Java heap space", token);
+        }
+        return a.concat(b);
+    }
+
+    private static int dividir(int a, int b, int token) {
+        if (b == 0) {
+            throw new Falha("java.lang.ArithmeticException: / by zero", token);
+        }
+        return a / b;
+    }
+
+    /**
+     * Tradução da AST para lambdas. Guarda os escopos (um por bloco, como no
+     * Java) e o conjunto de variáveis com certeza inicializadas, uma versão
+     * conservadora da regra de atribuição definida do javac.
+     */
+    private static final class Tradutor {
+
+        private record Var(Tipo tipo, int slot) {}
+
+        // slot >= 0 quando o nó só lê uma variável; literal != null quando é um literal
+        private record No(Tipo tipo, Object exec, int slot, Object literal, boolean constante) {}
+
+        private final Deque<Map<String, Var>> escopos = new ArrayDeque<>();
+        private Set<Var> atribuidas = new HashSet<>();
+        int ints, floats, booleans, strings;
+        boolean temLaco;
+
+        Acao bloco(List<Comando> comandos) {
+            escopos.push(new HashMap<>());
+            List<Acao> acoes = new ArrayList<>(comandos.size());
+            for (Comando comando : comandos) {
+                Acao acao = comando(comando);
+                if (acao != null) acoes.add(acao);
+            }
+            escopos.pop();
+
+            switch (acoes.size()) {
+                case 0:
+                    return q -> {};
+                case 1:
+                    return acoes.get(0);
+                case 2: {
+                    Acao a = acoes.get(0), b = acoes.get(1);
+                    return q -> { a.executar(q); b.executar(q); };
+                }
+                default: {
+                    Acao[] vetor = acoes.toArray(new Acao[0]);
+                    return q -> {
+                        for (Acao acao : vetor) acao.executar(q);
+                    };
+                }
+            }
+        }
+
+        private Acao comando(Comando comando) {
+            return switch (comando) {
+                case Declaracao d -> declaracao(d);
+                case Atribuicao a -> atribuicao(a);
+                case Impressao i -> impressao(i);
+                case Se s -> se(s);
+                case Enquanto e -> enquanto(e);
+            };
+        }
+
+        private Var procurar(String nome) {
+            for (Map<String, Var> escopo : escopos) {
+                Var var = escopo.get(nome);
+                if (var != null) return var;
+            }
+            return null;
+        }
+
+        private Acao declaracao(Declaracao d) {
+            if (RESERVADAS.contains(d.nome())) throw new NaoSuportado("nome reservado: " + d.nome());
+            // o Java não deixa uma variável local esconder outra
+            if (procurar(d.nome()) != null) throw new NaoSuportado("variável já declarada: " + d.nome());
+
+            // o inicializador é traduzido antes: a variável ainda não tem valor dentro dele
+            No valor = d.valor() != null ? expressao(d.valor()) : null;
+
+            Tipo tipo = switch (d.tipo()) {
+                case "int" -> Tipo.INT;
+                case "float" -> Tipo.FLOAT;
+                case "boolean" -> Tipo.BOOLEAN;
+                default -> Tipo.STRING;
+            };
+            int slot = switch (tipo) {
+                case INT -> ints++;
+                case FLOAT -> floats++;
+                case BOOLEAN -> booleans++;
+                case STRING -> strings++;
+            };
+            Var var = new Var(tipo, slot);
+            escopos.peek().put(d.nome(), var);
+
+            if (valor == null) return null;
+            atribuidas.add(var);
+            return guardar(var, valor);
+        }
+
+        private Acao atribuicao(Atribuicao a) {
+            Var var = procurar(a.nome());
+            if (var == null) throw new NaoSuportado("variável não declarada: " + a.nome());
+
+            // i = i + k / i = i - k
+            if (var.tipo() == Tipo.INT && atribuidas.contains(var)
+                    && a.valor() instanceof Binaria b
+                    && (b.operador() == Operador.SOMA || b.operador() == Operador.SUBTRACAO)
+                    && b.esquerda() instanceof Variavel v && v.nome().equals(a.nome())
+                    && b.direita() instanceof Numero n) {
+                int k = inteiro(n);
+                int passo = b.operador() == Operador.SOMA ? k : -k;
+                int s = var.slot();
+                return q -> q.ints[s] += passo;
+            }
+
+            No valor = expressao(a.valor());
+            atribuidas.add(var);
+            return guardar(var, valor);
+        }
+
+        private Acao guardar(Var var, No valor) {
+            int s = var.slot();
+            switch (var.tipo()) {
+                case INT: {
+                    if (valor.tipo() != Tipo.INT) throw new NaoSuportado("int recebendo " + valor.tipo());
+                    ExprInt e = (ExprInt) valor.exec();
+                    return q -> q.ints[s] = e.valor(q);
+                }
+                case FLOAT: {
+                    ExprFloat e = comoFloat(valor);
+                    return q -> q.floats[s] = e.valor(q);
+                }
+                case BOOLEAN: {
+                    if (valor.tipo() != Tipo.BOOLEAN) throw new NaoSuportado("boolean recebendo " + valor.tipo());
+                    ExprBoolean e = (ExprBoolean) valor.exec();
+                    return q -> q.booleans[s] = e.valor(q);
+                }
+                default: {
+                    if (valor.tipo() != Tipo.STRING) throw new NaoSuportado("String recebendo " + valor.tipo());
+                    ExprString e = (ExprString) valor.exec();
+                    return q -> q.strings[s] = e.valor(q);
+                }
+            }
+        }
+
+        // o println certo para cada tipo, como o javac escolheria
+        private Acao impressao(Impressao i) {
+            No valor = expressao(i.valor());
+            switch (valor.tipo()) {
+                case INT: {
+                    ExprInt e = (ExprInt) valor.exec();
+                    return q -> q.saida.println(e.valor(q));
+                }
+                case FLOAT: {
+                    ExprFloat e = (ExprFloat) valor.exec();
+                    return q -> q.saida.println(e.valor(q));
+                }
+                case BOOLEAN: {
+                    ExprBoolean e = (ExprBoolean) valor.exec();
+                    return q -> q.saida.println(e.valor(q));
+                }
+                default: {
+                    ExprString e = (ExprString) valor.exec();
+                    return q -> q.saida.println(e.valor(q));
+                }
+            }
+        }
+
+        private Acao se(Se s) {
+            ExprBoolean condicao = condicao(expressao(s.condicao()));
+
+            Set<Var> antes = new HashSet<>(atribuidas);
+            Acao entao = bloco(s.entao());
+            if (s.senao() == null) {
+                atribuidas = antes;
+                return q -> {
+                    if (condicao.valor(q)) entao.executar(q);
+                };
+            }
+
+            Set<Var> depoisEntao = atribuidas;
+            atribuidas = new HashSet<>(antes);
+            Acao senao = bloco(s.senao());
+            // inicializada depois do if só se foi nos dois caminhos
+            atribuidas.retainAll(depoisEntao);
+            return q -> {
+                if (condicao.valor(q)) entao.executar(q);
+                else senao.executar(q);
+            };
+        }
+
+        private Acao enquanto(Enquanto e) {
+            No no = expressao(e.condicao());
+            // com condição constante o javac mexe na análise de alcance (e pode recusar o programa)
+            if (no.constante()) throw new NaoSuportado("while com condição constante");
+            ExprBoolean condicao = condicao(no);
+            temLaco = true;
+
+            Set<Var> antes = new HashSet<>(atribuidas);
+            Acao corpo = bloco(e.corpo());
+            atribuidas = antes;
+
+            return q -> {
+                while (condicao.valor(q)) {
+                    corpo.executar(q);
+                    if (++q.voltas % VOLTAS_ENTRE_VERIFICACOES == 0) q.verificarPrazo();
+                }
+            };
+        }
+
+        private ExprBoolean condicao(No no) {
+            if (no.tipo() != Tipo.BOOLEAN) throw new NaoSuportado("condição do tipo " + no.tipo());
+            return (ExprBoolean) no.exec();
+        }
+
+        private No expressao(Expressao expressao) {
+            return switch (expressao) {
+                case Numero n -> {
+                    int valor = inteiro(n);
+                    yield new No(Tipo.INT, (ExprInt) q -> valor, -1, valor, true);
+                }
+                case Real r -> {
+                    float valor = r.valor();
+                    yield new No(Tipo.FLOAT, (ExprFloat) q -> valor, -1, valor, true);
+                }
+                case Texto t -> {
+                    String valor = t.valor();
+                    yield new No(Tipo.STRING, (ExprString) q -> valor, -1, valor, true);
+                }
+                case Booleano b -> {
+                    boolean valor = b.valor();
+                    yield new No(Tipo.BOOLEAN, (ExprBoolean) q -> valor, -1, valor, true);
+                }
+                case Variavel v -> variavel(v);
+                case Binaria b -> binaria(b);
+            };
+        }
+
+        private int inteiro(Numero n) {
+            String texto = n.valor();
+            // 010 é octal no Java
+            if (texto.length() > 1 && texto.charAt(0) == '0') throw new NaoSuportado("literal octal: " + texto);
+            try {
+                return Integer.parseInt(texto);
+            } catch (NumberFormatException e) {
+                throw new NaoSuportado("literal grande demais: " + texto);
+            }
+        }
+
+        private No variavel(Variavel v) {
+            Var var = procurar(v.nome());
+            if (var == null) throw new NaoSuportado("variável não declarada: " + v.nome());
+            if (!atribuidas.contains(var)) throw new NaoSuportado("variável talvez sem valor: " + v.nome());
+
+            int s = var.slot();
+            Object exec = switch (var.tipo()) {
+                case INT -> (ExprInt) q -> q.ints[s];
+                case FLOAT -> (ExprFloat) q -> q.floats[s];
+                case BOOLEAN -> (ExprBoolean) q -> q.booleans[s];
+                case STRING -> (ExprString) q -> q.strings[s];
+            };
+            return new No(var.tipo(), exec, s, null, false);
+        }
+
+        private No binaria(Binaria b) {
+            No esq = expressao(b.esquerda());
+            No dir = expressao(b.direita());
+            Operador op = b.operador();
+            boolean constante = esq.constante() && dir.constante();
+            int token = b.token();
+
+            if (op == Operador.SOMA && (esq.tipo() == Tipo.STRING || dir.tipo() == Tipo.STRING)) {
+                ExprString a = comoString(esq), c = comoString(dir);
+                return new No(Tipo.STRING, (ExprString) q -> concatenar(a.valor(q), c.valor(q), token), -1, null, constante);
+            }
+
+            if (esq.tipo() == Tipo.BOOLEAN && dir.tipo() == Tipo.BOOLEAN
+                    && (op == Operador.IGUAL || op == Operador.DIFERENTE)) {
+                ExprBoolean a = (ExprBoolean) esq.exec(), c = (ExprBoolean) dir.exec();
+                ExprBoolean r = op == Operador.IGUAL ? q -> a.valor(q) == c.valor(q) : q -> a.valor(q) != c.valor(q);
+                return new No(Tipo.BOOLEAN, r, -1, null, constante);
+            }
+
+            // daqui para baixo só números; == entre Strings compara referência e fica com o javac
+            if (!numerico(esq) || !numerico(dir)) {
+                throw new NaoSuportado("operador " + op.simbolo + " entre " + esq.tipo() + " e " + dir.tipo());
+            }
+
+            if (esq.tipo() == Tipo.FLOAT || dir.tipo() == Tipo.FLOAT) {
+                ExprFloat a = comoFloat(esq), c = comoFloat(dir);
+                if (op.relacional()) {
+                    return new No(Tipo.BOOLEAN, compararFloat(op, a, c), -1, null, constante);
+                }
+                return new No(Tipo.FLOAT, contaFloat(op, a, c), -1, null, constante);
+            }
+
+            if (op.relacional()) {
+                return new No(Tipo.BOOLEAN, compararInt(op, esq, dir), -1, null, constante);
+            }
+            return new No(Tipo.INT, contaInt(op, esq, dir, token), -1, null, constante);
+        }
+
+        private static boolean numerico(No no) {
+            return no.tipo() == Tipo.INT || no.tipo() == Tipo.FLOAT;
+        }
+
+        private static ExprFloat comoFloat(No no) {
+            if (no.tipo() == Tipo.FLOAT) return (ExprFloat) no.exec();
+            if (no.tipo() != Tipo.INT) throw new NaoSuportado("float recebendo " + no.tipo());
+            ExprInt e = (ExprInt) no.exec();
+            return q -> (float) e.valor(q);
+        }
+
+        // mesma conversão que a concatenação do Java faz
+        private static ExprString comoString(No no) {
+            switch (no.tipo()) {
+                case INT: {
+                    ExprInt e = (ExprInt) no.exec();
+                    return q -> Integer.toString(e.valor(q));
+                }
+                case FLOAT: {
+                    ExprFloat e = (ExprFloat) no.exec();
+                    return q -> Float.toString(e.valor(q));
+                }
+                case BOOLEAN: {
+                    ExprBoolean e = (ExprBoolean) no.exec();
+                    return q -> Boolean.toString(e.valor(q));
+                }
+                default:
+                    return (ExprString) no.exec();
+            }
+        }
+
+        private static ExprFloat contaFloat(Operador op, ExprFloat a, ExprFloat c) {
+            return switch (op) {
+                case SOMA -> q -> a.valor(q) + c.valor(q);
+                case SUBTRACAO -> q -> a.valor(q) - c.valor(q);
+                case MULTIPLICACAO -> q -> a.valor(q) * c.valor(q);
+                case DIVISAO -> q -> a.valor(q) / c.valor(q);
+                default -> throw new IllegalArgumentException(op.simbolo);
+            };
+        }
+
+        private static ExprBoolean compararFloat(Operador op, ExprFloat a, ExprFloat c) {
+            return switch (op) {
+                case IGUAL -> q -> a.valor(q) == c.valor(q);
+                case DIFERENTE -> q -> a.valor(q) != c.valor(q);
+                case MENOR -> q -> a.valor(q) < c.valor(q);
+                case MAIOR -> q -> a.valor(q) > c.valor(q);
+                case MENOR_IGUAL -> q -> a.valor(q) <= c.valor(q);
+                case MAIOR_IGUAL -> q -> a.valor(q) >= c.valor(q);
+                default -> throw new IllegalArgumentException(op.simbolo);
+            };
+        }
+
+        // variável com literal e variável com variável leem o slot direto
+        private static ExprInt contaInt(Operador op, No esq, No dir, int token) {
+            ExprInt a = (ExprInt) esq.exec(), c = (ExprInt) dir.exec();
+            int sa = esq.slot(), sc = dir.slot();
+            boolean literal = dir.literal() != null;
+            int k = literal ? (Integer) dir.literal() : 0;
+
+            switch (op) {
+                case SOMA:
+                    if (sa >= 0 && literal) return q -> q.ints[sa] + k;
+                    if (sa >= 0 && sc >= 0) return q -> q.ints[sa] + q.ints[sc];
+                    return q -> a.valor(q) + c.valor(q);
+                case SUBTRACAO:
+                    if (sa >= 0 && literal) return q -> q.ints[sa] - k;
+                    if (sa >= 0 && sc >= 0) return q -> q.ints[sa] - q.ints[sc];
+                    return q -> a.valor(q) - c.valor(q);
+                case MULTIPLICACAO:
+                    if (sa >= 0 && literal) return q -> q.ints[sa] * k;
+                    if (sa >= 0 && sc >= 0) return q -> q.ints[sa] * q.ints[sc];
+                    return q -> a.valor(q) * c.valor(q);
+                case DIVISAO:
+                    if (literal && k != 0) return q -> a.valor(q) / k;
+                    return q -> {
+                        int x = a.valor(q);
+                        return dividir(x, c.valor(q), token);
+                    };
+                default:
+                    throw new IllegalArgumentException(op.simbolo);
+            }
+        }
+
+        private static ExprBoolean compararInt(Operador op, No esq, No dir) {
+            ExprInt a = (ExprInt) esq.exec(), c = (ExprInt) dir.exec();
+            int sa = esq.slot(), sc = dir.slot();
+            boolean literal = dir.literal() != null;
+            int k = literal ? (Integer) dir.literal() : 0;
+
+            switch (op) {
+                case IGUAL:
+                    if (sa >= 0 && literal) return q -> q.ints[sa] == k;
+                    return q -> a.valor(q) == c.valor(q);
+                case DIFERENTE:
+                    if (sa >= 0 && literal) return q -> q.ints[sa] != k;
+                    return q -> a.valor(q) != c.valor(q);
+                case MENOR:
+                    if (sa >= 0 && literal) return q -> q.ints[sa] < k;
+                    if (sa >= 0 && sc >= 0) return q -> q.ints[sa] < q.ints[sc];
+                    return q -> a.valor(q) < c.valor(q);
+                case MAIOR:
+                    if (sa >= 0 && literal) return q -> q.ints[sa] > k;
+                    if (sa >= 0 && sc >= 0) return q -> q.ints[sa] > q.ints[sc];
+                    return q -> a.valor(q) > c.valor(q);
+                case MENOR_IGUAL:
+                    if (sa >= 0 && literal) return q -> q.ints[sa] <= k;
+                    if (sa >= 0 && sc >= 0) return q -> q.ints[sa] <= q.ints[sc];
+                    return q -> a.valor(q) <= c.valor(q);
+                case MAIOR_IGUAL:
+                    if (sa >= 0 && literal) return q -> q.ints[sa] >= k;
+                    if (sa >= 0 && sc >= 0) return q -> q.ints[sa] >= q.ints[sc];
+                    return q -> a.valor(q) >= c.valor(q);
+                default:
+                    throw new IllegalArgumentException(op.simbolo);
+            }
+        }
+    }
+}
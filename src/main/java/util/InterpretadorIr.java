@@ -0,0 +1,174 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import java.io.PrintStream;
+import util.Ir.*;
+
+/**
+ * Executa a {@link Ir} bloco a bloco e conta as instruções executadas, para
+ * medir o efeito de cada passo do {@link OtimizadorIr}. A saída e as
+ * mensagens de erro são as mesmas do {@link Interpretador}.
+ *
+ * @author david
+ */
+public class InterpretadorIr {
+
+    private final Funcao funcao;
+    private final TokenBuffer tokens;
+    private long executadas;
+
+    // registradores int e boolean (0/1) ficam em ints, cada um no seu número
+    private int[] ints;
+    private float[] floats;
+    private String[] strings;
+
+    public InterpretadorIr(Funcao funcao, TokenBuffer tokens) {
+        this.funcao = funcao;
+        this.tokens = tokens;
+    }
+
+    // instruções executadas na última execução (sem contar saltos e desvios)
+    public long executadas() {
+        return executadas;
+    }
+
+    public WorkerPool.Resultado executar(PrintStream saida) {
+        int n = funcao.registradores();
+        ints = new int[n];
+        floats = new float[n];
+        strings = new String[n];
+        executadas = 0;
+
+        long prazo = System.nanoTime() + WorkerPool.TEMPO_LIMITE_MS * 1_000_000;
+        int voltas = 0;
+        Bloco bloco = funcao.entrada();
+        while (bloco != null) {
+            for (Instrucao instrucao : bloco.instrucoes) {
+                executadas++;
+                String erro = executar(instrucao, saida);
+                if (erro != null) {
+                    saida.flush();
+                    return new WorkerPool.Resultado(false,
+                            erro + "\n\tna linha " + Interpretador.linha(tokens, instrucao.token()) + "\n");
+                }
+            }
+            if (bloco.condicao == null) {
+                bloco = bloco.seVerdade;
+            } else {
+                bloco = inteiro(bloco.condicao) != 0 ? bloco.seVerdade : bloco.seFalso;
+            }
+            if (++voltas % Interpretador.VOLTAS_ENTRE_VERIFICACOES == 0 && System.nanoTime() - prazo > 0) {
+                saida.flush();
+                return new WorkerPool.Resultado(false,
+                        "Tempo limite de " + WorkerPool.TEMPO_LIMITE_MS / 1000 + " s excedido, programa interrompido.");
+            }
+        }
+        saida.flush();
+        return new WorkerPool.Resultado(true, "");
+    }
+
+    // null quando deu certo, senão a mensagem da exceção que o Java lançaria
+    private String executar(Instrucao instrucao, PrintStream saida) {
+        Valor a = instrucao.a(), b = instrucao.b();
+        Registrador destino = instrucao.destino();
+        switch (instrucao.op()) {
+            case IMPRIME -> {
+                switch (a.tipo()) {
+                    case INT -> saida.println(inteiro(a));
+                    case FLOAT -> saida.println(real(a));
+                    case BOOLEAN -> saida.println(inteiro(a) != 0);
+                    case STRING -> saida.println(texto(a));
+                }
+            }
+            case COPIA -> {
+                switch (destino.tipo()) {
+                    case INT, BOOLEAN -> ints[destino.numero()] = inteiro(a);
+                    case FLOAT -> floats[destino.numero()] = real(a);
+                    case STRING -> strings[destino.numero()] = texto(a);
+                }
+            }
+            case PARA_FLOAT -> floats[destino.numero()] = inteiro(a);
+            case CONCATENA -> {
+                String x = texto(a), y = texto(b);
+                if ((long) x.length() + y.length() > Interpretador.LIMITE_TEXTO) {
+                    return "java.lang.OutOfMemoryError: Java heap space";
+                }
+                strings[destino.numero()] = x.concat(y);
+            }
+            case SOMA, SUBTRACAO, MULTIPLICACAO, DIVISAO -> {
+                if (destino.tipo() == Tipo.FLOAT) {
+                    float x = real(a), y = real(b);
+                    floats[destino.numero()] = switch (instrucao.op()) {
+                        case SOMA -> x + y;
+                        case SUBTRACAO -> x - y;
+                        case MULTIPLICACAO -> x * y;
+                        default -> x / y;
+                    };
+                } else {
+                    int x = inteiro(a), y = inteiro(b);
+                    if (instrucao.op() == Op.DIVISAO && y == 0) {
+                        return "java.lang.ArithmeticException: / by zero";
+                    }
+                    ints[destino.numero()] = switch (instrucao.op()) {
+                        case SOMA -> x + y;
+                        case SUBTRACAO -> x - y;
+                        case MULTIPLICACAO -> x * y;
+                        default -> x / y;
+                    };
+                }
+            }
+            default -> ints[destino.numero()] = comparar(instrucao.op(), a, b) ? 1 : 0;
+        }
+        return null;
+    }
+
+    private boolean comparar(Op op, Valor a, Valor b) {
+        if (a.tipo() == Tipo.FLOAT) {
+            float x = real(a), y = real(b);
+            return switch (op) {
+                case IGUAL -> x == y;
+                case DIFERENTE -> x != y;
+                case MENOR -> x < y;
+                case MAIOR -> x > y;
+                case MENOR_IGUAL -> x <= y;
+                default -> x >= y;
+            };
+        }
+        // boolean também é 0/1 aqui; só chega com == e !=
+        int x = inteiro(a), y = inteiro(b);
+        return switch (op) {
+            case IGUAL -> x == y;
+            case DIFERENTE -> x != y;
+            case MENOR -> x < y;
+            case MAIOR -> x > y;
+            case MENOR_IGUAL -> x <= y;
+            default -> x >= y;
+        };
+    }
+
+    private int inteiro(Valor valor) {
+        if (valor instanceof Registrador r) return ints[r.numero()];
+        Object constante = ((Constante) valor).valor();
+        return constante instanceof Boolean b ? (b ? 1 : 0) : (Integer) constante;
+    }
+
+    private float real(Valor valor) {
+        if (valor instanceof Registrador r) return floats[r.numero()];
+        return (Float) ((Constante) valor).valor();
+    }
+
+    // conversão da concatenação do Java
+    private String texto(Valor valor) {
+        if (valor instanceof Constante c) return String.valueOf(c.valor());
+        int r = ((Registrador) valor).numero();
+        return switch (valor.tipo()) {
+            case INT -> Integer.toString(ints[r]);
+            case FLOAT -> Float.toString(floats[r]);
+            case BOOLEAN -> Boolean.toString(ints[r] != 0);
+            case STRING -> strings[r];
+        };
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Representação intermediária de três endereços: cada instrução faz no
+ * máximo uma operação e grava num registrador, e as instruções ficam em
+ * blocos básicos ligados num grafo de fluxo de controle (CFG).
+ *
+ * Cada variável do programa e cada valor intermediário é um registrador
+ * numerado com tipo fixo; o gerador ({@link GeradorIr}) já resolve os
+ * escopos, então dois {@code x} em blocos diferentes são registradores
+ * diferentes. Os registradores não são SSA: uma variável pode ser escrita
+ * várias vezes.
+ *
+ * @author david
+ */
+public final class Ir {
+
+    private Ir() {
+    }
+
+    public enum Tipo { INT, FLOAT, BOOLEAN, STRING }
+
+    public enum Op {
+        COPIA("="), PARA_FLOAT("(float)"),
+        SOMA("+"), SUBTRACAO("-"), MULTIPLICACAO("*"), DIVISAO("/"), CONCATENA("++"),
+        IGUAL("=="), DIFERENTE("!="), MENOR("<"), MAIOR(">"), MENOR_IGUAL("<="), MAIOR_IGUAL(">="),
+        IMPRIME("println");
+
+        public final String simbolo;
+
+        Op(String simbolo) {
+            this.simbolo = simbolo;
+        }
+
+        public boolean binaria() {
+            return ordinal() >= SOMA.ordinal() && this != IMPRIME;
+        }
+    }
+
+    public sealed interface Valor {
+        Tipo tipo();
+    }
+
+    public record Registrador(int numero, Tipo tipo) implements Valor {}
+
+    // valor é Integer, Float, Boolean ou String, conforme o tipo
+    public record Constante(Object valor, Tipo tipo) implements Valor {}
+
+    /**
+     * {@code destino = a op b}. COPIA e PARA_FLOAT só usam {@code a};
+     * IMPRIME não tem destino. {@code token} é o do nó da AST que gerou a
+     * instrução, para a linha das mensagens de erro.
+     */
+    public record Instrucao(Op op, Registrador destino, Valor a, Valor b, int token) {
+
+        // instrução que pode lançar exceção: divisão inteira por um divisor que pode ser zero,
+        // e concatenação (que pode esgotar a memória)
+        public boolean podeFalhar() {
+            if (op == Op.CONCATENA) return true;
+            return op == Op.DIVISAO && destino.tipo() == Tipo.INT
+                    && !(b instanceof Constante c && (Integer) c.valor() != 0);
+        }
+
+        // só calcula um valor: dá para apagar, repetir o resultado ou mudar de lugar
+        public boolean pura() {
+            return op != Op.IMPRIME && !podeFalhar();
+        }
+    }
+
+    /**
+     * Bloco básico. Termina num salto para {@code seVerdade}, num desvio
+     * (quando {@code condicao} não é null) ou no fim do programa (os dois
+     * alvos null).
+     */
+    public static final class Bloco {
+        public final int id;
+        public final List<Instrucao> instrucoes = new ArrayList<>();
+        public Valor condicao;
+        public Bloco seVerdade;
+        public Bloco seFalso;
+        public final List<Bloco> predecessores = new ArrayList<>();
+
+        Bloco(int id) {
+            this.id = id;
+        }
+
+        public List<Bloco> sucessores() {
+            if (seVerdade == null) return List.of();
+            if (condicao == null || seFalso == seVerdade) return List.of(seVerdade);
+            return List.of(seVerdade, seFalso);
+        }
+
+        void saltar(Bloco alvo) {
+            condicao = null;
+            seVerdade = alvo;
+            seFalso = null;
+        }
+
+        void desviar(Valor condicao, Bloco seVerdade, Bloco seFalso) {
+            this.condicao = condicao;
+            this.seVerdade = seVerdade;
+            this.seFalso = seFalso;
+        }
+
+        // troca o alvo antigo pelo novo no fim do bloco
+        void redirecionar(Bloco antigo, Bloco novo) {
+            if (seVerdade == antigo) seVerdade = novo;
+            if (seFalso == antigo) seFalso = novo;
+        }
+    }
+
+    /**
+     * O programa inteiro: o primeiro bloco da lista é a entrada. Guarda o
+     * tipo e o nome (null nos temporários) de cada registrador.
+     */
+    public static final class Funcao {
+        public final List<Bloco> blocos = new ArrayList<>();
+        private final List<Tipo> tipos = new ArrayList<>();
+        private final List<String> nomes = new ArrayList<>();
+        private int proximoBloco;
+
+        public Bloco entrada() {
+            return blocos.get(0);
+        }
+
+        public int registradores() {
+            return tipos.size();
+        }
+
+        public Tipo tipo(int registrador) {
+            return tipos.get(registrador);
+        }
+
+        Registrador novoRegistrador(Tipo tipo, String nome) {
+            tipos.add(tipo);
+            nomes.add(nome);
+            return new Registrador(tipos.size() - 1, tipo);
+        }
+
+        Bloco novoBloco() {
+            Bloco bloco = new Bloco(proximoBloco++);
+            blocos.add(bloco);
+            return bloco;
+        }
+
+        // bloco novo na lista logo antes de outro (só para o dump ficar na ordem do código)
+        Bloco novoBlocoAntes(Bloco depois) {
+            Bloco bloco = new Bloco(proximoBloco++);
+            blocos.add(blocos.indexOf(depois), bloco);
+            return bloco;
+        }
+
+        public int instrucoes() {
+            int total = 0;
+            for (Bloco bloco : blocos) {
+                total += bloco.instrucoes.size();
+            }
+            return total;
+        }
+
+        /**
+         * Tira os blocos que não dá para alcançar a partir da entrada e
+         * refaz a lista de predecessores. Chamar depois de mexer nas arestas.
+         */
+        void ligar() {
+            BitSet alcancados = new BitSet();
+            List<Bloco> pilha = new ArrayList<>();
+            pilha.add(entrada());
+            alcancados.set(entrada().id);
+            while (!pilha.isEmpty()) {
+                for (Bloco sucessor : pilha.remove(pilha.size() - 1).sucessores()) {
+                    if (!alcancados.get(sucessor.id)) {
+                        alcancados.set(sucessor.id);
+                        pilha.add(sucessor);
+                    }
+                }
+            }
+            blocos.removeIf(bloco -> !alcancados.get(bloco.id));
+            for (Bloco bloco : blocos) {
+                bloco.predecessores.clear();
+            }
+            for (Bloco bloco : blocos) {
+                for (Bloco sucessor : bloco.sucessores()) {
+                    sucessor.predecessores.add(bloco);
+                }
+            }
+        }
+
+        /**
+         * Dominadores de cada bloco, pelo algoritmo iterativo: indexado pela
+         * posição do bloco em {@link #blocos}.
+         */
+        BitSet[] dominadores() {
+            int n = blocos.size();
+            Map<Bloco, Integer> indice = indices();
+            BitSet[] dom = new BitSet[n];
+            dom[0] = new BitSet();
+            dom[0].set(0);
+            for (int i = 1; i < n; i++) {
+                dom[i] = new BitSet();
+                dom[i].set(0, n);
+            }
+            boolean mudou = true;
+            while (mudou) {
+                mudou = false;
+                for (int i = 1; i < n; i++) {
+                    BitSet novo = new BitSet();
+                    novo.set(0, n);
+                    for (Bloco predecessor : blocos.get(i).predecessores) {
+                        novo.and(dom[indice.get(predecessor)]);
+                    }
+                    novo.set(i);
+                    if (!novo.equals(dom[i])) {
+                        dom[i] = novo;
+                        mudou = true;
+                    }
+                }
+            }
+            return dom;
+        }
+
+        Map<Bloco, Integer> indices() {
+            Map<Bloco, Integer> indice = new HashMap<>();
+            for (int i = 0; i < blocos.size(); i++) {
+                indice.put(blocos.get(i), i);
+            }
+            return indice;
+        }
+
+        public String nome(Valor valor) {
+            return switch (valor) {
+                case Constante c -> c.tipo() == Tipo.STRING ? '"' + (String) c.valor() + '"'
+                        : c.tipo() == Tipo.FLOAT ? c.valor() + "f" : String.valueOf(c.valor());
+                case Registrador r -> {
+                    String nome = nomes.get(r.numero());
+                    yield nome == null ? "t" + r.numero() : nome + "." + r.numero();
+                }
+            };
+        }
+
+        // texto legível do CFG, um bloco por parágrafo
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (Bloco bloco : blocos) {
+                sb.append('B').append(bloco.id).append(':');
+                if (!bloco.predecessores.isEmpty()) {
+                    sb.append("    ; de");
+                    for (Bloco predecessor : bloco.predecessores) {
+                        sb.append(" B").append(predecessor.id);
+                    }
+                }
+                sb.append('\n');
+                for (Instrucao instrucao : bloco.instrucoes) {
+                    sb.append("    ");
+                    if (instrucao.op() == Op.IMPRIME) {
+                        sb.append("println ").append(nome(instrucao.a()));
+                    } else {
+                        sb.append(nome(instrucao.destino())).append(" = ");
+                        if (instrucao.op() == Op.COPIA) {
+                            sb.append(nome(instrucao.a()));
+                        } else if (instrucao.op() == Op.PARA_FLOAT) {
+                            sb.append("(float) ").append(nome(instrucao.a()));
+                        } else {
+                            sb.append(nome(instrucao.a())).append(' ').append(instrucao.op().simbolo)
+                                    .append(' ').append(nome(instrucao.b()));
+                        }
+                    }
+                    sb.append('\n');
+                }
+                if (bloco.condicao != null) {
+                    sb.append("    if ").append(nome(bloco.condicao)).append(" goto B").append(bloco.seVerdade.id)
+                            .append(" else B").append(bloco.seFalso.id).append('\n');
+                } else if (bloco.seVerdade != null) {
+                    sb.append("    goto B").append(bloco.seVerdade.id).append('\n');
+                } else {
+                    sb.append("    fim\n");
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    // registradores lidos por uma instrução (0, 1 ou 2)
+    static int[] lidos(Instrucao instrucao) {
+        int[] lidos = new int[2];
+        int n = 0;
+        if (instrucao.a() instanceof Registrador r) lidos[n++] = r.numero();
+        if (instrucao.b() instanceof Registrador r) lidos[n++] = r.numero();
+        return Arrays.copyOf(lidos, n);
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import util.Ast.*;
+
+/**
+ * Simplifica a AST entre o {@link Parser} e a execução (ou a geração de
+ * código):
+ * <ul>
+ * <li>contas e concatenações entre constantes viram um literal;</li>
+ * <li>uma variável com uma única escrita, de valor constante, é trocada pelo
+ * valor em todas as leituras, e a escrita some;</li>
+ * <li>{@code if} com condição constante fica só com o ramo que roda e
+ * {@code while} com condição falsa some.</li>
+ * </ul>
+ *
+ * Nada que poderia falhar durante a execução é calculado aqui (divisão
+ * inteira por zero, String grande demais), então o programa otimizado
+ * imprime o mesmo e falha na mesma linha que o original. A árvore de
+ * entrada tem que ser de um programa que o {@link Interpretador} já aceitou:
+ * tipos certos e toda variável com valor antes de ser lida.
+ *
+ * @author david
+ */
+public class Otimizador {
+
+    // maior String montada aqui; mesmo só com caracteres de 3 bytes cabe numa constante do .class
+    private static final int MAX_TEXTO = 1 << 14;
+
+    // uma variável visível no ponto atual da árvore
+    private static final class Info {
+        final String tipo;
+        final int escritas;
+        Object constante; // valor, depois que a única escrita (constante) passou
+
+        Info(String tipo, int escritas) {
+            this.tipo = tipo;
+            this.escritas = escritas;
+        }
+    }
+
+    private final Map<Declaracao, Integer> escritas = new IdentityHashMap<>();
+    private final Deque<Map<String, Declaracao>> declaracoes = new ArrayDeque<>();
+    private final Deque<Map<String, Info>> escopos = new ArrayDeque<>();
+    private int eliminados;
+
+    public Programa otimizar(Programa programa) {
+        contarEscritas(programa.comandos());
+        Programa otimizado = new Programa(bloco(programa.comandos()));
+        eliminados = nos(programa) - nos(otimizado);
+        return otimizado;
+    }
+
+    // quantos nós a última otimização tirou da árvore
+    public int eliminados() {
+        return eliminados;
+    }
+
+    // tamanho da árvore, contando comandos e expressões
+    public static int nos(Ast no) {
+        return switch (no) {
+            case Programa p -> 1 + nos(p.comandos());
+            case Declaracao d -> 1 + (d.valor() == null ? 0 : nos(d.valor()));
+            case Atribuicao a -> 1 + nos(a.valor());
+            case Impressao i -> 1 + nos(i.valor());
+            case Se s -> 1 + nos(s.condicao()) + nos(s.entao()) + (s.senao() == null ? 0 : nos(s.senao()));
+            case Enquanto e -> 1 + nos(e.condicao()) + nos(e.corpo());
+            case Binaria b -> 1 + nos(b.esquerda()) + nos(b.direita());
+            default -> 1;
+        };
+    }
+
+    private static int nos(List<Comando> comandos) {
+        int total = 0;
+        for (Comando comando : comandos) {
+            total += nos(comando);
+        }
+        return total;
+    }
+
+    // primeira passada: quantas vezes cada variável recebe valor, contando o inicializador
+    private void contarEscritas(List<Comando> comandos) {
+        declaracoes.push(new HashMap<>());
+        for (Comando comando : comandos) {
+            switch (comando) {
+                case Declaracao d -> {
+                    declaracoes.peek().put(d.nome(), d);
+                    escritas.put(d, d.valor() != null ? 1 : 0);
+                }
+                case Atribuicao a -> {
+                    for (Map<String, Declaracao> escopo : declaracoes) {
+                        Declaracao d = escopo.get(a.nome());
+                        if (d != null) {
+                            escritas.merge(d, 1, Integer::sum);
+                            break;
+                        }
+                    }
+                }
+                case Impressao i -> {}
+                case Se s -> {
+                    contarEscritas(s.entao());
+                    if (s.senao() != null) contarEscritas(s.senao());
+                }
+                case Enquanto e -> contarEscritas(e.corpo());
+            }
+        }
+        declaracoes.pop();
+    }
+
+    private List<Comando> bloco(List<Comando> comandos) {
+        escopos.push(new HashMap<>());
+        List<Comando> saida = new ArrayList<>(comandos.size());
+        for (Comando comando : comandos) {
+            comando(comando, saida);
+        }
+        escopos.pop();
+        return saida;
+    }
+
+    private void comando(Comando comando, List<Comando> saida) {
+        switch (comando) {
+            case Declaracao d -> {
+                // o inicializador não enxerga a variável que está sendo declarada
+                Expressao valor = d.valor() != null ? expressao(d.valor()) : null;
+                Info info = new Info(d.tipo(), escritas.get(d));
+                escopos.peek().put(d.nome(), info);
+                if (propagar(info, valor)) return;
+                saida.add(valor == d.valor() ? d : new Declaracao(d.token(), d.tipo(), d.nome(), valor));
+            }
+            case Atribuicao a -> {
+                Expressao valor = expressao(a.valor());
+                if (propagar(procurar(a.nome()), valor)) return;
+                saida.add(valor == a.valor() ? a : new Atribuicao(a.token(), a.nome(), valor));
+            }
+            case Impressao i -> {
+                Expressao valor = expressao(i.valor());
+                saida.add(valor == i.valor() ? i : new Impressao(i.token(), valor));
+            }
+            case Se s -> {
+                Expressao condicao = expressao(s.condicao());
+                if (constante(condicao) instanceof Boolean b) {
+                    List<Comando> ramo = b ? s.entao() : s.senao();
+                    if (ramo == null) return;
+                    List<Comando> comandos = bloco(ramo);
+                    if (declara(comandos)) {
+                        // as declarações do ramo não podem vazar para o bloco de fora
+                        saida.add(new Se(s.token(), new Booleano(condicao.token(), true), comandos, null));
+                    } else {
+                        saida.addAll(comandos);
+                    }
+                    return;
+                }
+                List<Comando> entao = bloco(s.entao());
+                List<Comando> senao = s.senao() != null ? bloco(s.senao()) : null;
+                saida.add(new Se(s.token(), condicao, entao, senao));
+            }
+            case Enquanto e -> {
+                Expressao condicao = expressao(e.condicao());
+                if (Boolean.FALSE.equals(constante(condicao))) return;
+                saida.add(new Enquanto(e.token(), condicao, bloco(e.corpo())));
+            }
+        }
+    }
+
+    // a única escrita da variável é constante: guarda o valor e a escrita pode sumir
+    private boolean propagar(Info info, Expressao valor) {
+        if (info == null || info.escritas != 1 || valor == null) return false;
+        Object constante = constante(valor);
+        if (constante == null) return false;
+        // int guardado em float já vira float aqui, como na atribuição
+        info.constante = info.tipo.equals("float") && constante instanceof Integer i ? (Object) i.floatValue() : constante;
+        return true;
+    }
+
+    private static boolean declara(List<Comando> comandos) {
+        for (Comando comando : comandos) {
+            if (comando instanceof Declaracao) return true;
+        }
+        return false;
+    }
+
+    private Info procurar(String nome) {
+        for (Map<String, Info> escopo : escopos) {
+            Info info = escopo.get(nome);
+            if (info != null) return info;
+        }
+        return null;
+    }
+
+    // devolve o mesmo objeto quando nada mudou
+    private Expressao expressao(Expressao expressao) {
+        switch (expressao) {
+            case Variavel v -> {
+                Info info = procurar(v.nome());
+                return info != null && info.constante != null ? literal(info.constante, v.token()) : v;
+            }
+            case Binaria b -> {
+                Expressao esq = expressao(b.esquerda());
+                Expressao dir = expressao(b.direita());
+                Object x = constante(esq);
+                Object y = constante(dir);
+                if (x != null && y != null) {
+                    Object valor = dobrar(b.operador(), x, y);
+                    if (valor != null) return literal(valor, b.token());
+                }
+
+                // (s + "a") + "b" vira s + "ab" quando a soma de dentro já é concatenação
+                if (b.operador() == Operador.SOMA && y != null && esq instanceof Binaria e
+                        && e.operador() == Operador.SOMA && "String".equals(tipo(e))) {
+                    Object c = constante(e.direita());
+                    if (c != null) {
+                        String texto = juntar(c, y);
+                        if (texto != null) {
+                            return new Binaria(b.token(), Operador.SOMA, e.esquerda(), new Texto(e.direita().token(), texto));
+                        }
+                    }
+                }
+
+                if (esq == b.esquerda() && dir == b.direita()) return b;
+                return new Binaria(b.token(), b.operador(), esq, dir);
+            }
+            default -> {
+                return expressao;
+            }
+        }
+    }
+
+    // valor de um literal (Integer, Float, Boolean ou String), ou null se não for literal
+    private static Object constante(Expressao expressao) {
+        return switch (expressao) {
+            case Numero n -> {
+                // 010 é octal no Java; o Interpretador já recusa, mas aqui também não vale
+                if (n.valor().length() > 1 && n.valor().charAt(0) == '0') yield null;
+                try {
+                    yield Integer.valueOf(n.valor());
+                } catch (NumberFormatException e) {
+                    yield null;
+                }
+            }
+            case Real r -> r.valor();
+            case Texto t -> t.valor();
+            case Booleano b -> b.valor();
+            default -> null;
+        };
+    }
+
+    private static Expressao literal(Object valor, int token) {
+        return switch (valor) {
+            case Integer i -> new Numero(token, i.toString());
+            case Float f -> new Real(token, f);
+            case Boolean b -> new Booleano(token, b);
+            default -> new Texto(token, (String) valor);
+        };
+    }
+
+    // a conta como o Java faria, ou null quando ela falharia em tempo de execução
+    private static Object dobrar(Operador op, Object x, Object y) {
+        if (op == Operador.SOMA && (x instanceof String || y instanceof String)) {
+            return juntar(x, y);
+        }
+        if (x instanceof Boolean a && y instanceof Boolean c) {
+            return switch (op) {
+                case IGUAL -> a.booleanValue() == c.booleanValue();
+                case DIFERENTE -> a.booleanValue() != c.booleanValue();
+                default -> null;
+            };
+        }
+        if (!(x instanceof Number) || !(y instanceof Number)) {
+            return null;
+        }
+        if (x instanceof Float || y instanceof Float) {
+            float a = ((Number) x).floatValue(), c = ((Number) y).floatValue();
+            return switch (op) {
+                case SOMA -> a + c;
+                case SUBTRACAO -> a - c;
+                case MULTIPLICACAO -> a * c;
+                case DIVISAO -> a / c;
+                case IGUAL -> a == c;
+                case DIFERENTE -> a != c;
+                case MENOR -> a < c;
+                case MAIOR -> a > c;
+                case MENOR_IGUAL -> a <= c;
+                case MAIOR_IGUAL -> a >= c;
+            };
+        }
+        int a = (Integer) x, c = (Integer) y;
+        return switch (op) {
+            case SOMA -> a + c;
+            case SUBTRACAO -> a - c;
+            case MULTIPLICACAO -> a * c;
+            case DIVISAO -> c == 0 ? null : a / c;
+            case IGUAL -> a == c;
+            case DIFERENTE -> a != c;
+            case MENOR -> a < c;
+            case MAIOR -> a > c;
+            case MENOR_IGUAL -> a <= c;
+            case MAIOR_IGUAL -> a >= c;
+        };
+    }
+
+    // mesma conversão da concatenação do Java; null se o resultado passar do limite
+    private static String juntar(Object x, Object y) {
+        String a = String.valueOf(x), c = String.valueOf(y);
+        if (a.length() + c.length() > MAX_TEXTO) return null;
+        return a.concat(c);
+    }
+
+    // tipo da expressão com os nomes da declaração, null se não der para saber
+    private String tipo(Expressao expressao) {
+        return switch (expressao) {
+            case Numero n -> "int";
+            case Real r -> "float";
+            case Texto t -> "String";
+            case Booleano b -> "boolean";
+            case Variavel v -> {
+                Info info = procurar(v.nome());
+                yield info != null ? info.tipo : null;
+            }
+            case Binaria b -> {
+                if (b.operador().relacional()) yield "boolean";
+                String esq = tipo(b.esquerda());
+                String dir = tipo(b.direita());
+                if (esq == null || dir == null) yield null;
+                if (b.operador() == Operador.SOMA && (esq.equals("String") || dir.equals("String"))) yield "String";
+                yield esq.equals("float") || dir.equals("float") ? "float" : "int";
+            }
+        };
+    }
+}
@@ -0,0 +1,501 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import util.Ir.*;
+
+/**
+ * Passos de otimização sobre a {@link Ir}. Cada um devolve quantas
+ * mudanças fez, e o {@link #main} mostra o efeito de cada passo no número
+ * de instruções executadas pelo {@link InterpretadorIr}.
+ *
+ * <ul>
+ * <li>propagação de cópias: depois de {@code x = y}, lê {@code y} no lugar
+ * de {@code x} enquanto nenhum dos dois mudar (vale também para
+ * {@code x = 5});</li>
+ * <li>subexpressões comuns: {@code a + b} calculado de novo, sem que
+ * {@code a}, {@code b} ou o resultado anterior tenham mudado em nenhum
+ * caminho, vira uma cópia do resultado anterior;</li>
+ * <li>código invariante de laço: uma conta dentro do {@code while} cujos
+ * operandos não mudam no laço passa para um bloco antes dele;</li>
+ * <li>instruções mortas: o que grava um registrador que ninguém lê depois
+ * é apagado (é o que faz as cópias das outras passadas sumirem).</li>
+ * </ul>
+ *
+ * Os passos usam análise de fluxo de dados sobre o CFG com um BitSet por
+ * bloco. Nenhum deles mexe numa instrução que pode lançar exceção, a não ser
+ * para trocá-la por outra igual que já rodou sem falhar.
+ *
+ * @author david
+ */
+public class OtimizadorIr {
+
+    public record Relatorio(int copias, int subexpressoes, int invariantes, int mortas) {}
+
+    // todos os passos, na ordem em que um abre espaço para o outro
+    public static Relatorio otimizar(Funcao funcao) {
+        int copias = propagarCopias(funcao);
+        int subexpressoes = eliminarSubexpressoes(funcao);
+        copias += propagarCopias(funcao);
+        int invariantes = moverInvariantes(funcao);
+        // contas iguais de laços diferentes só se encontram depois de sair dos laços
+        subexpressoes += eliminarSubexpressoes(funcao);
+        copias += propagarCopias(funcao);
+        int mortas = eliminarMortas(funcao);
+        return new Relatorio(copias, subexpressoes, invariantes, mortas);
+    }
+
+    /**
+     * Fatos de uma análise "disponível em todos os caminhos": cada fato é uma
+     * instrução que o gerou, e morre quando algum registrador dela é escrito.
+     */
+    private static final class Disponiveis {
+        final Map<Instrucao, Integer> indice = new IdentityHashMap<>();
+        final List<Instrucao> fatos = new ArrayList<>();
+        final BitSet[] afetados; // por registrador: fatos que morrem quando ele é escrito
+        BitSet[] entrada;
+
+        Disponiveis(Funcao funcao) {
+            afetados = new BitSet[funcao.registradores()];
+            for (int r = 0; r < afetados.length; r++) {
+                afetados[r] = new BitSet();
+            }
+        }
+
+        void adicionar(Instrucao fato) {
+            int i = fatos.size();
+            indice.put(fato, i);
+            fatos.add(fato);
+            afetados[fato.destino().numero()].set(i);
+            for (int r : Ir.lidos(fato)) {
+                afetados[r].set(i);
+            }
+        }
+
+        // efeito de uma instrução sobre o conjunto de fatos disponíveis
+        void aplicar(Instrucao instrucao, BitSet disponiveis) {
+            if (instrucao.destino() == null) return;
+            disponiveis.andNot(afetados[instrucao.destino().numero()]);
+            Integer i = indice.get(instrucao);
+            if (i != null) disponiveis.set(i);
+        }
+
+        // ponto fixo: entra num bloco o que sai de todos os predecessores
+        void resolver(Funcao funcao) {
+            Map<Bloco, Integer> posicao = funcao.indices();
+            int n = funcao.blocos.size();
+            entrada = new BitSet[n];
+            BitSet[] saida = new BitSet[n];
+            for (int b = 0; b < n; b++) {
+                entrada[b] = new BitSet();
+                saida[b] = new BitSet();
+                if (b > 0) saida[b].set(0, fatos.size());
+            }
+            boolean mudou = true;
+            while (mudou) {
+                mudou = false;
+                for (int b = 0; b < n; b++) {
+                    Bloco bloco = funcao.blocos.get(b);
+                    BitSet atual = new BitSet();
+                    if (b > 0) {
+                        atual.set(0, fatos.size());
+                        for (Bloco predecessor : bloco.predecessores) {
+                            atual.and(saida[posicao.get(predecessor)]);
+                        }
+                    }
+                    entrada[b] = (BitSet) atual.clone();
+                    for (Instrucao instrucao : bloco.instrucoes) {
+                        aplicar(instrucao, atual);
+                    }
+                    if (!atual.equals(saida[b])) {
+                        saida[b] = atual;
+                        mudou = true;
+                    }
+                }
+            }
+        }
+    }
+
+    public static int propagarCopias(Funcao funcao) {
+        Disponiveis copias = new Disponiveis(funcao);
+        for (Bloco bloco : funcao.blocos) {
+            for (Instrucao instrucao : bloco.instrucoes) {
+                if (instrucao.op() == Op.COPIA && !instrucao.a().equals(instrucao.destino())) {
+                    copias.adicionar(instrucao);
+                }
+            }
+        }
+        if (copias.fatos.isEmpty()) return 0;
+        copias.resolver(funcao);
+
+        int trocas = 0;
+        for (int b = 0; b < funcao.blocos.size(); b++) {
+            Bloco bloco = funcao.blocos.get(b);
+            BitSet disponiveis = copias.entrada[b];
+            List<Instrucao> instrucoes = bloco.instrucoes;
+            for (int i = 0; i < instrucoes.size(); i++) {
+                Instrucao instrucao = instrucoes.get(i);
+                Valor a = origem(copias, disponiveis, instrucao.a());
+                Valor c = origem(copias, disponiveis, instrucao.b());
+                if (a != instrucao.a() || c != instrucao.b()) {
+                    trocas += (a != instrucao.a() ? 1 : 0) + (c != instrucao.b() ? 1 : 0);
+                    Instrucao nova = new Instrucao(instrucao.op(), instrucao.destino(), a, c, instrucao.token());
+                    instrucoes.set(i, nova);
+                    // z = x virou z = y com y == x: "z tem o valor de x" continua valendo
+                    Integer fato = copias.indice.get(instrucao);
+                    if (fato != null) copias.indice.put(nova, fato);
+                    instrucao = nova;
+                }
+                copias.aplicar(instrucao, disponiveis);
+            }
+            if (bloco.condicao != null) {
+                Valor condicao = origem(copias, disponiveis, bloco.condicao);
+                if (condicao != bloco.condicao) {
+                    bloco.condicao = condicao;
+                    trocas++;
+                }
+            }
+        }
+        return trocas;
+    }
+
+    // de onde veio o valor do registrador, se houver uma cópia dele disponível
+    private static Valor origem(Disponiveis copias, BitSet disponiveis, Valor valor) {
+        if (!(valor instanceof Registrador r)) return valor;
+        BitSet candidatas = (BitSet) copias.afetados[r.numero()].clone();
+        candidatas.and(disponiveis);
+        for (int i = candidatas.nextSetBit(0); i >= 0; i = candidatas.nextSetBit(i + 1)) {
+            Instrucao copia = copias.fatos.get(i);
+            if (copia.destino().equals(r)) return copia.a();
+        }
+        return valor;
+    }
+
+    private record Chave(Op op, Valor a, Valor b) {}
+
+    public static int eliminarSubexpressoes(Funcao funcao) {
+        Disponiveis contas = new Disponiveis(funcao);
+        Map<Chave, BitSet> porChave = new HashMap<>();
+        for (Bloco bloco : funcao.blocos) {
+            for (Instrucao instrucao : bloco.instrucoes) {
+                // x = x + 1 não deixa nada disponível: o resultado já muda o operando
+                if (calcula(instrucao) && !lido(instrucao, instrucao.destino())) {
+                    porChave.computeIfAbsent(chave(instrucao), k -> new BitSet()).set(contas.fatos.size());
+                    contas.adicionar(instrucao);
+                }
+            }
+        }
+        if (contas.fatos.isEmpty()) return 0;
+        contas.resolver(funcao);
+
+        int trocas = 0;
+        for (int b = 0; b < funcao.blocos.size(); b++) {
+            BitSet disponiveis = contas.entrada[b];
+            List<Instrucao> instrucoes = funcao.blocos.get(b).instrucoes;
+            for (int i = 0; i < instrucoes.size(); i++) {
+                Instrucao instrucao = instrucoes.get(i);
+                if (calcula(instrucao)) {
+                    BitSet iguais = porChave.get(chave(instrucao));
+                    if (iguais != null && iguais.intersects(disponiveis)) {
+                        BitSet candidatas = (BitSet) iguais.clone();
+                        candidatas.and(disponiveis);
+                        Instrucao anterior = contas.fatos.get(candidatas.nextSetBit(0));
+                        Instrucao copia = new Instrucao(Op.COPIA, instrucao.destino(), anterior.destino(), null, instrucao.token());
+                        instrucoes.set(i, copia);
+                        instrucao = copia;
+                        trocas++;
+                    }
+                }
+                contas.aplicar(instrucao, disponiveis);
+            }
+        }
+        return trocas;
+    }
+
+    private static boolean calcula(Instrucao instrucao) {
+        return instrucao.op().binaria() || instrucao.op() == Op.PARA_FLOAT;
+    }
+
+    private static Chave chave(Instrucao instrucao) {
+        return new Chave(instrucao.op(), instrucao.a(), instrucao.b());
+    }
+
+    private static boolean lido(Instrucao instrucao, Registrador registrador) {
+        return registrador.equals(instrucao.a()) || registrador.equals(instrucao.b());
+    }
+
+    /**
+     * Tira dos laços as contas invariantes. Só move instrução que não pode
+     * falhar e cujo destino é escrito uma única vez no programa todo: como o
+     * programa já passou pela regra de atribuição definida, toda leitura
+     * desse registrador vem depois da escrita, então calcular antes do laço
+     * não muda nenhum valor lido (mesmo que o corpo nunca rode).
+     */
+    public static int moverInvariantes(Funcao funcao) {
+        int movidas = 0;
+        boolean mudou = true;
+        while (mudou) {
+            mudou = false;
+            funcao.ligar();
+            // do laço mais interno para o mais externo; depois de mover, o CFG mudou e tudo é refeito
+            List<Map.Entry<Bloco, BitSet>> lacos = new ArrayList<>(lacos(funcao).entrySet());
+            lacos.sort((x, y) -> Integer.compare(x.getValue().cardinality(), y.getValue().cardinality()));
+            for (Map.Entry<Bloco, BitSet> laco : lacos) {
+                int n = moverInvariantes(funcao, laco.getKey(), laco.getValue());
+                if (n > 0) {
+                    movidas += n;
+                    mudou = true;
+                    break;
+                }
+            }
+        }
+        return movidas;
+    }
+
+    // laços naturais, pelo cabeçalho: uma aresta B -> H em que H domina B fecha um laço
+    private static Map<Bloco, BitSet> lacos(Funcao funcao) {
+        BitSet[] dominadores = funcao.dominadores();
+        Map<Bloco, Integer> posicao = funcao.indices();
+        Map<Bloco, BitSet> lacos = new LinkedHashMap<>();
+        for (int b = 0; b < funcao.blocos.size(); b++) {
+            for (Bloco sucessor : funcao.blocos.get(b).sucessores()) {
+                int h = posicao.get(sucessor);
+                if (!dominadores[b].get(h)) continue;
+
+                BitSet corpo = lacos.computeIfAbsent(sucessor, k -> new BitSet());
+                corpo.set(h);
+                List<Integer> pilha = new ArrayList<>();
+                if (!corpo.get(b)) {
+                    corpo.set(b);
+                    pilha.add(b);
+                }
+                while (!pilha.isEmpty()) {
+                    for (Bloco predecessor : funcao.blocos.get(pilha.remove(pilha.size() - 1)).predecessores) {
+                        int p = posicao.get(predecessor);
+                        if (!corpo.get(p)) {
+                            corpo.set(p);
+                            pilha.add(p);
+                        }
+                    }
+                }
+            }
+        }
+        return lacos;
+    }
+
+    private static int moverInvariantes(Funcao funcao, Bloco cabecalho, BitSet laco) {
+        int[] escritas = new int[funcao.registradores()];
+        int[] escritasNoLaco = new int[funcao.registradores()];
+        for (int b = 0; b < funcao.blocos.size(); b++) {
+            for (Instrucao instrucao : funcao.blocos.get(b).instrucoes) {
+                if (instrucao.destino() == null) continue;
+                escritas[instrucao.destino().numero()]++;
+                if (laco.get(b)) escritasNoLaco[instrucao.destino().numero()]++;
+            }
+        }
+
+        // marca em ordem de dependência: uma instrução só entra depois das que ela lê
+        BitSet invariantes = new BitSet();
+        List<Instrucao> mover = new ArrayList<>();
+        Map<Instrucao, Bloco> origem = new IdentityHashMap<>();
+        boolean achou = true;
+        while (achou) {
+            achou = false;
+            for (int b = laco.nextSetBit(0); b >= 0; b = laco.nextSetBit(b + 1)) {
+                Bloco bloco = funcao.blocos.get(b);
+                for (Instrucao instrucao : bloco.instrucoes) {
+                    if (instrucao.destino() == null || !instrucao.pura() || origem.containsKey(instrucao)) continue;
+                    int destino = instrucao.destino().numero();
+                    if (escritas[destino] != 1) continue;
+                    boolean invariante = true;
+                    for (int r : Ir.lidos(instrucao)) {
+                        if (escritasNoLaco[r] > 0 && !invariantes.get(r)) invariante = false;
+                    }
+                    if (invariante) {
+                        invariantes.set(destino);
+                        mover.add(instrucao);
+                        origem.put(instrucao, bloco);
+                        achou = true;
+                    }
+                }
+            }
+        }
+        if (mover.isEmpty()) return 0;
+
+        // os de fora entram no laço só pelo cabeçalho; passam a entrar pelo bloco novo
+        // (as posições de laco valem para a lista de blocos antes de ele ser inserido)
+        List<Bloco> fora = new ArrayList<>();
+        for (Bloco predecessor : cabecalho.predecessores) {
+            if (!laco.get(funcao.blocos.indexOf(predecessor))) fora.add(predecessor);
+        }
+        Bloco preCabecalho = funcao.novoBlocoAntes(cabecalho);
+        for (Bloco predecessor : fora) {
+            predecessor.redirecionar(cabecalho, preCabecalho);
+        }
+        preCabecalho.saltar(cabecalho);
+
+        for (Instrucao instrucao : mover) {
+            List<Instrucao> lista = origem.get(instrucao).instrucoes;
+            for (int i = 0; i < lista.size(); i++) {
+                if (lista.get(i) == instrucao) {
+                    lista.remove(i);
+                    break;
+                }
+            }
+            preCabecalho.instrucoes.add(instrucao);
+        }
+        funcao.ligar();
+        return mover.size();
+    }
+
+    // apaga o que grava registrador que não é lido depois (nem por outro bloco)
+    public static int eliminarMortas(Funcao funcao) {
+        int apagadas = 0;
+        boolean mudou = true;
+        while (mudou) {
+            mudou = false;
+            BitSet[] vivos = vivosNaSaida(funcao);
+            for (int b = 0; b < funcao.blocos.size(); b++) {
+                Bloco bloco = funcao.blocos.get(b);
+                BitSet vivo = vivos[b];
+                if (bloco.condicao instanceof Registrador r) vivo.set(r.numero());
+                for (int i = bloco.instrucoes.size() - 1; i >= 0; i--) {
+                    Instrucao instrucao = bloco.instrucoes.get(i);
+                    Registrador destino = instrucao.destino();
+                    boolean inutil = destino != null && instrucao.pura()
+                            && (!vivo.get(destino.numero()) || destino.equals(instrucao.a()) && instrucao.op() == Op.COPIA);
+                    if (inutil) {
+                        bloco.instrucoes.remove(i);
+                        apagadas++;
+                        mudou = true;
+                        continue;
+                    }
+                    if (destino != null) vivo.clear(destino.numero());
+                    for (int r : Ir.lidos(instrucao)) {
+                        vivo.set(r);
+                    }
+                }
+            }
+        }
+        return apagadas;
+    }
+
+    // registradores lidos em algum caminho a partir do fim de cada bloco
+    private static BitSet[] vivosNaSaida(Funcao funcao) {
+        int n = funcao.blocos.size();
+        Map<Bloco, Integer> posicao = funcao.indices();
+        BitSet[] usados = new BitSet[n];
+        BitSet[] escritos = new BitSet[n];
+        for (int b = 0; b < n; b++) {
+            Bloco bloco = funcao.blocos.get(b);
+            usados[b] = new BitSet();
+            escritos[b] = new BitSet();
+            for (Instrucao instrucao : bloco.instrucoes) {
+                for (int r : Ir.lidos(instrucao)) {
+                    if (!escritos[b].get(r)) usados[b].set(r);
+                }
+                if (instrucao.destino() != null) escritos[b].set(instrucao.destino().numero());
+            }
+            if (bloco.condicao instanceof Registrador r && !escritos[b].get(r.numero())) usados[b].set(r.numero());
+        }
+
+        BitSet[] entrada = new BitSet[n];
+        BitSet[] saida = new BitSet[n];
+        for (int b = 0; b < n; b++) {
+            entrada[b] = new BitSet();
+            saida[b] = new BitSet();
+        }
+        boolean mudou = true;
+        while (mudou) {
+            mudou = false;
+            for (int b = n - 1; b >= 0; b--) {
+                BitSet fim = new BitSet();
+                for (Bloco sucessor : funcao.blocos.get(b).sucessores()) {
+                    fim.or(entrada[posicao.get(sucessor)]);
+                }
+                saida[b] = fim;
+                BitSet inicio = (BitSet) fim.clone();
+                inicio.andNot(escritos[b]);
+                inicio.or(usados[b]);
+                if (!inicio.equals(entrada[b])) {
+                    entrada[b] = inicio;
+                    mudou = true;
+                }
+            }
+        }
+        return saida;
+    }
+
+    /**
+     * Mostra a IR de um programa e o que cada passo mudou.
+     * Uso: {@code java util.OtimizadorIr [-v] arquivo} ({@code -v} imprime a IR depois de cada passo).
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("uso: java util.OtimizadorIr [-v] arquivo");
+            System.exit(2);
+        }
+        boolean detalhado = args[0].equals("-v");
+        String codigo = Files.readString(Path.of(args[args.length - 1]));
+        TokenBuffer tokens = new analisadorLexico().tokenizeBuffer(codigo);
+        Interpretador interpretador = Interpretador.preparar(tokens);
+        if (interpretador == null) {
+            System.err.println("O programa não cabe na gramática do Parser (ou só o javac sabe tratar).");
+            System.exit(1);
+        }
+
+        Funcao funcao = GeradorIr.gerar(interpretador.arvore());
+        String saida = medir("gerada", funcao, tokens, detalhado, null);
+        medir("propagação de cópias (" + propagarCopias(funcao) + ")", funcao, tokens, detalhado, saida);
+        medir("subexpressões comuns (" + eliminarSubexpressoes(funcao) + ")", funcao, tokens, detalhado, saida);
+        medir("propagação de cópias (" + propagarCopias(funcao) + ")", funcao, tokens, detalhado, saida);
+        medir("invariantes de laço (" + moverInvariantes(funcao) + ")", funcao, tokens, detalhado, saida);
+        medir("subexpressões comuns (" + eliminarSubexpressoes(funcao) + ")", funcao, tokens, detalhado, saida);
+        medir("propagação de cópias (" + propagarCopias(funcao) + ")", funcao, tokens, detalhado, saida);
+        medir("instruções mortas (" + eliminarMortas(funcao) + ")", funcao, tokens, detalhado, saida);
+        if (!detalhado) {
+            System.out.println();
+            System.out.print(funcao);
+        }
+    }
+
+    // roda a IR e imprime uma linha de medidas; devolve a saída do programa
+    private static String medir(String passo, Funcao funcao, TokenBuffer tokens, boolean detalhado, String esperada) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream saida = new PrintStream(bytes, false, StandardCharsets.UTF_8);
+        InterpretadorIr interpretador = new InterpretadorIr(funcao, tokens);
+        long inicio = System.nanoTime();
+        WorkerPool.Resultado resultado = interpretador.executar(saida);
+        long tempo = System.nanoTime() - inicio;
+        String texto = bytes.toString(StandardCharsets.UTF_8) + resultado.erro();
+
+        if (esperada == null) {
+            System.out.print(texto);
+            System.out.println();
+        } else if (!texto.equals(esperada)) {
+            System.out.println("!! a saída mudou depois deste passo");
+        }
+        System.out.printf("%-32s %5d instruções %4d blocos %12d executadas %9.2f ms%n",
+                passo, funcao.instrucoes(), funcao.blocos.size(), interpretador.executadas(), tempo / 1e6);
+        if (detalhado) {
+            System.out.print(funcao);
+            System.out.println();
+        }
+        return texto;
+    }
+}
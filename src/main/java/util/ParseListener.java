@@ -0,0 +1,33 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+/**
+ * Acompanha o {@link Parser} enquanto ele trabalha: recebe a árvore de
+ * derivação nó a nó (em pré-ordem) e as mensagens de log.
+ *
+ * Todos os métodos têm implementação vazia, então basta sobrescrever o que
+ * interessa. Sem listener o parser não monta rótulos nem mensagens.
+ *
+ * @author david
+ */
+public interface ParseListener {
+
+    // abre um nó da árvore de derivação; os próximos nós são filhos dele
+    default void enterNode(String label) {}
+
+    // nó sem filhos dentro do nó aberto
+    default void leaf(String label) {}
+
+    // fecha o último nó aberto
+    default void exitNode() {}
+
+    default void log(String message) {}
+
+    default void error(String message) {}
+
+    // chamado uma vez, no fim da análise (com ou sem erro)
+    default void finished() {}
+}
@@ -1,677 +1,651 @@
+
 package util;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
-import javax.swing.JCheckBox;
-import javax.swing.JTextPane;
-import javax.swing.JTree;
-import javax.swing.SwingUtilities;
-import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.DefaultTreeModel;
-import javax.swing.text.BadLocationException;
-import javax.swing.text.Style;
-import javax.swing.text.StyleConstants;
-import javax.swing.text.StyledDocument;
-import javax.swing.tree.TreeNode;
-import javax.swing.tree.TreePath;
+import util.Ast.*;
 import util.analisadorLexico.TokenType;
 
 public class Parser {
-    private final List<Token> tokens;
-    
+    private final TokenBuffer tokens;
+
     private int position = 0;
-    private JTextPane log;
-    private JTree arvoreDerivacao;
-    private JCheckBox passoAPasso;
-    private DefaultMutableTreeNode rootNode;
-    private DefaultTreeModel treeModel;
-    
-    private StyledDocument doc;
-    private Style defaultStyle;
-    private Style errorStyle;
-    private Style highlightStyle;
-    
-    private int delayMillis = 500; // Delay de 0.5 segundos
-    
+
+    // quem acompanha a análise (árvore de derivação, log); null = sem ninguém
+    private final ParseListener listener;
+
     // Tipos primitivos aceitos para declaração
     private static final Set<String> validTypes = Set.of("int", "float", "boolean", "String");
 
-    public Parser(List<Token> tokens, JTextPane log, JTree arvoreDerivacao, JCheckBox passoAPasso) {
-        this.tokens = tokens;
-        this.log = log;
-        this.arvoreDerivacao = arvoreDerivacao;
-        this.passoAPasso = passoAPasso;
-        
-        // Inicializa a árvore de derivação
-        this.rootNode = new DefaultMutableTreeNode("Programa");
-        this.treeModel = new DefaultTreeModel(rootNode);
-        this.arvoreDerivacao.setModel(treeModel);
-        
-        // Inicializa o documento e estilos
-        this.doc = log.getStyledDocument();
-        this.errorStyle = log.addStyle("error", null);
-        StyleConstants.setForeground(errorStyle, java.awt.Color.RED);
-        
-        try {
-            defaultStyle = log.addStyle("default", null);
-            StyleConstants.setFontFamily(defaultStyle, "Monospaced");
-            highlightStyle = log.addStyle("highlight", null);
-            StyleConstants.setBold(highlightStyle, true);
-        } catch (Exception e) {
-            // ignora
-        }
+    // operadores das expressões; a precedência de cada um vem do próprio Operador
+    private static final Operador[] ARITMETICOS = Arrays.stream(Operador.values())
+            .filter(operador -> !operador.relacional())
+            .toArray(Operador[]::new);
+
+    // um erro de sintaxe: token onde foi percebido (size() = fim dos tokens), linha e mensagem
+    public record Diagnostico(int token, int linha, String mensagem) {}
+
+    private final List<Diagnostico> diagnosticos = new ArrayList<>();
+
+    // false: para no primeiro erro (parse); true: anota e continua (parseRecovering)
+    private boolean recuperar;
+
+    // nós abertos no listener; um erro no meio do comando deixa alguns para fechar
+    private int abertos;
+
+    // nós da árvore de derivação (com ou sem listener), para a Telemetria
+    private int nos;
+
+    // a linha é contada a partir do último erro, já que eles aparecem em ordem
+    private int linhaPosicao = 0;
+    private int linhaAtual = 1;
+
+    // limites de comandos e blocos, para quem guarda a árvore por pedaços (ParserIncremental)
+    interface Limites {
+        void statementStart(int token);
+
+        // token depois do comando (incluindo o que a recuperação pulou)
+        void statementEnd(int token);
+
+        // primeiro token dentro das chaves
+        void blockStart(int token);
+
+        // o '}' do bloco, ou size() se os tokens acabaram antes
+        void blockEnd(int token);
+
+        // todo erro, inclusive o repetido no mesmo token que diagnosticos() deixa de fora
+        void error(Diagnostico diagnostico);
     }
 
-    private void applyDelay() {
-        if (passoAPasso != null && passoAPasso.isSelected()) {
-            try {
-                Thread.sleep(delayMillis);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-        }
+    private Limites limites;
+
+    void setLimites(Limites limites) {
+        this.limites = limites;
     }
-    
-    private void expandAllTreeNodes() {
-        for (int i = 0; i < arvoreDerivacao.getRowCount(); i++) {
-            arvoreDerivacao.expandRow(i);
+
+    // interrompe o comando com erro até o parseStatement que vai sincronizar
+    private static final class Recuperar extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Recuperar() {
+            super(null, null, false, false);
         }
     }
-    
-    private void ensureTreeVisible() {
-        SwingUtilities.invokeLater(() -> {
-            expandAllTreeNodes();
-            
-            // Rola até o final da árvore
-            int rowCount = arvoreDerivacao.getRowCount();
-            if (rowCount > 0) {
-                arvoreDerivacao.scrollRowToVisible(rowCount - 1);
+
+    private static final Recuperar RECUPERAR = new Recuperar();
+
+    public Parser(TokenBuffer tokens) {
+        this(tokens, null);
+    }
+
+    public Parser(TokenBuffer tokens, ParseListener listener) {
+        this.tokens = tokens;
+        this.listener = listener;
+    }
+
+    // árvore do programa; no primeiro erro de sintaxe lança RuntimeException
+    public Programa parse() {
+        recuperar = false;
+        return analisar();
+    }
+
+    /**
+     * Análise que não para no primeiro erro: cada erro vira um
+     * {@link Diagnostico} e a análise pula para o fim do comando (modo pânico,
+     * sincronizando no {@code ;} ou no {@code }} do bloco). A árvore devolvida
+     * tem só os comandos que passaram; os erros ficam em {@link #diagnosticos()}.
+     */
+    public Programa parseRecovering() {
+        recuperar = true;
+        return analisar();
+    }
+
+    // erros da última análise, em ordem
+    public List<Diagnostico> diagnosticos() {
+        return diagnosticos;
+    }
+
+    private Programa analisar() {
+        diagnosticos.clear();
+        position = 0;
+        abertos = 0;
+        linhaPosicao = 0;
+        linhaAtual = 1;
+        nos = 0;
+        // com listener o tempo é o da tela (e do passo a passo), não o do parser
+        Telemetria.Medida medida = listener == null ? Telemetria.get().iniciar(Telemetria.Fase.SINTATICA) : null;
+        try {
+            log("Iniciando análise sintática...\n");
+            if (listener != null && tokens.commentCount() > 0) {
+                log("[" + tokens.commentCount() + " comentário(s) ignorado(s)]\n");
+            }
+            Programa programa = parseProgram();
+            if (medida != null) {
+                medida.fim(Math.min(position, tokens.size()), nos);
+            }
+
+            log("\n\nFim da análise sintática\n\n");
+            return programa;
+        } finally {
+            // um erro de sintaxe conta como falha da fase
+            if (medida != null) {
+                medida.close();
+            }
+            if (listener != null) {
+                listener.finished();
             }
-            
-            // Força repaint para atualização visual imediata
-            arvoreDerivacao.repaint();
-        });
-    }
-    
-    public void parse() {
-        insertLog("Iniciando análise sintática...\n", null);
-        applyDelay();
-        parseProgram();
-        
-        applyDelay();
-        insertLog("\n\nFim da análise sintática\n\n", null);
-        applyDelay();
-
-        if (!isAtEnd()) {
-            insertLog("Tokens inesperados após o fim do programa.\n", errorStyle);
-            error("Tokens inesperados após o fim do programa.");
         }
-        
-        SwingUtilities.invokeLater(() -> {
-            expandAllTreeNodes();
-        });
     }
 
-    private DefaultMutableTreeNode parseProgram() {
-        DefaultMutableTreeNode programNode = addNode(rootNode, "Programa");
-        insertLog("\n-Programa detectado", null);
-        applyDelay();
-        
+    private Programa parseProgram() {
+        enter("Programa");
+        log("\n-Programa detectado");
+
+        List<Comando> comandos = new ArrayList<>();
         while (!isAtEnd()) {
-            DefaultMutableTreeNode statementNode = parseStatement();
-            if (statementNode != null) {
-                attach(programNode, statementNode);
-                applyDelay();
-            }
+            Comando comando = parseStatement();
+            if (comando != null) comandos.add(comando);
         }
-        
-        applyDelay();
-        
-        return programNode;
+
+        exit();
+        return new Programa(comandos);
     }
 
-    private DefaultMutableTreeNode parseStatement() {
-        Token first = peek();
-        DefaultMutableTreeNode statementNode = addNode(null, "Declaração");
-        applyDelay();
+    // null quando o comando tinha erro (só com recuperar; o erro já foi anotado)
+    private Comando parseStatement() {
+        int inicio = position;
+        int nivel = abertos;
+        if (limites != null) limites.statementStart(inicio);
+        Comando comando;
+        try {
+            comando = parseSingleStatement();
+        } catch (Recuperar e) {
+            while (abertos > nivel) exit();
+            synchronize(inicio);
+            comando = null;
+        }
+        if (limites != null) limites.statementEnd(position);
+        return comando;
+    }
 
-        if (first.type == TokenType.KEYWORD && validTypes.contains(first.value)) {
-            DefaultMutableTreeNode declNode = parseDeclaration();
-            attach(statementNode, declNode);
+    // nós criados desde o começo da análise (ou desde o primeiro parseStatementAt)
+    int nos() {
+        return nos;
+    }
+
+    // um comando a partir do token inicio, com recuperação de erro; devolve onde ele acabou
+    int parseStatementAt(int inicio) {
+        recuperar = true;
+        position = inicio;
+        abertos = 0;
+        parseStatement();
+        return position;
+    }
+
+    private Comando parseSingleStatement() {
+        int first = peek();
+        enter("Declaração");
+        Comando comando;
+
+        if (isType(first)) {
+            comando = parseDeclaration();
             expect(TokenType.SEPARATOR, ";");
-            addNode(statementNode, ";");
-            applyDelay();
+            leaf(";");
 
-        } else if (first.type == TokenType.IDENTIFIER) {
-            DefaultMutableTreeNode assignNode = parseAssignment();
-            attach(statementNode, assignNode);
+        } else if (tokens.type(first) == TokenType.IDENTIFIER) {
+            comando = parseAssignment();
             expect(TokenType.SEPARATOR, ";");
-            addNode(statementNode, ";");
-            applyDelay();
+            leaf(";");
 
-        } else if (first.type == TokenType.KEYWORD && first.value.equals("System.out.println")) {
-            DefaultMutableTreeNode printNode = parsePrint();
-            attach(statementNode, printNode);
+        } else if (tokens.is(first, TokenType.KEYWORD, "System.out.println")) {
+            comando = parsePrint();
             expect(TokenType.SEPARATOR, ";");
-            addNode(statementNode, ";");
-            applyDelay();
+            leaf(";");
 
-        } else if (first.type == TokenType.KEYWORD && first.value.equals("if")) {
-            DefaultMutableTreeNode ifNode = parseIf();
-            attach(statementNode, ifNode);
-            applyDelay();
+        } else if (tokens.is(first, TokenType.KEYWORD, "if")) {
+            comando = parseIf();
 
-        } else if (first.type == TokenType.KEYWORD && first.value.equals("while")) {
-            DefaultMutableTreeNode whileNode = parseWhile();
-            attach(statementNode, whileNode);
-            applyDelay();
+        } else if (tokens.is(first, TokenType.KEYWORD, "while")) {
+            comando = parseWhile();
 
         } else {
-            insertLog("\n----------\nComando inválido iniciado por: " + first.value + "\n", errorStyle);
+            logError("\n----------\nComando inválido iniciado por: ", first, "\n");
             error("Esperado declaração, atribuição, impressão, if ou while");
+            return null;
         }
 
-        return statementNode;
+        exit();
+        return comando;
     }
 
-    private DefaultMutableTreeNode parsePrint() {
-        DefaultMutableTreeNode printNode = addNode(null, "Print");
-        insertLog("\n-Comando de impressão detectado", null);
-        applyDelay();
-        
+    private Impressao parsePrint() {
+        enter("Print");
+        log("\n-Comando de impressão detectado");
+
         // PRINT
-        Token printToken = advance();
-        addNode(printNode, "Keyword: " + printToken.value);
-        insertLog("\n-Keyword detectada: " + printToken.value, null);
-        applyDelay();
+        int printToken = advance();
+        leaf("Keyword: ", printToken);
+        log("\n-Keyword detectada: ", printToken);
 
         // "("
         expect(TokenType.SEPARATOR, "(");
-        addNode(printNode, "(");
-        insertLog("\n-Aberto parêntese '('", null);
-        applyDelay();
+        leaf("(");
+        log("\n-Aberto parêntese '('");
 
         // Expressão dentro do print
-        DefaultMutableTreeNode exprNode = parseExpression();
-        attach(printNode, exprNode);
-        applyDelay();
+        Expressao valor = parseExpression();
 
         // ")"
         expect(TokenType.SEPARATOR, ")");
-        addNode(printNode, ")");
-        insertLog("\n-Fechado parêntese ')'", null);
-        applyDelay();
-        
-        return printNode;
+        leaf(")");
+        log("\n-Fechado parêntese ')'");
+
+        exit();
+        return new Impressao(printToken, valor);
     }
 
-    private DefaultMutableTreeNode parseAssignment() {
-        DefaultMutableTreeNode assignNode = addNode(null, "Atribuição");
-        insertLog("\n-Atribuição detectada", null);
-        applyDelay();
+    private Atribuicao parseAssignment() {
+        enter("Atribuição");
+        log("\n-Atribuição detectada");
 
         // IDENTIFICADOR
-        Token id = advance();
-        addNode(assignNode, "Identificador: " + id.value);
-        insertLog("\n-Identificador detectado: " + id.value, null);
-        applyDelay();
+        int id = advance();
+        leaf("Identificador: ", id);
+        log("\n-Identificador detectado: ", id);
 
         // "="
         expect(TokenType.OPERATOR, "=");
-        addNode(assignNode, "=");
-        insertLog("\n-Operador '=' detectado", null);
-        applyDelay();
+        leaf("=");
+        log("\n-Operador '=' detectado");
 
         // Expressão
-        DefaultMutableTreeNode exprNode = parseExpression();
-        attach(assignNode, exprNode);
-        applyDelay();
-        
-        return assignNode;
-    }
-
-    private DefaultMutableTreeNode parseDeclaration() {
-        DefaultMutableTreeNode declNode = addNode(null, "Declaração");
-        insertLog("\n-Declaração detectada", null);
-        applyDelay();
-        
-        DefaultMutableTreeNode typeNode = parseType();
-        attach(declNode, typeNode);
-        applyDelay();
-        
-        Token identifier = expectWithReturn(TokenType.IDENTIFIER, null);
-        addNode(declNode, "Identificador: " + identifier.value);
-        applyDelay();
+        Expressao valor = parseExpression();
+
+        exit();
+        return new Atribuicao(id, tokens.text(id), valor);
+    }
 
+    private Declaracao parseDeclaration() {
+        enter("Declaração");
+        log("\n-Declaração detectada");
+
+        int type = parseType();
+
+        int identifier = expectWithReturn(TokenType.IDENTIFIER, null);
+        leaf("Identificador: ", identifier);
+
+        Expressao valor = null;
         if (match(TokenType.OPERATOR, "=")) {
-            addNode(declNode, "=");
-            insertLog("\n-Encontrou o '=', expressão detectada", null);
-            applyDelay();
-            DefaultMutableTreeNode exprNode = parseExpression();
-            attach(declNode, exprNode);
-            applyDelay();
+            leaf("=");
+            log("\n-Encontrou o '=', expressão detectada");
+            valor = parseExpression();
         }
-        
-        return declNode;
-    }
-
-    private DefaultMutableTreeNode parseType() {
-        Token token = advance();
-        DefaultMutableTreeNode typeNode = addNode(null, "Tipo: " + token.value);
-        
-        insertLog("\n-Tipo detectado: " + token.value, null);
-        applyDelay();
-        
-        if (!(token.type == TokenType.KEYWORD && validTypes.contains(token.value))) {
-            insertLog("--------\nERRO!\nTipo inválido: " + token.value + "\n\n", errorStyle);
-            error("Esperado tipo primitivo, encontrado: " + token.value);
+
+        exit();
+        return new Declaracao(type, tokens.text(type), tokens.text(identifier), valor);
+    }
+
+    private int parseType() {
+        int token = advance();
+        leaf("Tipo: ", token);
+
+        log("\n-Tipo detectado: ", token);
+
+        if (!isType(token)) {
+            logError("--------\nERRO!\nTipo inválido: ", token, "\n\n");
+            error("Esperado tipo primitivo, encontrado: " + tokens.text(token));
         }
-        
-        return typeNode;
-    }
-
-    private DefaultMutableTreeNode parseExpression() {
-        DefaultMutableTreeNode exprNode = addNode(null, "Expressão");
-        insertLog("\n-Expressão detectada", null);
-        applyDelay();
-        
-        DefaultMutableTreeNode leftNode = parseTerm();
-        attach(exprNode, leftNode);
-        applyDelay();
-        
-        // enquanto achar + ou -
-        while (true) {
-            if (match(TokenType.OPERATOR, "+") || match(TokenType.OPERATOR, "-")) {
-                Token op = tokens.get(position - 1);
-                DefaultMutableTreeNode opNode = addNode(exprNode, "Operador: " + op.value);
-                insertLog("\n-Operador aditivo detectado: " + op.value, null);
-                applyDelay();
-                
-                DefaultMutableTreeNode rightNode = parseTerm();
-                attach(opNode, rightNode);
-                applyDelay();
-            } else {
-                break;
+
+        return token;
+    }
+
+    private Expressao parseExpression() {
+        enter("Expressão");
+        log("\n-Expressão detectada");
+
+        Expressao expressao = parseBinary(parseOperand(), 1);
+
+        exit();
+        return expressao;
+    }
+
+    // Precedence climbing: junta à esquerda os operadores com precedência >= minima.
+    // Um operador mais forte depois do operando da direita leva esse operando com ele,
+    // e o nó dele na árvore de derivação fica dentro do nó do operador mais fraco
+    private Expressao parseBinary(Expressao esquerda, int minima) {
+        Operador operador;
+        while ((operador = binaryOperator(minima)) != null) {
+            int op = advance();
+            enter("Operador: ", op);
+            log("\n-Operador detectado: ", op);
+
+            Expressao direita = parseOperand();
+            if (binaryOperator(operador.precedencia + 1) != null) {
+                direita = parseBinary(direita, operador.precedencia + 1);
             }
+
+            exit();
+            esquerda = new Binaria(op, operador, esquerda, direita);
         }
-        
-        return exprNode;
-    }
-
-    private DefaultMutableTreeNode parseTerm() {
-        DefaultMutableTreeNode termNode = addNode(null, "Termo");
-        applyDelay();
-        
-        DefaultMutableTreeNode leftNode = parseFactor();
-        attach(termNode, leftNode);
-        applyDelay();
-        
-        // enquanto achar * ou /
-        while (true) {
-            if (match(TokenType.OPERATOR, "*") || match(TokenType.OPERATOR, "/")) {
-                Token op = tokens.get(position - 1);
-                DefaultMutableTreeNode opNode = addNode(termNode, "Operador: " + op.value);
-                insertLog("\n-Operador multiplicativo detectado: " + op.value, null);
-                applyDelay();
-                
-                DefaultMutableTreeNode rightNode = parseFactor();
-                attach(opNode, rightNode);
-                applyDelay();
-            } else {
-                break;
+        return esquerda;
+    }
+
+    // operador aritmético no token atual com precedência >= minima, ou null
+    private Operador binaryOperator(int minima) {
+        if (isAtEnd() || tokens.type(position) != TokenType.OPERATOR) return null;
+        for (Operador operador : ARITMETICOS) {
+            if (operador.precedencia >= minima && tokens.is(position, TokenType.OPERATOR, operador.simbolo)) {
+                return operador;
             }
         }
-        
-        return termNode;
+        return null;
     }
 
-    private DefaultMutableTreeNode parseFactor() {
-        Token tok = peek();
-        DefaultMutableTreeNode factorNode = addNode(null, "Fator");
-        applyDelay();
+    // um operando: literal, variável ou expressão entre parênteses
+    private Expressao parseOperand() {
+        int tok = peek();
 
         // número literal
-        if (tok.type == TokenType.NUMBER) {
-            Token num = advance();
-            addNode(factorNode, "Número: " + num.value);
-            insertLog("\n-Número detectado: " + num.value, null);
-            applyDelay();
-            return factorNode;
+        if (tokens.type(tok) == TokenType.NUMBER) {
+            advance();
+            leaf("Número: ", tok);
+            return new Numero(tok, tokens.text(tok));
         }
 
         // string literal
-        if (tok.type == TokenType.STRING) {
-            Token s = advance();
-            addNode(factorNode, "String: " + s.value);
-            insertLog("\n-String detectada: " + s.value, null);
-            applyDelay();
-            return factorNode;
+        if (tokens.type(tok) == TokenType.STRING) {
+            advance();
+            leaf("String: ", tok);
+            return new Texto(tok, tokens.source().subSequence(tokens.start(tok) + 1, tokens.end(tok) - 1).toString());
         }
 
         // identificador
-        if (tok.type == TokenType.IDENTIFIER) {
-            Token id = advance();
-            addNode(factorNode, "Identificador: " + id.value);
-            insertLog("\n-Identificador detectado: " + id.value, null);
-            applyDelay();
-            return factorNode;
+        if (tokens.type(tok) == TokenType.IDENTIFIER) {
+            advance();
+            leaf("Identificador: ", tok);
+            return new Variavel(tok, tokens.text(tok));
         }
 
         // boolean literal
-        if (tok.type == TokenType.KEYWORD &&
-            (tok.value.equals("true") || tok.value.equals("false"))) {
-            Token b = advance();
-            addNode(factorNode, "Boolean: " + b.value);
-            insertLog("\n-Boolean detectado: " + b.value, null);
-            applyDelay();
-            return factorNode;
+        if (tokens.is(tok, TokenType.KEYWORD, "true") || tokens.is(tok, TokenType.KEYWORD, "false")) {
+            advance();
+            leaf("Boolean: ", tok);
+            return new Booleano(tok, tokens.is(tok, TokenType.KEYWORD, "true"));
         }
 
         // subexpressão entre parênteses
         if (match(TokenType.SEPARATOR, "(")) {
-            addNode(factorNode, "(");
-            insertLog("\n-Abertura de parênteses '('", null);
-            applyDelay();
-            
-            DefaultMutableTreeNode exprNode = parseExpression();
-            attach(factorNode, exprNode);
-            applyDelay();
-            
+            leaf("(");
+            Expressao expressao = parseExpression();
             expect(TokenType.SEPARATOR, ")");
-            addNode(factorNode, ")");
-            insertLog("\n-Fechamento de parênteses ')'", null);
-            applyDelay();
-            return factorNode;
+            leaf(")");
+            return expressao;
         }
 
         // nenhum caso válido
-        insertLog("\nFator inválido: " + tok.value + "\n", errorStyle);
-        error("Fator inválido: " + tok.value);
-        return factorNode;
+        logError("\nFator inválido: ", tok, "\n");
+        error("Fator inválido: " + tokens.text(tok));
+        return null;
     }
 
-    private DefaultMutableTreeNode parseIf() {
-        DefaultMutableTreeNode ifNode = addNode(null, "If");
-        insertLog("\n-Comando 'if' detectado", null);
-        applyDelay();
-        
-        advance(); // consome o 'if'
-        addNode(ifNode, "if");
-        applyDelay();
+    private Se parseIf() {
+        enter("If");
+        log("\n-Comando 'if' detectado");
+
+        int ifToken = advance(); // consome o 'if'
+        leaf("if");
 
         expect(TokenType.SEPARATOR, "(");
-        addNode(ifNode, "(");
-        applyDelay();
-        
-        DefaultMutableTreeNode condNode = parseCondition();
-        attach(ifNode, condNode);
-        applyDelay();
-        
+        leaf("(");
+
+        Expressao condicao = parseCondition();
+
         expect(TokenType.SEPARATOR, ")");
-        addNode(ifNode, ")");
-        applyDelay();
+        leaf(")");
 
         expect(TokenType.SEPARATOR, "{");
-        addNode(ifNode, "{");
-        applyDelay();
-        
-        DefaultMutableTreeNode bodyNode = addNode(ifNode, "Bloco");
-        applyDelay();
-        while (!match(TokenType.SEPARATOR, "}")) {
-            DefaultMutableTreeNode stmtNode = parseStatement();
-            attach(bodyNode, stmtNode);
-            applyDelay();
-        }
-        addNode(ifNode, "}");
-        applyDelay();
+        leaf("{");
+
+        List<Comando> entao = parseBlock();
+        leaf("}");
 
         // else opcional
+        List<Comando> senao = null;
         if (match(TokenType.KEYWORD, "else")) {
-            DefaultMutableTreeNode elseNode = addNode(ifNode, "Else");
-            addNode(elseNode, "else");
-            applyDelay();
-            
+            enter("Else");
+            leaf("else");
+
             expect(TokenType.SEPARATOR, "{");
-            addNode(elseNode, "{");
-            applyDelay();
-            
-            DefaultMutableTreeNode elseBodyNode = addNode(elseNode, "Bloco");
-            applyDelay();
-            while (!match(TokenType.SEPARATOR, "}")) {
-                DefaultMutableTreeNode stmtNode = parseStatement();
-                attach(elseBodyNode, stmtNode);
-                applyDelay();
-            }
-            addNode(elseNode, "}");
-            applyDelay();
+            leaf("{");
+
+            senao = parseBlock();
+            leaf("}");
+            exit();
         }
-        
-        return ifNode;
+
+        exit();
+        return new Se(ifToken, condicao, entao, senao);
     }
 
-    private DefaultMutableTreeNode parseWhile() {
-        DefaultMutableTreeNode whileNode = addNode(null, "While");
-        insertLog("\n-Comando 'while' detectado", null);
-        applyDelay();
-        
-        advance(); // consome o 'while'
-        addNode(whileNode, "while");
-        applyDelay();
+    private Enquanto parseWhile() {
+        enter("While");
+        log("\n-Comando 'while' detectado");
+
+        int whileToken = advance(); // consome o 'while'
+        leaf("while");
 
         expect(TokenType.SEPARATOR, "(");
-        addNode(whileNode, "(");
-        applyDelay();
-        
-        DefaultMutableTreeNode condNode = parseCondition();
-        attach(whileNode, condNode);
-        applyDelay();
-        
+        leaf("(");
+
+        Expressao condicao = parseCondition();
+
         expect(TokenType.SEPARATOR, ")");
-        addNode(whileNode, ")");
-        applyDelay();
+        leaf(")");
 
         expect(TokenType.SEPARATOR, "{");
-        addNode(whileNode, "{");
-        applyDelay();
-        
-        DefaultMutableTreeNode bodyNode = addNode(whileNode, "Bloco");
-        applyDelay();
-        while (!match(TokenType.SEPARATOR, "}")) {
-            DefaultMutableTreeNode stmtNode = parseStatement();
-            attach(bodyNode, stmtNode);
-            applyDelay();
+        leaf("{");
+
+        List<Comando> corpo = parseBlock();
+        leaf("}");
+
+        exit();
+        return new Enquanto(whileToken, condicao, corpo);
+    }
+
+    // comandos até o '}' (que é consumido)
+    private List<Comando> parseBlock() {
+        if (limites != null) limites.blockStart(position);
+        enter("Bloco");
+        List<Comando> comandos = new ArrayList<>();
+        while (!isAtEnd() && !tokens.is(position, TokenType.SEPARATOR, "}")) {
+            Comando comando = parseStatement();
+            if (comando != null) comandos.add(comando);
         }
-        addNode(whileNode, "}");
-        applyDelay();
-        
-        return whileNode;
+        if (limites != null) limites.blockEnd(position);
+        if (!match(TokenType.SEPARATOR, "}")) {
+            // o bloco fica com o que já foi lido; não há de onde sincronizar
+            logError("Fim inesperado dos tokens, esperado '}'.\n");
+            report("Esperado '}' antes do fim dos tokens");
+        }
+        exit();
+        return comandos;
     }
 
-    private DefaultMutableTreeNode parseCondition() {
-        DefaultMutableTreeNode condNode = addNode(null, "Condição");
-        insertLog("\n-Condição detectada", null);
-        applyDelay();
+    private Expressao parseCondition() {
+        enter("Condição");
+        log("\n-Condição detectada");
 
         // Expressão da esquerda
-        DefaultMutableTreeNode leftExpr = parseExpression();
-        attach(condNode, leftExpr);
-        applyDelay();
+        Expressao esquerda = parseExpression();
 
         // Operador relacional
-        Token opToken = peek();
-        boolean isRelOp = opToken.type == TokenType.OPERATOR &&
-            (opToken.value.equals("==") || opToken.value.equals("!=") ||
-             opToken.value.equals("<")  || opToken.value.equals(">")  ||
-             opToken.value.equals("<=") || opToken.value.equals(">="));
+        int opToken = peek();
+        boolean isRelOp =
+            tokens.is(opToken, TokenType.OPERATOR, "==") || tokens.is(opToken, TokenType.OPERATOR, "!=") ||
+            tokens.is(opToken, TokenType.OPERATOR, "<")  || tokens.is(opToken, TokenType.OPERATOR, ">")  ||
+            tokens.is(opToken, TokenType.OPERATOR, "<=") || tokens.is(opToken, TokenType.OPERATOR, ">=");
 
         if (!isRelOp) {
-            insertLog("\nOperador relacional inválido: " + opToken.value + "\n", errorStyle);
-            error("Esperado operador relacional, encontrado: " + opToken.value);
+            logError("\nOperador relacional inválido: ", opToken, "\n");
+            error("Esperado operador relacional, encontrado: " + tokens.text(opToken));
         }
 
-        Token op = advance();
-        DefaultMutableTreeNode opNode = addNode(condNode, "Operador: " + op.value);
-        insertLog("\n-Operador relacional detectado: " + op.value, null);
-        applyDelay();
+        int op = advance();
+        enter("Operador: ", op);
+        log("\n-Operador relacional detectado: ", op);
 
         // Expressão da direita
-        DefaultMutableTreeNode rightExpr = parseExpression();
-        attach(opNode, rightExpr);
-        applyDelay();
-        
-        return condNode;
-    }
-
-    // Método auxiliar para adicionar nós à árvore (THREAD-SAFE)
-    private DefaultMutableTreeNode addNode(DefaultMutableTreeNode parent, String text) {
-        DefaultMutableTreeNode node = new DefaultMutableTreeNode(text);
-
-        if (parent != null) {
-            Runnable insertTask = () -> {
-                treeModel.insertNodeInto(node, parent, parent.getChildCount());
-                if (passoAPasso != null && passoAPasso.isSelected()) {
-                    ensureTreeVisible();
+        Expressao direita = parseExpression();
+        exit();
+
+        exit();
+        return new Binaria(op, Operador.of(tokens.text(op)), esquerda, direita);
+    }
+
+    // Modo pânico: pula até depois do ';' que fecha o comando, até o '}' do bloco
+    // em volta (sem consumir) ou até o começo de outro comando. Um bloco que começa
+    // no trecho pulado (o do if/while com erro no cabeçalho, com o else) é pulado inteiro.
+    private void synchronize(int inicio) {
+        log("\n-Retomando a análise após o erro");
+        int nivel = 0;
+        while (!isAtEnd()) {
+            if (nivel == 0 && tokens.is(position, TokenType.SEPARATOR, ";")) {
+                position++;
+                return;
+            }
+            // faltou o ';': o próximo comando começa com palavra-chave e não precisa ser pulado
+            if (nivel == 0 && position > inicio && startsStatement(position)) {
+                return;
+            }
+            if (tokens.is(position, TokenType.SEPARATOR, "{")) {
+                nivel++;
+            } else if (tokens.is(position, TokenType.SEPARATOR, "}")) {
+                if (nivel == 0) {
+                    // '}' sobrando no nível do programa: sem pular ele não sai do lugar
+                    if (position == inicio) position++;
+                    return;
                 }
-            };
-            
-            if (SwingUtilities.isEventDispatchThread()) {
-                insertTask.run();
-            } else {
-                try {
-                    SwingUtilities.invokeAndWait(insertTask);
-                } catch (Exception e) {
-                    SwingUtilities.invokeLater(insertTask);
+                if (--nivel == 0) {
+                    position++;
+                    if (!match(TokenType.KEYWORD, "else")) return;
+                    continue;
                 }
             }
+            position++;
         }
-        return node;
     }
 
-    // Método para anexar nós de forma segura (THREAD-SAFE)
-    private void attach(DefaultMutableTreeNode parent, DefaultMutableTreeNode child) {
-        if (parent == null || child == null) return;
+    // Avisos para o listener; os rótulos só são montados se houver alguém ouvindo
+    private void enter(String label) {
+        abertos++;
+        nos++;
+        if (listener != null) listener.enterNode(label);
+    }
 
-        Runnable attachTask = () -> {
-            // Remove do pai atual se existir
-            if (child.getParent() != null) {
-                treeModel.removeNodeFromParent(child);
-            }
-            // Insere no novo pai
-            treeModel.insertNodeInto(child, parent, parent.getChildCount());
-            
-            if (passoAPasso != null && passoAPasso.isSelected()) {
-                ensureTreeVisible();
-            }
-        };
+    private void enter(String prefix, int token) {
+        abertos++;
+        nos++;
+        if (listener != null) listener.enterNode(prefix + tokens.text(token));
+    }
 
-        if (SwingUtilities.isEventDispatchThread()) {
-            attachTask.run();
-        } else {
-            try {
-                SwingUtilities.invokeAndWait(attachTask);
-            } catch (Exception e) {
-                SwingUtilities.invokeLater(attachTask);
-            }
-        }
+    private void leaf(String label) {
+        nos++;
+        if (listener != null) listener.leaf(label);
+    }
+
+    private void leaf(String prefix, int token) {
+        nos++;
+        if (listener != null) listener.leaf(prefix + tokens.text(token));
+    }
+
+    private void exit() {
+        abertos--;
+        if (listener != null) listener.exitNode();
+    }
+
+    private void log(String text) {
+        if (listener != null) listener.log(text);
+    }
+
+    private void log(String prefix, int token) {
+        if (listener != null) listener.log(prefix + tokens.text(token));
+    }
+
+    private void logError(String text) {
+        if (listener != null) listener.error(text);
+    }
+
+    private void logError(String prefix, int token, String suffix) {
+        if (listener != null) listener.error(prefix + tokens.text(token) + suffix);
     }
 
     // Método utilitário para expect que retorna o token
-    private Token expectWithReturn(TokenType type, String value) {
-        insertLog("\n-Esperando token: " + (value != null ? value : type), null);
+    private int expectWithReturn(TokenType type, String value) {
+        if (listener != null) log("\n-Esperando token: " + (value != null ? value : type));
 
         if (isAtEnd()) {
             error("Fim inesperado dos tokens");
         }
 
-        Token token = peek();
+        int token = peek();
 
-        if (token.type != type || (value != null && !token.value.equals(value))) {
-            insertLog("\n----------\nToken esperado: " + (value != null ? value : type) + "\n", errorStyle);
+        if (!tokens.is(token, type, value)) {
+            if (listener != null) logError("\n----------\nToken esperado: " + (value != null ? value : type) + "\n");
             error("Esperado token " + (value != null ? value : type));
         }
 
         advance();
-        insertLog("\n-Token " + (value != null ? value : type) + " encontrado", null);
-        applyDelay();
+        if (listener != null) log("\n-Token " + (value != null ? value : type) + " encontrado");
         return token;
     }
 
-    // Método para inserir log de forma thread-safe
-    private void insertLog(String text, Style style) {
-        Runnable logTask = () -> {
-            try {
-                doc.insertString(doc.getLength(), text, style);
-            } catch (BadLocationException e) {
-                e.printStackTrace();
-            }
-        };
-        
-        if (SwingUtilities.isEventDispatchThread()) {
-            logTask.run();
-        } else {
-            SwingUtilities.invokeLater(logTask);
-        }
-        
-        log.setCaretPosition(log.getDocument().getLength());
-
-    }
-
     // Utilitários originais (mantidos)
+    // Os comentários já vêm separados no TokenBuffer, então aqui não há o que pular
     private boolean isAtEnd() {
         return position >= tokens.size();
     }
 
-    private Token advance() {
+    private int advance() {
         if (isAtEnd()) {
-            insertLog("Fim inesperado dos tokens.\n", errorStyle);
+            logError("Fim inesperado dos tokens.\n");
             error("Fim inesperado dos tokens.");
         }
 
-        Token token = tokens.get(position++);
-
-        while (token.type == TokenType.COMMENT && !isAtEnd()) {
-            insertLog("[Pulando comentário: " + token.value + "]\n", null);
-            token = tokens.get(position++);
-        }
-
-        return token;
+        return position++;
     }
 
-    private Token peek() {
+    private int peek() {
         if (isAtEnd()) {
-            insertLog("Fim inesperado dos tokens.\n", errorStyle);
+            logError("Fim inesperado dos tokens.\n");
             error("Fim inesperado dos tokens.");
         }
 
-        Token token = tokens.get(position);
-
-        while (token.type == TokenType.COMMENT && (position + 1) < tokens.size()) {
-            insertLog("[Pulando comentário no peek: " + token.value + "]\n", null);
-            position++;
-            token = tokens.get(position);
-        }
-
-        return token;
+        return position;
     }
 
     private boolean match(TokenType type, String value) {
         if (isAtEnd()) return false;
 
-        Token token = peek();
-
-        if (token.type != type) return false;
-        if (value != null && !token.value.equals(value)) return false;
+        if (!tokens.is(position, type, value)) return false;
 
         advance();
         return true;
     }
-    
-    private void skipComments() {
-        while (!isAtEnd() && tokens.get(position).type == TokenType.COMMENT) {
-            Token comment = tokens.get(position);
-            insertLog("[Pulando comentário: " + comment.value + "]\n", null);
-            position++;
+
+    private boolean startsStatement(int token) {
+        return isType(token)
+                || tokens.is(token, TokenType.KEYWORD, "if")
+                || tokens.is(token, TokenType.KEYWORD, "while")
+                || tokens.is(token, TokenType.KEYWORD, "System.out.println");
+    }
+
+    private boolean isType(int token) {
+        for (String type : validTypes) {
+            if (tokens.is(token, TokenType.KEYWORD, type)) return true;
         }
+        return false;
     }
 
     private void expect(TokenType type, String value) {
@@ -679,6 +653,39 @@ public class Parser {
     }
 
     private void error(String message) {
-        throw new RuntimeException("Erro de parsing: " + message);
+        report(message);
+        throw RECUPERAR;
+    }
+
+    // anota o erro sem interromper o comando (sem recuperar, lança como sempre)
+    private void report(String message) {
+        if (!recuperar) {
+            throw new RuntimeException("Erro de parsing: " + message);
+        }
+        int token = Math.min(position, tokens.size());
+        Diagnostico diagnostico = new Diagnostico(token, linha(token), message);
+        if (limites != null) limites.error(diagnostico);
+        // o mesmo token pode falhar duas vezes (fim dos tokens dentro de um bloco)
+        if (diagnosticos.isEmpty() || diagnosticos.get(diagnosticos.size() - 1).token() != token) {
+            diagnosticos.add(diagnostico);
+        }
+    }
+
+    // linha do token; chamadas com tokens em ordem crescente custam só a distância entre eles
+    int linha(int token) {
+        CharSequence fonte = tokens.source();
+        int fim = token < tokens.size() ? tokens.start(token) : fonte.length();
+        if (fim < linhaPosicao) {
+            linhaPosicao = 0;
+            linhaAtual = 1;
+        }
+        for (int i = linhaPosicao; i < fim; i++) {
+            char c = fonte.charAt(i);
+            if (c == '\n' || (c == '\r' && (i + 1 == fonte.length() || fonte.charAt(i + 1) != '\n'))) {
+                linhaAtual++;
+            }
+        }
+        linhaPosicao = fim;
+        return linhaAtual;
     }
-}
\ No newline at end of file
+}
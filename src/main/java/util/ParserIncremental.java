@@ -0,0 +1,539 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+
+/**
+ * Árvore de derivação que acompanha o código entre uma análise e outra,
+ * refazendo só os comandos cujos tokens mudaram.
+ *
+ * Cada comando guarda quantos tokens ocupa e onde começam os seus blocos,
+ * sempre em posições relativas: um comando depois da edição continua valendo
+ * sem mudar nada, só fica em outro lugar. A análise recomeça no comando onde
+ * a parte alterada começa (dentro do bloco mais interno que a contém
+ * inteira) e para assim que um comando termina no começo de um comando
+ * antigo da parte intacta do fim. O parse de um comando só depende dos
+ * tokens dele em diante, então o resto é igual ao que seria refeito.
+ *
+ * O {@link DefaultTreeModel} é sempre o mesmo e recebe só eventos de
+ * inserção, remoção e mudança dos nós que mudaram de fato. A análise e os
+ * nós novos ficam fora da thread do Swing: {@link #reparse} não mexe no
+ * modelo, só guarda a troca, e {@link #aplicar}, na thread do Swing, é que
+ * põe os nós na árvore. Uma análise por vez, e cada uma aplicada antes da
+ * próxima.
+ *
+ * @author david
+ */
+public class ParserIncremental {
+
+    // um comando já analisado; tudo relativo ao começo dele
+    private static final class Trecho {
+        int tamanho;
+        DefaultMutableTreeNode no;
+        final List<Bloco> blocos = new ArrayList<>(2);
+        final List<Erro> erros = new ArrayList<>(0);
+        // erros deste comando somados aos dos comandos dentro dos blocos
+        int errosAbaixo;
+    }
+
+    // comandos entre chaves (ou o programa todo, na raiz)
+    private static final class Bloco {
+        // do começo do comando dono até o primeiro token dentro das chaves
+        int deslocamento;
+        // tokens até o '}' (sem ele)
+        int tamanho;
+        DefaultMutableTreeNode no;
+        final List<Trecho> comandos = new ArrayList<>();
+        int errosAbaixo;
+    }
+
+    private record Erro(int token, String mensagem) {}
+
+    // filhos [de, de + quantos) de pai trocados pelos nós dos trechos novos, à espera do aplicar
+    private record Troca(DefaultMutableTreeNode pai, int de, int quantos, List<Trecho> trechos) {}
+
+    private DefaultTreeModel modelo;
+    private DefaultMutableTreeNode programa;
+    private Bloco raiz;
+    private TokenBuffer anteriores;
+    // o que a última análise mudou e a tela ainda não viu
+    private Troca pendente;
+
+    private final List<DefaultMutableTreeNode> inseridos = new ArrayList<>();
+    private int reanalisados;
+    // a última análise estourou a pilha (blocos ou parênteses aninhados demais)
+    private boolean estourou;
+    // nesse caso, o erro de sintaxe achado pelo ParserTabela (null se não há)
+    private Parser.Diagnostico erroSemArvore;
+
+    public ParserIncremental() {
+        reiniciar();
+    }
+
+    // esquece a árvore; a próxima análise é completa e usa um modelo novo
+    public final void reiniciar() {
+        DefaultMutableTreeNode topo = new DefaultMutableTreeNode("Programa");
+        programa = new DefaultMutableTreeNode("Programa");
+        topo.add(programa);
+        modelo = new DefaultTreeModel(topo);
+        raiz = new Bloco();
+        raiz.no = programa;
+        anteriores = null;
+        pendente = null;
+    }
+
+    public DefaultTreeModel modelo() {
+        return modelo;
+    }
+
+    // nós que entraram na árvore no último aplicar (para a tela expandir)
+    public List<DefaultMutableTreeNode> inseridos() {
+        return inseridos;
+    }
+
+    // tokens que passaram de novo pelo parser na última análise
+    public int reanalisados() {
+        return reanalisados;
+    }
+
+    // sem saber o que mudou: compara com os tokens da análise anterior
+    public void reparse(TokenBuffer tokens) {
+        int inicio = 0, fim = 0;
+        if (anteriores != null) {
+            int menor = Math.min(anteriores.size(), tokens.size());
+            while (inicio < menor && iguais(anteriores, inicio, tokens, inicio)) inicio++;
+            while (fim < menor - inicio
+                    && iguais(anteriores, anteriores.size() - 1 - fim, tokens, tokens.size() - 1 - fim)) fim++;
+        }
+        reparse(tokens, inicio, fim);
+    }
+
+    /**
+     * Atualiza a árvore para os tokens novos, sabendo que os
+     * {@code intactosNoInicio} primeiros e os {@code intactosNoFim} últimos
+     * são iguais aos da análise anterior (como diz o
+     * {@link IncrementalLexer#marcar()}).
+     */
+    public void reparse(TokenBuffer tokens, int intactosNoInicio, int intactosNoFim) {
+        if (pendente != null) {
+            throw new IllegalStateException("a análise anterior ainda não foi aplicada");
+        }
+        reanalisados = 0;
+        estourou = false;
+        int velho = anteriores != null ? anteriores.size() : 0;
+        int novo = tokens.size();
+        int inicio = 0, fim = 0;
+        if (anteriores != null) {
+            inicio = Math.min(intactosNoInicio, Math.min(velho, novo));
+            fim = Math.max(0, Math.min(intactosNoFim, Math.min(velho, novo) - inicio));
+        }
+        try (Telemetria.Medida medida = Telemetria.get().iniciar(Telemetria.Fase.INCREMENTAL)) {
+            Reparo reparo = new Reparo(tokens, inicio, velho - fim, novo - velho);
+            try {
+                reparo.bloco(raiz, 0, true);
+                raiz.tamanho = novo;
+                anteriores = tokens;
+            } catch (StackOverflowError e) {
+                // aninhado demais para a árvore de derivação, que só o parser recursivo monta;
+                // fica sem árvore, e quem diz se há erro de sintaxe é o ParserTabela
+                reiniciar();
+                estourou = true;
+                ParserTabela tabela = new ParserTabela(tokens);
+                try {
+                    tabela.parse();
+                    erroSemArvore = null;
+                } catch (RuntimeException erro) {
+                    erroSemArvore = tabela.erro();
+                }
+            }
+            medida.fim(reanalisados, reparo.nos);
+        }
+    }
+
+    /**
+     * Põe na árvore da tela o que o último {@link #reparse} mudou, com os
+     * eventos de inserção, remoção e mudança. Na thread do Swing.
+     */
+    public void aplicar() {
+        inseridos.clear();
+        Troca troca = pendente;
+        if (troca == null) return;
+        pendente = null;
+        List<DefaultMutableTreeNode> nos = new ArrayList<>(troca.trechos().size());
+        for (Trecho trecho : troca.trechos()) nos.add(trecho.no);
+        Map<DefaultMutableTreeNode, DefaultMutableTreeNode> vivo = new IdentityHashMap<>();
+        mesclarFilhos(troca.pai(), troca.de(), troca.quantos(), nos, vivo);
+        for (Trecho trecho : troca.trechos()) religar(trecho, vivo);
+    }
+
+    // erros da árvore atual, em ordem (só visita comandos que têm erro)
+    public List<Parser.Diagnostico> diagnosticos() {
+        if (estourou) {
+            return erroSemArvore == null ? List.of() : List.of(erroSemArvore);
+        }
+        List<Erro> erros = new ArrayList<>();
+        coletar(raiz, 0, erros);
+        // em ordem de token e, no mesmo token, na ordem em que o parser viu (a ordenação é estável)
+        erros.sort(Comparator.comparingInt(Erro::token));
+        List<Parser.Diagnostico> lista = new ArrayList<>(erros.size());
+        if (!erros.isEmpty()) {
+            Parser linhas = new Parser(anteriores);
+            for (Erro erro : erros) {
+                // como no Parser, só o primeiro erro de cada token
+                if (!lista.isEmpty() && lista.get(lista.size() - 1).token() == erro.token()) continue;
+                lista.add(new Parser.Diagnostico(erro.token(), linhas.linha(erro.token()), erro.mensagem()));
+            }
+        }
+        return lista;
+    }
+
+    private static void coletar(Bloco bloco, int inicio, List<Erro> saida) {
+        if (bloco.errosAbaixo == 0) return;
+        int posicao = inicio;
+        for (Trecho trecho : bloco.comandos) {
+            if (trecho.errosAbaixo > 0) {
+                // os erros do próprio comando vêm depois dos blocos (o '}' que faltou, o else)
+                for (Bloco filho : trecho.blocos) {
+                    coletar(filho, posicao + filho.deslocamento, saida);
+                }
+                for (Erro erro : trecho.erros) {
+                    saida.add(new Erro(posicao + erro.token(), erro.mensagem()));
+                }
+            }
+            posicao += trecho.tamanho;
+        }
+    }
+
+    // uma atualização: tokens novos, parte alterada [inicio, fimVelho) nos antigos e deslocamento do resto
+    private final class Reparo {
+
+        final TokenBuffer tokens;
+        final int inicio;
+        final int fimVelho;
+        final int delta;
+        // nós criados pelas análises, para a Telemetria
+        int nos;
+
+        Reparo(TokenBuffer tokens, int inicio, int fimVelho, int delta) {
+            this.tokens = tokens;
+            this.inicio = inicio;
+            this.fimVelho = fimVelho;
+            this.delta = delta;
+        }
+
+        // refaz o que mudou dentro do bloco que começa em posicaoBloco; false se a edição
+        // mexeu na estrutura dele (o '}' mudou de lugar) e o comando dono tem que ser refeito
+        boolean bloco(Bloco bloco, int posicaoBloco, boolean ehRaiz) {
+            List<Trecho> comandos = bloco.comandos;
+
+            // primeiro comando que chega até a parte alterada; o que termina bem no começo
+            // dela também entra, porque olhou o token seguinte (um 'else', por exemplo)
+            int i = 0;
+            int posicao = posicaoBloco;
+            while (i < comandos.size() && posicao + comandos.get(i).tamanho < inicio) {
+                posicao += comandos.get(i).tamanho;
+                i++;
+            }
+
+            // a parte alterada inteira dentro de um bloco desse comando: desce nele
+            if (i < comandos.size() && posicao < inicio && fimVelho <= posicao + comandos.get(i).tamanho) {
+                Trecho trecho = comandos.get(i);
+                for (Bloco filho : trecho.blocos) {
+                    int posicaoFilho = posicao + filho.deslocamento;
+                    if (posicaoFilho <= inicio && fimVelho <= posicaoFilho + filho.tamanho) {
+                        if (bloco(filho, posicaoFilho, false)) {
+                            deslocar(trecho, filho);
+                            recontar(bloco);
+                            if (!ehRaiz) bloco.tamanho += delta;
+                            return true;
+                        }
+                        break;
+                    }
+                }
+            }
+
+            // refaz comando a comando até reencontrar um comando antigo intacto
+            int fimBloco = ehRaiz ? tokens.size() : posicaoBloco + bloco.tamanho + delta;
+            Analise analise = new Analise(tokens);
+            int q = posicao;
+            int j = i;
+            int posicaoJ = posicao;
+            while (true) {
+                if (q == fimBloco) {
+                    j = comandos.size();
+                    break;
+                }
+                if (!ehRaiz && (q > fimBloco || tokens.is(q, analisadorLexico.TokenType.SEPARATOR, "}"))) {
+                    nos += analise.parser.nos();
+                    return false;
+                }
+                if (q >= fimVelho + delta) {
+                    int qVelho = q - delta;
+                    while (j < comandos.size() && posicaoJ < qVelho) {
+                        posicaoJ += comandos.get(j).tamanho;
+                        j++;
+                    }
+                    if (j < comandos.size() && posicaoJ == qVelho) break;
+                }
+                int fim = analise.comando(q);
+                reanalisados += fim - q;
+                q = fim;
+            }
+            nos += analise.parser.nos();
+
+            substituir(bloco, i, j, analise.prontos);
+            if (!ehRaiz) bloco.tamanho += delta;
+            return true;
+        }
+
+        // o bloco filho cresceu delta tokens: o que vem depois dele no comando anda junto
+        private void deslocar(Trecho trecho, Bloco filho) {
+            int fimAntigo = filho.deslocamento + filho.tamanho - delta;
+            for (Bloco outro : trecho.blocos) {
+                if (outro.deslocamento > filho.deslocamento) outro.deslocamento += delta;
+            }
+            for (int k = 0; k < trecho.erros.size(); k++) {
+                Erro erro = trecho.erros.get(k);
+                if (erro.token() >= fimAntigo) trecho.erros.set(k, new Erro(erro.token() + delta, erro.mensagem()));
+            }
+            trecho.tamanho += delta;
+            recontar(trecho);
+        }
+
+        // troca os comandos [i, j) do bloco pelos novos; os nós só mudam no aplicar
+        private void substituir(Bloco bloco, int i, int j, List<Trecho> novos) {
+            pendente = new Troca(bloco.no, i, j - i, List.copyOf(novos));
+
+            List<Trecho> velhos = bloco.comandos.subList(i, j);
+            velhos.clear();
+            velhos.addAll(novos);
+            recontar(bloco);
+        }
+    }
+
+    // os nós novos que ficaram iguais a nós antigos foram trocados por eles
+    private static void religar(Trecho trecho, Map<DefaultMutableTreeNode, DefaultMutableTreeNode> vivo) {
+        trecho.no = vivo.getOrDefault(trecho.no, trecho.no);
+        for (Bloco bloco : trecho.blocos) {
+            bloco.no = vivo.getOrDefault(bloco.no, bloco.no);
+            for (Trecho filho : bloco.comandos) religar(filho, vivo);
+        }
+    }
+
+    private static void recontar(Trecho trecho) {
+        int erros = trecho.erros.size();
+        for (Bloco bloco : trecho.blocos) erros += bloco.errosAbaixo;
+        trecho.errosAbaixo = erros;
+    }
+
+    private static void recontar(Bloco bloco) {
+        int erros = 0;
+        for (Trecho trecho : bloco.comandos) erros += trecho.errosAbaixo;
+        bloco.errosAbaixo = erros;
+    }
+
+    // ---- árvore na tela ----
+
+    // deixa velho igual a novo; vivo recebe, para cada nó de novo, o nó que ficou na árvore
+    private void mesclar(DefaultMutableTreeNode velho, DefaultMutableTreeNode novo,
+            Map<DefaultMutableTreeNode, DefaultMutableTreeNode> vivo) {
+        vivo.put(novo, velho);
+        if (!velho.getUserObject().equals(novo.getUserObject())) {
+            velho.setUserObject(novo.getUserObject());
+            modelo.nodeChanged(velho);
+        }
+        List<DefaultMutableTreeNode> filhos = new ArrayList<>(novo.getChildCount());
+        for (int k = 0; k < novo.getChildCount(); k++) filhos.add((DefaultMutableTreeNode) novo.getChildAt(k));
+        mesclarFilhos(velho, 0, velho.getChildCount(), filhos, vivo);
+    }
+
+    // troca os filhos [de, de + quantos) de pai por novos: o que é igual no começo e no fim
+    // fica, o meio é atualizado no lugar se tiver o mesmo tamanho, senão sai e entra
+    private void mesclarFilhos(DefaultMutableTreeNode pai, int de, int quantos, List<DefaultMutableTreeNode> novos,
+            Map<DefaultMutableTreeNode, DefaultMutableTreeNode> vivo) {
+        int antes = 0;
+        while (antes < quantos && antes < novos.size() && iguais(filho(pai, de + antes), novos.get(antes))) {
+            mapear(filho(pai, de + antes), novos.get(antes), vivo);
+            antes++;
+        }
+        int depois = 0;
+        while (depois < quantos - antes && depois < novos.size() - antes
+                && iguais(filho(pai, de + quantos - 1 - depois), novos.get(novos.size() - 1 - depois))) {
+            mapear(filho(pai, de + quantos - 1 - depois), novos.get(novos.size() - 1 - depois), vivo);
+            depois++;
+        }
+
+        int meioVelho = quantos - antes - depois;
+        int meioNovo = novos.size() - antes - depois;
+        int primeiro = de + antes;
+        if (meioVelho == meioNovo) {
+            for (int k = 0; k < meioNovo; k++) {
+                mesclar(filho(pai, primeiro + k), novos.get(antes + k), vivo);
+            }
+            return;
+        }
+
+        if (meioVelho > 0) {
+            int[] indices = new int[meioVelho];
+            Object[] removidos = new Object[meioVelho];
+            for (int k = 0; k < meioVelho; k++) {
+                indices[k] = primeiro + k;
+                removidos[k] = filho(pai, primeiro + k);
+            }
+            for (int k = meioVelho - 1; k >= 0; k--) pai.remove(primeiro + k);
+            modelo.nodesWereRemoved(pai, indices, removidos);
+        }
+        if (meioNovo > 0) {
+            int[] indices = new int[meioNovo];
+            for (int k = 0; k < meioNovo; k++) {
+                DefaultMutableTreeNode no = novos.get(antes + k);
+                pai.insert(no, primeiro + k);
+                indices[k] = primeiro + k;
+                inseridos.add(no);
+            }
+            modelo.nodesWereInserted(pai, indices);
+        }
+    }
+
+    private static DefaultMutableTreeNode filho(DefaultMutableTreeNode pai, int indice) {
+        return (DefaultMutableTreeNode) pai.getChildAt(indice);
+    }
+
+    // mesmos rótulos na mesma forma
+    private static boolean iguais(DefaultMutableTreeNode a, DefaultMutableTreeNode b) {
+        if (!a.getUserObject().equals(b.getUserObject()) || a.getChildCount() != b.getChildCount()) return false;
+        for (int k = 0; k < a.getChildCount(); k++) {
+            if (!iguais(filho(a, k), filho(b, k))) return false;
+        }
+        return true;
+    }
+
+    private static void mapear(DefaultMutableTreeNode velho, DefaultMutableTreeNode novo,
+            Map<DefaultMutableTreeNode, DefaultMutableTreeNode> vivo) {
+        vivo.put(novo, velho);
+        for (int k = 0; k < novo.getChildCount(); k++) {
+            mapear(filho(velho, k), filho(novo, k), vivo);
+        }
+    }
+
+    private static boolean iguais(TokenBuffer a, int i, TokenBuffer b, int j) {
+        if (a.type(i) != b.type(j)) return false;
+        int tamanho = a.end(i) - a.start(i);
+        if (b.end(j) - b.start(j) != tamanho) return false;
+        CharSequence fa = a.source(), fb = b.source();
+        for (int k = 0, x = a.start(i), y = b.start(j); k < tamanho; k++) {
+            if (fa.charAt(x + k) != fb.charAt(y + k)) return false;
+        }
+        return true;
+    }
+
+    // ---- análise de comandos soltos ----
+
+    // roda o Parser comando a comando e monta os Trechos (com os nós) pelos avisos dele
+    private static final class Analise implements ParseListener, Parser.Limites {
+
+        final Parser parser;
+        final List<Trecho> prontos = new ArrayList<>();
+
+        private final Deque<DefaultMutableTreeNode> abertos = new ArrayDeque<>();
+        private final Deque<Trecho> trechos = new ArrayDeque<>();
+        private final Deque<Integer> inicios = new ArrayDeque<>();
+        private final Deque<Bloco> blocos = new ArrayDeque<>();
+        private final Deque<Integer> inicioBlocos = new ArrayDeque<>();
+        // o próximo nó aberto é o do comando / bloco que acabou de começar
+        private Trecho trechoSemNo;
+        private Bloco blocoSemNo;
+
+        Analise(TokenBuffer tokens) {
+            parser = new Parser(tokens, this);
+            parser.setLimites(this);
+            abertos.push(new DefaultMutableTreeNode());
+        }
+
+        int comando(int inicio) {
+            return parser.parseStatementAt(inicio);
+        }
+
+        @Override
+        public void statementStart(int token) {
+            Trecho trecho = new Trecho();
+            trechos.push(trecho);
+            inicios.push(token);
+            trechoSemNo = trecho;
+        }
+
+        @Override
+        public void statementEnd(int token) {
+            Trecho trecho = trechos.pop();
+            trecho.tamanho = token - inicios.pop();
+            if (trecho.no == null) {
+                trecho.no = new DefaultMutableTreeNode("Declaração");
+                abertos.peek().add(trecho.no);
+            }
+            recontar(trecho);
+            if (trechos.isEmpty()) {
+                prontos.add(trecho);
+                // o nó do comando sai do contêiner provisório quando entra na árvore
+            } else {
+                blocos.peek().comandos.add(trecho);
+            }
+        }
+
+        @Override
+        public void blockStart(int token) {
+            Bloco bloco = new Bloco();
+            bloco.deslocamento = token - inicios.peek();
+            trechos.peek().blocos.add(bloco);
+            blocos.push(bloco);
+            inicioBlocos.push(token);
+            blocoSemNo = bloco;
+        }
+
+        @Override
+        public void blockEnd(int token) {
+            Bloco bloco = blocos.pop();
+            bloco.tamanho = token - inicioBlocos.pop();
+            recontar(bloco);
+        }
+
+        @Override
+        public void error(Parser.Diagnostico diagnostico) {
+            trechos.peek().erros.add(new Erro(diagnostico.token() - inicios.peek(), diagnostico.mensagem()));
+        }
+
+        @Override
+        public void enterNode(String label) {
+            DefaultMutableTreeNode no = new DefaultMutableTreeNode(label);
+            abertos.peek().add(no);
+            abertos.push(no);
+            if (trechoSemNo != null) {
+                trechoSemNo.no = no;
+                trechoSemNo = null;
+            } else if (blocoSemNo != null) {
+                blocoSemNo.no = no;
+                blocoSemNo = null;
+            }
+        }
+
+        @Override
+        public void leaf(String label) {
+            abertos.peek().add(new DefaultMutableTreeNode(label));
+        }
+
+        @Override
+        public void exitNode() {
+            abertos.pop();
+        }
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import util.Ast.*;
+import util.analisadorLexico.TokenType;
+
+/**
+ * Parser LL(1) dirigido pela tabela da {@link Gramatica}, com pilha
+ * explícita no lugar da recursão: blocos e parênteses podem ser aninhados
+ * até onde a memória der, sem {@code StackOverflowError}.
+ *
+ * A árvore é a mesma do {@link Parser}. Ela é montada pelas ações
+ * ({@code #acao} na gramática) com duas pilhas: a de valores (expressões,
+ * comandos, listas) e a de tokens guardados com {@code @}. Não tem
+ * listener nem recuperação de erro; o erro é a mesma RuntimeException
+ * "Erro de parsing: ..." do {@link Parser#parse()}.
+ *
+ * @author david
+ */
+public class ParserTabela {
+
+    // o que cada #acao da gramática faz; o nome na gramática é o do enum em camelCase
+    enum Acao {
+        LISTA, ADICIONA, PROGRAMA,
+        DECLARACAO, SEM_VALOR, ATRIBUICAO, IMPRESSAO, SE, SEM_SENAO, ENQUANTO,
+        BINARIA, NUMERO, TEXTO, VARIAVEL, BOOLEANO;
+
+        static Acao daGramatica(String nome) {
+            return valueOf(nome.replaceAll("([a-z])([A-Z])", "$1_$2").toUpperCase());
+        }
+    }
+
+    private static final Operador[] OPERADORES = Operador.values();
+
+    // aninhamento de blocos e parênteses que o Parser recursivo aguenta com folga
+    // numa thread de 256 KB de pilha (numa de 1 MB ele passa de 1000 níveis)
+    static final int PROFUNDIDADE_RECURSIVA = 200;
+
+    private final TokenBuffer tokens;
+    private final Gramatica gramatica;
+    private final Acao[] acoes;
+
+    // o erro que interrompeu o último parse
+    private Parser.Diagnostico erro;
+    // token atual do parse
+    private int posicao;
+
+    private Object[] valores = new Object[32];
+    private int nValores;
+    private int[] guardados = new int[32];
+    private int nGuardados;
+
+    public ParserTabela(TokenBuffer tokens) {
+        this(tokens, Gramatica.padrao());
+    }
+
+    public ParserTabela(TokenBuffer tokens, Gramatica gramatica) {
+        this.tokens = tokens;
+        this.gramatica = gramatica;
+        this.acoes = new Acao[gramatica.acoes()];
+        for (int i = 0; i < acoes.length; i++) {
+            acoes[i] = Acao.daGramatica(gramatica.nomeAcao(i));
+        }
+    }
+
+    /**
+     * Árvore dos tokens: pelo {@link Parser}, que é mais rápido, ou por esta
+     * tabela quando o aninhamento pode estourar a pilha dele. Mesma árvore e
+     * mesmo erro do {@link Parser#parse()}.
+     */
+    public static Programa analisar(TokenBuffer tokens) {
+        return profundo(tokens) ? new ParserTabela(tokens).parse() : new Parser(tokens).parse();
+    }
+
+    // se blocos e parênteses passam de PROFUNDIDADE_RECURSIVA níveis em algum ponto
+    public static boolean profundo(TokenBuffer tokens) {
+        CharSequence fonte = tokens.source();
+        int nivel = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.type(i) != TokenType.SEPARATOR) continue;
+            char c = fonte.charAt(tokens.start(i));
+            if (c == '(' || c == '{') {
+                if (++nivel > PROFUNDIDADE_RECURSIVA) return true;
+            } else if ((c == ')' || c == '}') && nivel > 0) {
+                nivel--;
+            }
+        }
+        return false;
+    }
+
+    public Programa parse() {
+        try (Telemetria.Medida medida = Telemetria.get().iniciar(Telemetria.Fase.SINTATICA)) {
+            Programa programa = derivar();
+            medida.fim(posicao, 0);
+            return programa;
+        }
+    }
+
+    private Programa derivar() {
+        erro = null;
+        int[] pilha = new int[64];
+        int topo = 0;
+        pilha[topo++] = Gramatica.FIM;
+        pilha[topo++] = Gramatica.NAO_TERMINAL; // símbolo inicial
+
+        posicao = 0;
+        int atual = gramatica.terminal(tokens, posicao);
+        while (topo > 0) {
+            int simbolo = pilha[--topo];
+            switch (simbolo & Gramatica.TIPO) {
+                case Gramatica.NAO_TERMINAL -> {
+                    int naoTerminal = simbolo & Gramatica.NUMERO;
+                    int regra = gramatica.regra(naoTerminal, atual);
+                    if (regra < 0) {
+                        erroNaoTerminal(naoTerminal, atual, posicao);
+                    }
+                    int[] corpo = gramatica.corpo(regra);
+                    if (topo + corpo.length > pilha.length) {
+                        pilha = Arrays.copyOf(pilha, Math.max(pilha.length * 2, topo + corpo.length));
+                    }
+                    // ao contrário, para o primeiro símbolo ficar no topo
+                    for (int i = corpo.length - 1; i >= 0; i--) {
+                        pilha[topo++] = corpo[i];
+                    }
+                }
+                case Gramatica.ACAO -> executar(acoes[simbolo & Gramatica.NUMERO]);
+                default -> {
+                    int terminal = simbolo & Gramatica.NUMERO;
+                    if (terminal != atual) {
+                        erroTerminal(terminal, atual, posicao);
+                    }
+                    if (terminal == Gramatica.FIM) break;
+                    if ((simbolo & Gramatica.GUARDA) != 0) {
+                        guardar(posicao);
+                    }
+                    atual = gramatica.terminal(tokens, ++posicao);
+                }
+            }
+        }
+        return (Programa) valores[0];
+    }
+
+    // o erro de sintaxe do último parse, com token e linha como no Parser; null se não houve
+    public Parser.Diagnostico erro() {
+        return erro;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void executar(Acao acao) {
+        switch (acao) {
+            case LISTA -> empilhar(new ArrayList<Comando>());
+            case ADICIONA -> {
+                Comando comando = (Comando) desempilhar();
+                lista().add(comando);
+            }
+            case PROGRAMA -> empilhar(new Programa((List<Comando>) desempilhar()));
+            case DECLARACAO -> {
+                Expressao valor = (Expressao) desempilhar();
+                int nome = guardados[--nGuardados];
+                int tipo = guardados[--nGuardados];
+                empilhar(new Declaracao(tipo, tokens.text(tipo), tokens.text(nome), valor));
+            }
+            case SEM_VALOR, SEM_SENAO -> empilhar(null);
+            case ATRIBUICAO -> {
+                Expressao valor = (Expressao) desempilhar();
+                int nome = guardados[--nGuardados];
+                empilhar(new Atribuicao(nome, tokens.text(nome), valor));
+            }
+            case IMPRESSAO -> {
+                Expressao valor = (Expressao) desempilhar();
+                empilhar(new Impressao(guardados[--nGuardados], valor));
+            }
+            case SE -> {
+                List<Comando> senao = (List<Comando>) desempilhar();
+                List<Comando> entao = (List<Comando>) desempilhar();
+                Expressao condicao = (Expressao) desempilhar();
+                empilhar(new Se(guardados[--nGuardados], condicao, entao, senao));
+            }
+            case ENQUANTO -> {
+                List<Comando> corpo = (List<Comando>) desempilhar();
+                Expressao condicao = (Expressao) desempilhar();
+                empilhar(new Enquanto(guardados[--nGuardados], condicao, corpo));
+            }
+            case BINARIA -> {
+                Expressao direita = (Expressao) desempilhar();
+                Expressao esquerda = (Expressao) desempilhar();
+                int op = guardados[--nGuardados];
+                empilhar(new Binaria(op, operador(op), esquerda, direita));
+            }
+            case NUMERO -> {
+                int token = guardados[--nGuardados];
+                empilhar(new Numero(token, tokens.text(token)));
+            }
+            case TEXTO -> {
+                int token = guardados[--nGuardados];
+                empilhar(new Texto(token, tokens.source().subSequence(tokens.start(token) + 1, tokens.end(token) - 1).toString()));
+            }
+            case VARIAVEL -> {
+                int token = guardados[--nGuardados];
+                empilhar(new Variavel(token, tokens.text(token)));
+            }
+            case BOOLEANO -> {
+                int token = guardados[--nGuardados];
+                empilhar(new Booleano(token, tokens.is(token, analisadorLexico.TokenType.KEYWORD, "true")));
+            }
+        }
+    }
+
+    private Operador operador(int token) {
+        for (Operador operador : OPERADORES) {
+            if (tokens.is(token, analisadorLexico.TokenType.OPERATOR, operador.simbolo)) return operador;
+        }
+        throw new IllegalStateException("Operador desconhecido: " + tokens.text(token));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Comando> lista() {
+        return (List<Comando>) valores[nValores - 1];
+    }
+
+    private void empilhar(Object valor) {
+        if (nValores == valores.length) valores = Arrays.copyOf(valores, nValores * 2);
+        valores[nValores++] = valor;
+    }
+
+    private Object desempilhar() {
+        Object valor = valores[--nValores];
+        valores[nValores] = null;
+        return valor;
+    }
+
+    private void guardar(int token) {
+        if (nGuardados == guardados.length) guardados = Arrays.copyOf(guardados, nGuardados * 2);
+        guardados[nGuardados++] = token;
+    }
+
+    private void erroTerminal(int esperado, int atual, int posicao) {
+        if (atual == Gramatica.FIM) {
+            // bloco aberto até o fim: a mesma mensagem do parseBlock do Parser
+            erro("}".equals(gramatica.nomeTerminal(esperado)) ? "Esperado '}' antes do fim dos tokens"
+                    : "Fim inesperado dos tokens", posicao);
+        }
+        if (esperado == Gramatica.FIM) {
+            // sobrou token (um '}' a mais): para quem escreveu é um comando que não começa direito
+            String mensagem = gramatica.mensagem(0);
+            erro(mensagem != null ? mensagem.replace("%s", tokens.text(posicao)) : "Tokens inesperados após o fim do programa.", posicao);
+        }
+        erro("Esperado token " + gramatica.nomeTerminal(esperado), posicao);
+    }
+
+    private void erroNaoTerminal(int naoTerminal, int atual, int posicao) {
+        if (atual == Gramatica.FIM) {
+            erro("Fim inesperado dos tokens.", posicao);
+        }
+        String mensagem = gramatica.mensagem(naoTerminal);
+        if (mensagem == null) {
+            mensagem = "Token inesperado: %s";
+        }
+        erro(mensagem.replace("%s", tokens.text(posicao)), posicao);
+    }
+
+    private void erro(String message, int posicao) {
+        erro = new Parser.Diagnostico(posicao, new Parser(tokens).linha(posicao), message);
+        throw new RuntimeException("Erro de parsing: " + message);
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.BindException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Servidor que fica no ar com o léxico, o parser, o gerador de bytecode e o
+ * javac já aquecidos, para compilar sem pagar a subida da JVM a cada
+ * programa. Quem usa é o {@link ClienteCompilacao}.
+ *
+ * Escuta só na máquina: TCP em 127.0.0.1 ({@code --porta}, padrão
+ * {@value #PORTA_PADRAO}) ou um socket Unix ({@code --unix caminho}). Cada
+ * conexão é atendida numa thread virtual e pode mandar vários pedidos, um
+ * depois do outro. Um pedido é {@code tipo nome tamanho código}, com tipo
+ * {@code 'C'} (compilar, como o {@link CompiladorLote}) ou {@code 'E'}
+ * (compilar e executar num processo separado, com tempo limite), ou {@code 'M'} com nome e
+ * código vazios para a {@link Telemetria} do servidor em JSON. A resposta vem em quadros
+ * {@code 'O' tamanho bytes} com o texto, à medida que ele sai, e termina com
+ * {@code 'F' código} (0 se o programa compilou). Um pedido de outro tipo ou com
+ * mais de {@link #TAMANHO_MAXIMO} bytes de código recebe a mensagem e
+ * {@code 'F' 2}, e a conexão é fechada; um nome que não é caminho recebe o mesmo,
+ * mas a conexão continua.
+ *
+ * @author david
+ */
+public class ServidorCompilacao {
+
+    static final int PORTA_PADRAO = 7391;
+
+    static final byte COMPILAR = 'C';
+    static final byte EXECUTAR = 'E';
+    static final byte METRICAS = 'M';
+    static final byte SAIDA = 'O';
+    static final byte FIM = 'F';
+
+    // programa que passa por todas as fases para o JIT compilar cada uma antes do primeiro pedido
+    private static final String PROGRAMA_AQUECIMENTO =
+        "int a = 1;\n" +
+        "float b = 2;\n" +
+        "boolean c = true;\n" +
+        "String d = \"x\" + a;\n" +
+        "if (a < b) { System.out.println(d); } else { a = a * 2 - 1 / 1; }\n" +
+        "while (a < 10) { a = a + (a + 1) * 2; }\n" +
+        "System.out.println(c);\n";
+
+    private static final int AQUECIMENTO = 500;
+
+    // maior código aceito num pedido; o tamanho vem do cliente e vira um array
+    static final int TAMANHO_MAXIMO = 16 * 1024 * 1024;
+
+    // código do 'F' quando o pedido não segue o protocolo (a conexão é fechada em seguida)
+    static final int PEDIDO_INVALIDO = 2;
+
+    public static void main(String[] args) throws IOException {
+        SocketAddress endereco = new InetSocketAddress(InetAddress.getLoopbackAddress(), PORTA_PADRAO);
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--porta") && i + 1 < args.length) {
+                endereco = new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(args[++i]));
+            } else if (args[i].equals("--unix") && i + 1 < args.length) {
+                endereco = UnixDomainSocketAddress.of(args[++i]);
+            } else {
+                System.out.println("Uso: java util.ServidorCompilacao [--porta número | --unix caminho]");
+                System.exit(2);
+            }
+        }
+
+        CompilationService.get().warmUp();
+        try {
+            WorkerPool.get().iniciar();
+        } catch (IOException e) {
+            // os pedidos 'E' tentam criar o processo de novo e, sem ele, respondem com erro
+            System.out.println("Processos de execução indisponíveis: " + e.getMessage());
+        }
+        aquecer();
+        // a telemetria começa no primeiro pedido de verdade; o aquecimento do javac,
+        // que ainda roda em fundo, não é medido
+        Telemetria.get().zerar();
+
+        ServerSocketChannel servidor;
+        try {
+            servidor = abrir(endereco);
+        } catch (BindException e) {
+            System.out.println("Não foi possível escutar em " + endereco + ": " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        try (servidor;
+                ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            System.out.println("Servidor de compilação em " + endereco);
+            while (true) {
+                SocketChannel conexao = servidor.accept();
+                threads.submit(() -> atender(conexao));
+            }
+        }
+    }
+
+    private static ServerSocketChannel abrir(SocketAddress endereco) throws IOException {
+        if (endereco instanceof UnixDomainSocketAddress unix) {
+            Path caminho = unix.getPath();
+            // o socket de um servidor que caiu sem apagar impede o bind; só esse é apagado,
+            // nunca um arquivo comum nem o socket de um servidor que ainda atende
+            if (Files.exists(caminho, LinkOption.NOFOLLOW_LINKS)) {
+                if (!socket(caminho)) {
+                    throw new BindException("endereço em uso (o caminho existe e não é um socket)");
+                }
+                if (atende(unix)) {
+                    throw new BindException("endereço em uso (outro servidor atende neste socket)");
+                }
+                Files.delete(caminho);
+            }
+            ServerSocketChannel servidor = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            servidor.bind(unix);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    Files.deleteIfExists(caminho);
+                } catch (IOException e) {
+                    // o próximo servidor apaga
+                }
+            }, "apagar-socket"));
+            return servidor;
+        }
+        ServerSocketChannel servidor = ServerSocketChannel.open(StandardProtocolFamily.INET);
+        servidor.bind(endereco);
+        return servidor;
+    }
+
+    // se o arquivo é um socket; sem a visão "unix" (Windows) vale qualquer arquivo especial
+    private static boolean socket(Path caminho) {
+        try {
+            int modo = (Integer) Files.getAttribute(caminho, "unix:mode", LinkOption.NOFOLLOW_LINKS);
+            return (modo & 0170000) == 0140000;
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            try {
+                return Files.readAttributes(caminho, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).isOther();
+            } catch (IOException erro) {
+                return false;
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // se algum servidor aceita conexões no socket
+    private static boolean atende(UnixDomainSocketAddress unix) {
+        try (SocketChannel conexao = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            conexao.connect(unix);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void aquecer() {
+        for (int i = 0; i < AQUECIMENTO; i++) {
+            CompiladorLote.compilar(Path.of("aquecimento"), PROGRAMA_AQUECIMENTO);
+        }
+    }
+
+    // pedidos de uma conexão até o cliente fechar
+    private static void atender(SocketChannel conexao) {
+        try (conexao) {
+            if (!(conexao.getLocalAddress() instanceof UnixDomainSocketAddress)) {
+                // o texto e o 'F' saem em escritas separadas; sem isto o 'F' espera o ACK (40 ms)
+                conexao.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            }
+            DataInputStream entrada = new DataInputStream(new BufferedInputStream(Channels.newInputStream(conexao)));
+            DataOutputStream saida = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(conexao)));
+            while (true) {
+                byte tipo;
+                String nome;
+                String codigo;
+                int tamanho;
+                try {
+                    tipo = entrada.readByte();
+                    nome = entrada.readUTF();
+                    tamanho = entrada.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                // o resto do pedido não é lido, então a conexão não tem como continuar
+                if (tipo != COMPILAR && tipo != EXECUTAR && tipo != METRICAS) {
+                    recusar(saida, "Pedido fora do protocolo: " + tipo);
+                    return;
+                }
+                if (tamanho < 0 || tamanho > TAMANHO_MAXIMO) {
+                    recusar(saida, "Tamanho de código inválido: " + tamanho + " bytes (máximo " + TAMANHO_MAXIMO + ").");
+                    return;
+                }
+                byte[] bytes = new byte[tamanho];
+                entrada.readFully(bytes);
+                codigo = new String(bytes, StandardCharsets.UTF_8);
+                // o nome vem do cliente e pode não ser um caminho (um \0, por exemplo); o pedido
+                // já foi lido inteiro, então a conexão segue para o próximo
+                Path arquivo;
+                try {
+                    arquivo = Path.of(nome);
+                } catch (InvalidPathException e) {
+                    recusar(saida, "Nome de arquivo inválido: " + e.getReason() + ".");
+                    continue;
+                }
+
+                PrintStream texto = new PrintStream(new BufferedOutputStream(new Quadros(saida), 8192), false, StandardCharsets.UTF_8);
+                int codigoSaida = responder(tipo, arquivo, codigo, texto);
+                texto.flush();
+                saida.writeByte(FIM);
+                saida.writeInt(codigoSaida);
+                saida.flush();
+            }
+        } catch (IOException e) {
+            // o cliente foi embora no meio; nada para avisar
+        }
+    }
+
+    private static void recusar(DataOutputStream saida, String mensagem) throws IOException {
+        byte[] bytes = (mensagem + "\n").getBytes(StandardCharsets.UTF_8);
+        saida.writeByte(SAIDA);
+        saida.writeInt(bytes.length);
+        saida.write(bytes);
+        saida.writeByte(FIM);
+        saida.writeInt(PEDIDO_INVALIDO);
+        saida.flush();
+    }
+
+    private static int responder(byte tipo, Path arquivo, String codigo, PrintStream texto) {
+        if (tipo == METRICAS) {
+            texto.print(Telemetria.get().json());
+            return 0;
+        }
+        CompiladorLote.Compilado compilado = CompiladorLote.compilarComClasses(arquivo, codigo);
+        CompiladorLote.mostrar(compilado.resultado(), texto);
+        if (!compilado.resultado().ok()) return 1;
+        if (tipo == EXECUTAR) {
+            // as classes que o lote acabou de gerar, sempre num processo separado: várias
+            // conexões executam ao mesmo tempo e o System.out do servidor é um só
+            texto.print("Saída:\n\n");
+            texto.flush();
+            try {
+                new Compilador(texto, true).executar(compilado.classes());
+            } catch (Exception e) {
+                texto.println(e.getMessage());
+                return 1;
+            }
+        }
+        return 0;
+    }
+
+    // texto da resposta em quadros 'O', como a saída do WorkerMain
+    private static final class Quadros extends OutputStream {
+
+        private final DataOutputStream out;
+
+        Quadros(DataOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return;
+            out.writeByte(SAIDA);
+            out.writeInt(len);
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
+}
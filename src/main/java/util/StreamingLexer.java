@@ -0,0 +1,267 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import util.analisadorLexico.TokenType;
+
+/**
+ * Análise léxica em fluxo: lê o fonte aos poucos (de um {@link Reader} ou de
+ * um arquivo mapeado em memória) e entrega um token por vez, sem nunca ter o
+ * programa inteiro na memória.
+ *
+ * O texto passa por uma janela de tamanho fixo. Só é analisado o trecho da
+ * janela até o último fim de linha, porque nenhum token atravessa um fim de
+ * linha; o resto espera a próxima leitura. A memória usada é a da janela, que
+ * só cresce se uma única linha não couber nela.
+ *
+ * Uso:
+ * <pre>
+ * try (StreamingLexer lexer = StreamingLexer.open(arquivo, StandardCharsets.UTF_8)) {
+ *     while (lexer.next()) {
+ *         ... lexer.type(), lexer.start(), lexer.text() ...
+ *     }
+ * }
+ * </pre>
+ *
+ * @author david
+ */
+public class StreamingLexer implements Closeable {
+
+    private static final int DEFAULT_WINDOW = 64 * 1024;
+
+    // espaço mínimo pedido ao reader: um par de surrogates
+    private static final int MIN_LEITURA = 2;
+
+    private final Reader reader;
+
+    private char[] buf;
+    private CharBuffer window;
+    private int limit;      // caracteres válidos na janela
+    private int safeEnd;    // até onde a janela pode ser analisada
+    private int pos;
+    private long base;      // posição no fonte do buf[0]
+    private boolean eof;
+
+    private final int[] limites = new int[2];
+    private TokenType type;
+
+    public StreamingLexer(Reader reader) {
+        this(reader, DEFAULT_WINDOW);
+    }
+
+    public StreamingLexer(Reader reader, int windowSize) {
+        this.reader = reader;
+        this.buf = new char[Math.max(MIN_LEITURA, windowSize)];
+        this.window = CharBuffer.wrap(buf);
+    }
+
+    // lê o arquivo por regiões mapeadas em memória, decodificando com o charset
+    public static StreamingLexer open(Path file, Charset charset) throws IOException {
+        return new StreamingLexer(new MappedReader(FileChannel.open(file, StandardOpenOption.READ), charset));
+    }
+
+    // avança para o próximo token; false quando o fonte acabou
+    public boolean next() throws IOException {
+        while (true) {
+            if (pos < safeEnd) {
+                int tipo = analisadorLexico.proximoToken(window, pos, safeEnd, limites);
+                if (tipo >= 0) {
+                    type = analisadorLexico.tipos[tipo];
+                    pos = limites[1];
+                    return true;
+                }
+                pos = safeEnd;
+            }
+            if (eof) {
+                type = null;
+                return false;
+            }
+            refill();
+        }
+    }
+
+    public TokenType type() {
+        return type;
+    }
+
+    public long start() {
+        return base + limites[0];
+    }
+
+    public long end() {
+        return base + limites[1];
+    }
+
+    // texto do token atual (só vale até o próximo next)
+    public String text() {
+        return new String(buf, limites[0], limites[1] - limites[0]);
+    }
+
+    public Token toToken() {
+        return new Token(type, text());
+    }
+
+    // os mesmos tokens como Iterator; erros de leitura viram UncheckedIOException
+    public Iterator<Token> iterator() {
+        return new Iterator<Token>() {
+            private Token next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = StreamingLexer.this.next() ? toToken() : null;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Token next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                Token token = next;
+                next = null;
+                return token;
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    // descarta o que já foi analisado e lê mais texto até ter uma linha completa
+    private void refill() throws IOException {
+        System.arraycopy(buf, pos, buf, 0, limit - pos);
+        base += pos;
+        limit -= pos;
+        pos = 0;
+        safeEnd = 0;
+
+        boolean crescer = false;
+        while (!eof && safeEnd == 0) {
+            // um caractere fora do BMP precisa de dois chars de uma vez; com
+            // menos espaço o decodificador não consegue avançar
+            if (crescer || buf.length - limit < MIN_LEITURA) {
+                // a linha atual não cabe na janela
+                buf = Arrays.copyOf(buf, buf.length * 2);
+                window = CharBuffer.wrap(buf);
+            }
+            int n = reader.read(buf, limit, buf.length - limit);
+            if (n < 0) {
+                eof = true;
+                safeEnd = limit;
+                break;
+            }
+            // nada lido: o espaço que sobrou não bastou, então a janela cresce
+            crescer = n == 0;
+            int from = limit;
+            limit += n;
+            for (int i = limit - 1; i >= from; i--) {
+                if (analisadorLexico.fimDeLinha(buf[i])) {
+                    safeEnd = i + 1;
+                    break;
+                }
+            }
+        }
+    }
+
+    // Reader sobre o arquivo mapeado, uma região por vez
+    private static final class MappedReader extends Reader {
+
+        private static final long REGION = 64L * 1024 * 1024;
+
+        private final FileChannel channel;
+        private final CharsetDecoder decoder;
+        private final long size;
+
+        private MappedByteBuffer region;
+        private long regionStart;
+        private boolean needInput = true;
+        private boolean flushed;
+
+        // segunda metade de um par de surrogates que não coube na última leitura
+        private char pendente;
+        private boolean temPendente;
+
+        MappedReader(FileChannel channel, Charset charset) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            this.decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (temPendente) {
+                cbuf[off] = pendente;
+                temPendente = false;
+                return 1;
+            }
+            CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+            while (out.position() == off && !flushed) {
+                if (needInput) {
+                    // a nova região começa no primeiro byte ainda não decodificado,
+                    // assim um caractere partido entre regiões não se perde
+                    long from = region == null ? 0 : regionStart + region.position();
+                    region = channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(REGION, size - from));
+                    regionStart = from;
+                    needInput = false;
+                }
+                boolean endOfInput = regionStart + region.capacity() == size;
+                CoderResult result = decoder.decode(region, out, endOfInput);
+                if (result.isUnderflow()) {
+                    if (endOfInput) {
+                        decoder.flush(out);
+                        flushed = true;
+                    } else {
+                        needInput = true;
+                    }
+                } else if (result.isOverflow()) {
+                    if (out.position() == off) {
+                        // só cabe um char e o próximo caractere é um par de
+                        // surrogates: entrega a primeira metade e guarda a outra
+                        CharBuffer par = CharBuffer.allocate(2);
+                        decoder.decode(region, par, endOfInput);
+                        cbuf[off] = par.get(0);
+                        pendente = par.get(1);
+                        temPendente = true;
+                        return 1;
+                    }
+                    break;
+                }
+            }
+            int n = out.position() - off;
+            return n == 0 && flushed ? -1 : n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            region = null;
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas de cada fase da compilação, para o processo inteiro: tempo e bytes
+ * alocados de cada vez que a fase roda (em {@link Histograma}s), e quantos
+ * tokens e nós ela processou, para a vazão.
+ *
+ * Cada fase se mede sozinha:
+ * <pre>
+ *   try (Telemetria.Medida medida = Telemetria.get().iniciar(Telemetria.Fase.LEXICA)) {
+ *       ...
+ *       medida.fim(tokens, 0);
+ *   }
+ * </pre>
+ * Se a fase lançar antes do {@code fim}, o {@code close} registra a execução
+ * como falha: o tempo e os bytes entram nos histogramas, os tokens e nós não.
+ *
+ * A fase {@link Fase#OTIMIZACAO} também conta os nós que o {@link Otimizador}
+ * tirou das árvores que foram executadas ({@link Contadores#eliminados}).
+ * Junto vão os acertos, faltas e despejos do {@link ClassCache#padrao()}
+ * desde o último {@link #zerar()} ({@link #cache()}).
+ *
+ * Os bytes são os alocados pela thread que mediu ({@code ThreadMXBean});
+ * o que roda em outras threads (o léxico em paralelo, o programa no processo
+ * do {@link WorkerPool}) fica de fora, e numa thread virtual, onde a JVM não
+ * conta, nem há amostra de bytes. A contagem por thread é da própria JVM
+ * (ligada por padrão no HotSpot) e não é ligada aqui; cada leitura custa uns
+ * 17 ns, menos que um {@code System.nanoTime()}. Com
+ * {@code -Dtelemetria.bytes=false} ela não é lida.
+ *
+ * @author david
+ */
+public class Telemetria {
+
+    public enum Fase {
+        LEXICA("lexica"),
+        // relex das linhas editadas no IncrementalLexer, a cada tecla; os tokens são os refeitos
+        LEXICA_INCREMENTAL("lexica_incremental"),
+        SINTATICA("sintatica"),
+        // reanálise do ParserIncremental; os nós são da árvore de derivação
+        INCREMENTAL("incremental"),
+        SEMANTICA("semantica"),
+        // Otimizador sobre a AST, no Interpretador.preparar
+        OTIMIZACAO("otimizacao"),
+        GERACAO("geracao"),
+        JAVAC("javac"),
+        EXECUCAO("execucao");
+
+        public final String nome;
+
+        Fase(String nome) {
+            this.nome = nome;
+        }
+    }
+
+    // o que foi acumulado para uma fase
+    public static final class Contadores {
+        public final Histograma nanos = new Histograma();
+        public final Histograma bytes = new Histograma();
+        final LongAdder tokens = new LongAdder();
+        final LongAdder nos = new LongAdder();
+        final LongAdder falhas = new LongAdder();
+        // nós tirados pelo Otimizador (só na OTIMIZACAO)
+        final LongAdder eliminados = new LongAdder();
+        // tempo das falhas, que fica fora da vazão (elas não contam tokens)
+        final LongAdder nanosFalhas = new LongAdder();
+
+        public long tokens() {
+            return tokens.sum();
+        }
+
+        public long nos() {
+            return nos.sum();
+        }
+
+        // execuções que terminaram com exceção
+        public long falhas() {
+            return falhas.sum();
+        }
+
+        public long eliminados() {
+            return eliminados.sum();
+        }
+
+        public double tokensPorSegundo() {
+            return porSegundo(tokens());
+        }
+
+        public double nosPorSegundo() {
+            return porSegundo(nos());
+        }
+
+        private double porSegundo(long quantidade) {
+            long nanosTotal = nanos.soma() - nanosFalhas.sum();
+            return nanosTotal == 0 ? 0 : quantidade * 1e9 / nanosTotal;
+        }
+
+        void zerar() {
+            nanos.zerar();
+            bytes.zerar();
+            tokens.reset();
+            nos.reset();
+            falhas.reset();
+            eliminados.reset();
+            nanosFalhas.reset();
+        }
+    }
+
+    // uma execução de uma fase, do iniciar ao fim (ou ao close, se ela falhou)
+    public final class Medida implements AutoCloseable {
+        private final Fase fase;
+        private final long inicio;
+        private final long bytesInicio;
+        private boolean registrada;
+
+        private Medida(Fase fase) {
+            this.fase = fase;
+            this.bytesInicio = alocados();
+            this.inicio = System.nanoTime();
+        }
+
+        public void fim(long tokens, long nos) {
+            Contadores contadores = registrar(System.nanoTime() - inicio);
+            if (contadores == null) return;
+            contadores.tokens.add(tokens);
+            contadores.nos.add(nos);
+        }
+
+        // sem fim antes: a fase lançou
+        @Override
+        public void close() {
+            long nanos = System.nanoTime() - inicio;
+            Contadores contadores = registrar(nanos);
+            if (contadores == null) return;
+            contadores.falhas.increment();
+            contadores.nanosFalhas.add(nanos);
+        }
+
+        private Contadores registrar(long nanos) {
+            if (registrada) return null;
+            registrada = true;
+            long bytesFim = bytesInicio >= 0 ? alocados() : -1;
+            Contadores contadores = fases[fase.ordinal()];
+            contadores.nanos.registrar(nanos);
+            if (bytesFim >= 0) contadores.bytes.registrar(bytesFim - bytesInicio);
+            return contadores;
+        }
+    }
+
+    private static final Telemetria INSTANCE = new Telemetria();
+
+    private final Contadores[] fases = new Contadores[Fase.values().length];
+    private final com.sun.management.ThreadMXBean threads;
+    private volatile long desde = System.currentTimeMillis();
+    // estatísticas do cache de classes no último zerar; as dele nunca voltam a zero
+    private volatile ClassCache.Estatisticas cacheNoZero = new ClassCache.Estatisticas(0, 0, 0, 0, 0);
+
+    private Telemetria() {
+        for (int i = 0; i < fases.length; i++) {
+            fases[i] = new Contadores();
+        }
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        threads = bean instanceof com.sun.management.ThreadMXBean sun && sun.isThreadAllocatedMemorySupported()
+                && !"false".equals(System.getProperty("telemetria.bytes")) ? sun : null;
+    }
+
+    public static Telemetria get() {
+        return INSTANCE;
+    }
+
+    public Medida iniciar(Fase fase) {
+        return new Medida(fase);
+    }
+
+    public Contadores fase(Fase fase) {
+        return fases[fase.ordinal()];
+    }
+
+    // começa a contar de novo
+    public void zerar() {
+        for (Contadores contadores : fases) contadores.zerar();
+        cacheNoZero = ClassCache.padrao().estatisticas();
+        desde = System.currentTimeMillis();
+    }
+
+    // acertos, faltas e despejos do cache de classes desde o último zerar
+    public ClassCache.Estatisticas cache() {
+        return ClassCache.padrao().estatisticas().desde(cacheNoZero);
+    }
+
+    // -1 quando a JVM não conta (thread virtual, contagem desligada ou sem suporte)
+    private long alocados() {
+        return threads != null ? threads.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    /**
+     * Tudo em JSON, para os painéis: por fase, amostras, tempos em
+     * nanossegundos e bytes (total, mínimo, máximo, média, percentis e as
+     * faixas do histograma como {@code [menor valor, contagem]}), tokens, nós,
+     * falhas, nós eliminados e a vazão; e o uso do cache de classes.
+     */
+    public String json() {
+        StringBuilder json = new StringBuilder(4096);
+        json.append("{\n  \"desde\": ").append(desde)
+                .append(",\n  \"agora\": ").append(System.currentTimeMillis())
+                .append(",\n  \"fases\": {");
+        Fase[] todas = Fase.values();
+        for (int i = 0; i < todas.length; i++) {
+            Contadores contadores = fases[i];
+            json.append(i == 0 ? "\n" : ",\n").append("    \"").append(todas[i].nome).append("\": {")
+                    .append("\n      \"amostras\": ").append(contadores.nanos.amostras())
+                    .append(",\n      \"nanos\": ");
+            histograma(json, contadores.nanos);
+            json.append(",\n      \"bytes\": ");
+            histograma(json, contadores.bytes);
+            json.append(",\n      \"tokens\": ").append(contadores.tokens())
+                    .append(",\n      \"nos\": ").append(contadores.nos())
+                    .append(",\n      \"falhas\": ").append(contadores.falhas())
+                    .append(",\n      \"eliminados\": ").append(contadores.eliminados())
+                    .append(",\n      \"tokensPorSegundo\": ").append(numero(contadores.tokensPorSegundo()))
+                    .append(",\n      \"nosPorSegundo\": ").append(numero(contadores.nosPorSegundo()))
+                    .append("\n    }");
+        }
+        ClassCache.Estatisticas cache = cache();
+        json.append("\n  },\n  \"cache\": {")
+                .append("\n    \"acertosMemoria\": ").append(cache.acertosMemoria())
+                .append(",\n    \"acertosDisco\": ").append(cache.acertosDisco())
+                .append(",\n    \"faltas\": ").append(cache.faltas())
+                .append(",\n    \"despejos\": ").append(cache.despejos())
+                .append(",\n    \"entradas\": ").append(cache.entradas())
+                .append("\n  }\n}\n");
+        return json.toString();
+    }
+
+    private static void histograma(StringBuilder json, Histograma h) {
+        json.append("{\"amostras\": ").append(h.amostras())
+                .append(", \"total\": ").append(h.soma())
+                .append(", \"min\": ").append(h.minimo())
+                .append(", \"max\": ").append(h.maximo())
+                .append(", \"media\": ").append(numero(h.media()))
+                .append(", \"p50\": ").append(h.percentil(50))
+                .append(", \"p90\": ").append(h.percentil(90))
+                .append(", \"p99\": ").append(h.percentil(99))
+                .append(", \"p999\": ").append(h.percentil(99.9))
+                .append(", \"faixas\": [");
+        long[][] faixas = h.faixas();
+        for (int i = 0; i < faixas.length; i++) {
+            if (i > 0) json.append(", ");
+            json.append('[').append(faixas[i][0]).append(", ").append(faixas[i][1]).append(']');
+        }
+        json.append("]}");
+    }
+
+    private static String numero(double valor) {
+        return String.format(Locale.ROOT, "%.1f", valor);
+    }
+}
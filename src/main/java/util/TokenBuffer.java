@@ -0,0 +1,196 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import util.analisadorLexico.TokenType;
+
+/**
+ * Sequência de tokens guardada em vetores primitivos: o tipo de cada token
+ * e o seu início/fim no código fonte. O texto só é recortado quando alguém
+ * pede. Comentários ficam num canal separado, assim o parser nunca os vê.
+ *
+ * @author david
+ */
+public class TokenBuffer {
+
+    private final CharSequence source;
+
+    private byte[] types;
+    private int[] starts;
+    private int[] ends;
+    private int size;
+
+    // canal lateral dos comentários
+    private int[] commentStarts;
+    private int[] commentEnds;
+    private int commentCount;
+
+    public TokenBuffer(CharSequence source) {
+        this(source, Math.max(16, source.length() / 4));
+    }
+
+    public TokenBuffer(CharSequence source, int capacity) {
+        this.source = source;
+        this.types = new byte[capacity];
+        this.starts = new int[capacity];
+        this.ends = new int[capacity];
+        this.commentStarts = new int[16];
+        this.commentEnds = new int[16];
+    }
+
+    // adiciona um token; comentários vão para o canal lateral
+    public void add(TokenType type, int start, int end) {
+        if (type == TokenType.COMMENT) {
+            if (commentCount == commentStarts.length) {
+                commentStarts = Arrays.copyOf(commentStarts, commentCount * 2);
+                commentEnds = Arrays.copyOf(commentEnds, commentCount * 2);
+            }
+            commentStarts[commentCount] = start;
+            commentEnds[commentCount] = end;
+            commentCount++;
+            return;
+        }
+        if (size == types.length) {
+            int capacity = size * 2;
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+        types[size] = (byte) type.ordinal();
+        starts[size] = start;
+        ends[size] = end;
+        size++;
+    }
+
+    // junta no fim os tokens de outro buffer do mesmo fonte (posições já absolutas)
+    public void append(TokenBuffer other) {
+        if (size + other.size > types.length) {
+            int capacity = Math.max(size + other.size, types.length * 2);
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+        System.arraycopy(other.types, 0, types, size, other.size);
+        System.arraycopy(other.starts, 0, starts, size, other.size);
+        System.arraycopy(other.ends, 0, ends, size, other.size);
+        size += other.size;
+
+        if (commentCount + other.commentCount > commentStarts.length) {
+            int capacity = Math.max(commentCount + other.commentCount, commentStarts.length * 2);
+            commentStarts = Arrays.copyOf(commentStarts, capacity);
+            commentEnds = Arrays.copyOf(commentEnds, capacity);
+        }
+        System.arraycopy(other.commentStarts, 0, commentStarts, commentCount, other.commentCount);
+        System.arraycopy(other.commentEnds, 0, commentEnds, commentCount, other.commentCount);
+        commentCount += other.commentCount;
+    }
+
+    public CharSequence source() {
+        return source;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public TokenType type(int i) {
+        return analisadorLexico.tipos[types[i]];
+    }
+
+    public int start(int i) {
+        return starts[i];
+    }
+
+    public int end(int i) {
+        return ends[i];
+    }
+
+    // texto do token, recortado do fonte apenas agora
+    public String text(int i) {
+        return source.subSequence(starts[i], ends[i]).toString();
+    }
+
+    // compara tipo e texto sem criar String (value == null aceita qualquer texto)
+    public boolean is(int i, TokenType type, String value) {
+        if (types[i] != type.ordinal()) return false;
+        if (value == null) return true;
+        int start = starts[i];
+        if (ends[i] - start != value.length()) return false;
+        for (int k = 0; k < value.length(); k++) {
+            if (source.charAt(start + k) != value.charAt(k)) return false;
+        }
+        return true;
+    }
+
+    public int commentCount() {
+        return commentCount;
+    }
+
+    public int commentStart(int j) {
+        return commentStarts[j];
+    }
+
+    public String commentText(int j) {
+        return source.subSequence(commentStarts[j], commentEnds[j]).toString();
+    }
+
+    /**
+     * Diz se o javac vai ler exatamente estes tokens: tudo o que ficou fora
+     * dos tokens e comentários é espaço em branco do Java (espaço, tab, form
+     * feed, CR, LF) e nenhuma string ou comentário tem barra invertida (que
+     * no javac vira escape, e um escape unicode vale até dentro de comentário).
+     * Se der false, o analisador pulou algo que o javac vai enxergar.
+     */
+    public boolean cobreTudo() {
+        int pos = 0;
+        int j = 0;
+        for (int i = 0; i <= size; i++) {
+            int inicio = i < size ? starts[i] : source.length();
+            while (pos < inicio) {
+                if (j < commentCount && commentStarts[j] == pos) {
+                    if (temBarra(commentStarts[j], commentEnds[j])) return false;
+                    pos = commentEnds[j++];
+                    continue;
+                }
+                char c = source.charAt(pos++);
+                if (c != ' ' && c != '\t' && c != '\f' && c != '\n' && c != '\r') return false;
+            }
+            if (i == size) break;
+            if (types[i] == TokenType.STRING.ordinal() && temBarra(starts[i], ends[i])) return false;
+            pos = ends[i];
+        }
+        return true;
+    }
+
+    private boolean temBarra(int inicio, int fim) {
+        for (int k = inicio; k < fim; k++) {
+            if (source.charAt(k) == '\\') return true;
+        }
+        return false;
+    }
+
+    public Token toToken(int i) {
+        return new Token(type(i), text(i));
+    }
+
+    // volta para a lista antiga, com os comentários de novo na sua posição
+    public List<Token> toTokens() {
+        List<Token> tokens = new ArrayList<>(size + commentCount);
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < commentCount && commentStarts[j] < starts[i]) {
+                tokens.add(new Token(TokenType.COMMENT, commentText(j++)));
+            }
+            tokens.add(toToken(i));
+        }
+        while (j < commentCount) {
+            tokens.add(new Token(TokenType.COMMENT, commentText(j++)));
+        }
+        return tokens;
+    }
+}
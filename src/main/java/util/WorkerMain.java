@@ -0,0 +1,181 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Processo filho do {@link WorkerPool}: roda os programas do usuário numa
+ * JVM separada da interface.
+ *
+ * O stdin e o stdout deste processo são o canal com a interface. Cada
+ * pedido chega como (quantidade de classes, nome e bytes de cada uma, nome
+ * da classe principal). A saída do programa volta em quadros
+ * {@code 'O' tamanho bytes}, e o fim da execução em
+ * {@code 'F' reciclar mensagem} (mensagem vazia quando deu tudo certo).
+ *
+ * @author david
+ */
+public class WorkerMain {
+
+    static final byte PRONTO = 'R';
+    static final byte SAIDA = 'O';
+    static final byte FIM = 'F';
+
+    // de quanto em quanto tempo a saída acumulada é mandada para a interface
+    private static final int INTERVALO_MS = 16;
+
+    private static Canal canal;
+
+    public static void main(String[] args) throws IOException {
+        DataInputStream entrada = new DataInputStream(new BufferedInputStream(System.in));
+        canal = new Canal(new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out))));
+
+        // o programa do usuário não pode ler nem escrever no canal diretamente
+        System.setIn(InputStream.nullInputStream());
+        PrintStream saida = new PrintStream(new BufferedOutputStream(canal, 8192), false, StandardCharsets.UTF_8);
+        System.setOut(saida);
+        System.setErr(saida);
+
+        Thread descarga = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(INTERVALO_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                saida.flush();
+            }
+        }, "descarga-saida");
+        descarga.setDaemon(true);
+        descarga.start();
+
+        aquecer();
+        int threadsBase = Thread.activeCount();
+        canal.pronto();
+
+        while (true) {
+            Map<String, byte[]> classes = new HashMap<>();
+            String principal;
+            try {
+                int quantidade = entrada.readInt();
+                for (int i = 0; i < quantidade; i++) {
+                    String nome = entrada.readUTF();
+                    byte[] bytes = new byte[entrada.readInt()];
+                    entrada.readFully(bytes);
+                    classes.put(nome, bytes);
+                }
+                principal = entrada.readUTF();
+            } catch (EOFException e) {
+                // a interface fechou o canal
+                return;
+            }
+
+            canal.abrir();
+            String erro = "";
+            boolean reciclar = false;
+            try {
+                ClassLoader classLoader = new ByteClassLoader(classes, WorkerMain.class.getClassLoader());
+                Class<?> cls = Class.forName(principal, true, classLoader);
+                Method main = cls.getDeclaredMethod("main", String[].class);
+                main.invoke(null, (Object) new String[]{});
+            } catch (InvocationTargetException e) {
+                Throwable causa = e.getCause();
+                reciclar = causa instanceof OutOfMemoryError;
+                erro = pilha(causa);
+            } catch (OutOfMemoryError e) {
+                reciclar = true;
+                erro = pilha(e);
+            } catch (Exception | LinkageError e) {
+                erro = pilha(e);
+            }
+            saida.flush();
+
+            // threads que o programa deixou rodando atrapalhariam a próxima execução
+            reciclar |= Thread.activeCount() > threadsBase;
+            canal.fim(reciclar, erro);
+        }
+    }
+
+    private static String pilha(Throwable t) {
+        StringWriter texto = new StringWriter();
+        t.printStackTrace(new PrintWriter(texto));
+        return texto.toString();
+    }
+
+    // faz o bootstrap da concatenação de strings e da reflexão antes do primeiro programa
+    private static void aquecer() {
+        try {
+            Method m = WorkerMain.class.getDeclaredMethod("pilha", Throwable.class);
+            for (int i = 0; i < 1000; i++) {
+                String s = "aquecimento " + i + " " + (i * 0.5f) + " " + (i % 2 == 0);
+                m.invoke(null, new RuntimeException(s));
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Saída de quadros para a interface; fora de uma execução o que chega é descartado
+    private static final class Canal extends OutputStream {
+
+        private final DataOutputStream out;
+        private boolean aberto;
+
+        Canal(DataOutputStream out) {
+            this.out = out;
+        }
+
+        synchronized void pronto() throws IOException {
+            out.writeByte(PRONTO);
+            out.flush();
+        }
+
+        synchronized void abrir() {
+            aberto = true;
+        }
+
+        synchronized void fim(boolean reciclar, String erro) throws IOException {
+            aberto = false;
+            out.writeByte(FIM);
+            out.writeBoolean(reciclar);
+            byte[] bytes = erro.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.flush();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            if (!aberto || len == 0) return;
+            out.writeByte(SAIDA);
+            out.writeInt(len);
+            out.write(b, off, len);
+            out.flush();
+        }
+    }
+}
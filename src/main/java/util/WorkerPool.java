@@ -0,0 +1,294 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Path;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool de JVMs filhas ({@link WorkerMain}) que executam os programas do
+ * usuário fora do processo da interface.
+ *
+ * Um programa que entra em laço infinito, estoura a memória ou chama
+ * {@code System.exit} derruba só o processo filho. Subir uma JVM a cada
+ * Executar custaria centenas de milissegundos, então os processos são
+ * criados antes de serem necessários e reaproveitados: cada execução usa
+ * um class loader novo, e depois de {@code maxExecucoes} (ou se o programa
+ * deixou threads rodando) o processo é trocado por um novo.
+ *
+ * A comunicação é pelo stdin/stdout do filho; a saída do programa chega
+ * em pedaços enquanto ele roda.
+ *
+ * @author david
+ */
+public final class WorkerPool {
+
+    private static final int TAMANHO_PADRAO = 2;
+    static final long TEMPO_LIMITE_MS = 10_000;
+    private static final String MEMORIA_MAXIMA = "256m";
+    private static final int MAX_EXECUCOES = 50;
+
+    private static final WorkerPool INSTANCE = new WorkerPool(TAMANHO_PADRAO, TEMPO_LIMITE_MS, MEMORIA_MAXIMA, MAX_EXECUCOES);
+
+    private static final ScheduledExecutorService RELOGIO = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "tempo-limite-workers");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int tamanho;
+    private final long tempoLimiteMs;
+    private final String memoriaMaxima;
+    private final int maxExecucoes;
+
+    private final ConcurrentLinkedQueue<Worker> livres = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger emEspera = new AtomicInteger();
+
+    public record Resultado(boolean ok, String erro) {}
+
+    /**
+     * Não deu para criar o processo filho (sem o executável java, sem
+     * permissão, ou as classes não estão num diretório ou jar). É o único
+     * erro do {@link #executar} que não vira {@link Resultado}: o programa
+     * nem começou, então quem chama pode rodá-lo de outro jeito.
+     */
+    public static final class SemProcesso extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        SemProcesso(String mensagem, Throwable causa) {
+            super(mensagem, causa);
+        }
+    }
+
+    public WorkerPool(int tamanho, long tempoLimiteMs, String memoriaMaxima, int maxExecucoes) {
+        this.tamanho = tamanho;
+        this.tempoLimiteMs = tempoLimiteMs;
+        this.memoriaMaxima = memoriaMaxima;
+        this.maxExecucoes = maxExecucoes;
+        Runtime.getRuntime().addShutdownHook(new Thread(this::fechar, "fechar-workers"));
+    }
+
+    public static WorkerPool get() {
+        return INSTANCE;
+    }
+
+    // sobe os processos antes do primeiro Executar
+    public void iniciar() throws IOException {
+        repor();
+    }
+
+    /**
+     * Executa o main de {@code principal} num processo filho, escrevendo a
+     * saída do programa em {@code saida} à medida que ela chega. Erros do
+     * programa (exceção, tempo ou memória esgotados) e do processo filho
+     * (morreu antes de responder, quebrou o protocolo) voltam no resultado.
+     */
+    public Resultado executar(Map<String, byte[]> classes, String principal, OutputStream saida) throws SemProcesso {
+        Worker worker = livres.poll();
+        if (worker == null) {
+            worker = new Worker();
+        } else {
+            emEspera.decrementAndGet();
+            if (!worker.processo.isAlive()) {
+                // morreu parado (derrubado de fora); não vale a pena descobrir por quê
+                worker = new Worker();
+            }
+        }
+
+        Resultado resultado;
+        boolean reaproveitar = false;
+        try {
+            worker.aguardarPronto();
+            worker.enviar(classes, principal);
+
+            ScheduledFuture<?> tempo = RELOGIO.schedule(worker::matar, tempoLimiteMs, TimeUnit.MILLISECONDS);
+            try {
+                resultado = worker.receber(saida);
+            } finally {
+                tempo.cancel(false);
+            }
+            reaproveitar = !worker.morto && !worker.reciclar && worker.execucoes < maxExecucoes;
+        } catch (IOException e) {
+            // o programa pode já ter rodado em parte: não dá para repetir em outro lugar
+            worker.matar();
+            resultado = new Resultado(false, "O processo de execução falhou: "
+                    + (e instanceof EOFException ? "terminou antes de responder." : e.getMessage()));
+        } finally {
+            if (reaproveitar && emEspera.get() < tamanho) {
+                emEspera.incrementAndGet();
+                livres.add(worker);
+            } else {
+                worker.fechar();
+            }
+            try {
+                repor();
+            } catch (SemProcesso e) {
+                // o próximo executar tenta criar o processo de novo e avisa quem chamou
+            }
+        }
+        return resultado;
+    }
+
+    public void fechar() {
+        Worker worker;
+        while ((worker = livres.poll()) != null) {
+            emEspera.decrementAndGet();
+            worker.fechar();
+        }
+    }
+
+    private void repor() throws SemProcesso {
+        while (emEspera.get() < tamanho) {
+            emEspera.incrementAndGet();
+            livres.add(new Worker());
+        }
+    }
+
+    private List<String> comando() throws SemProcesso {
+        List<String> comando = new ArrayList<>();
+        comando.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        comando.add("-Xmx" + memoriaMaxima);
+        comando.add("-XX:+UseSerialGC");
+        comando.add("-cp");
+        comando.add(classpath());
+        comando.add(WorkerMain.class.getName());
+        return comando;
+    }
+
+    // diretório ou jar de onde veio o WorkerMain; o java.class.path não tem as
+    // classes quando elas foram carregadas por outro class loader (mvn exec:java)
+    private static String classpath() throws SemProcesso {
+        CodeSource origem = WorkerMain.class.getProtectionDomain().getCodeSource();
+        if (origem == null || origem.getLocation() == null) {
+            throw new SemProcesso("Não foi possível achar as classes do WorkerMain para o processo de execução", null);
+        }
+        try {
+            return Path.of(origem.getLocation().toURI()).toString();
+        } catch (URISyntaxException | IllegalArgumentException | FileSystemNotFoundException e) {
+            throw new SemProcesso("As classes do WorkerMain não estão num diretório ou jar: " + origem.getLocation(), e);
+        }
+    }
+
+    private final class Worker {
+
+        private final Process processo;
+        private final DataOutputStream para;
+        private final DataInputStream de;
+        private boolean pronto;
+        private int execucoes;
+        private boolean reciclar;
+        private volatile boolean morto;
+
+        Worker() throws SemProcesso {
+            try {
+                processo = new ProcessBuilder(comando())
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start();
+            } catch (SemProcesso e) {
+                throw e;
+            } catch (IOException e) {
+                throw new SemProcesso("Não foi possível criar o processo de execução: " + e.getMessage(), e);
+            }
+            para = new DataOutputStream(new BufferedOutputStream(processo.getOutputStream()));
+            de = new DataInputStream(new BufferedInputStream(processo.getInputStream()));
+        }
+
+        void aguardarPronto() throws IOException {
+            if (pronto) return;
+            if (de.readByte() != WorkerMain.PRONTO) {
+                throw new IOException("Processo de execução respondeu fora do protocolo");
+            }
+            pronto = true;
+        }
+
+        void enviar(Map<String, byte[]> classes, String principal) throws IOException {
+            execucoes++;
+            para.writeInt(classes.size());
+            for (Map.Entry<String, byte[]> classe : classes.entrySet()) {
+                para.writeUTF(classe.getKey());
+                para.writeInt(classe.getValue().length);
+                para.write(classe.getValue());
+            }
+            para.writeUTF(principal);
+            para.flush();
+        }
+
+        Resultado receber(OutputStream saida) throws IOException {
+            byte[] buffer = new byte[8192];
+            try {
+                while (true) {
+                    byte tipo = de.readByte();
+                    if (tipo == WorkerMain.SAIDA) {
+                        int n = de.readInt();
+                        while (n > 0) {
+                            int k = de.read(buffer, 0, Math.min(n, buffer.length));
+                            if (k < 0) throw new EOFException();
+                            saida.write(buffer, 0, k);
+                            n -= k;
+                        }
+                        saida.flush();
+                    } else if (tipo == WorkerMain.FIM) {
+                        reciclar = de.readBoolean();
+                        byte[] erro = new byte[de.readInt()];
+                        de.readFully(erro);
+                        String mensagem = new String(erro, StandardCharsets.UTF_8);
+                        return new Resultado(mensagem.isEmpty(), mensagem);
+                    } else {
+                        throw new IOException("Processo de execução respondeu fora do protocolo");
+                    }
+                }
+            } catch (EOFException e) {
+                // o processo acabou no meio da execução
+                boolean porTempo = morto;
+                morto = true;
+                if (porTempo) {
+                    return new Resultado(false, "Tempo limite de " + tempoLimiteMs / 1000 + " s excedido, programa interrompido.");
+                }
+                try {
+                    return new Resultado(false, "O programa encerrou a JVM (código " + processo.waitFor() + ").");
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return new Resultado(false, "O programa encerrou a JVM.");
+                }
+            }
+        }
+
+        void matar() {
+            morto = true;
+            processo.destroyForcibly();
+        }
+
+        void fechar() {
+            // fechar o stdin faz o filho sair sozinho; se estiver preso, é derrubado
+            try {
+                para.close();
+            } catch (IOException e) {
+                // já estava fechado
+            }
+            processo.onExit().orTimeout(1, TimeUnit.SECONDS).whenComplete((p, erro) -> {
+                if (erro != null) processo.destroyForcibly();
+            });
+        }
+    }
+}
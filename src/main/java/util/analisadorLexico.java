@@ -5,7 +5,8 @@
 package util;
 
 import java.util.*;
-import java.util.regex.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  *
@@ -16,72 +17,249 @@ public class analisadorLexico {
     public enum TokenType {
         KEYWORD, IDENTIFIER, NUMBER, STRING, OPERATOR, SEPARATOR, COMMENT, WHITESPACE, UNKNOWN
     }
-    
+
     // objeto/classe token
     //um token possui seu valor e seu identificador, que é o tipo
 
-    
+
     //lista de palavras do java
     private static final Set<String> keywords = Set.of(
-           "int", "float", "if", "else", "for", "while", "return", "public", "class", "static", "void", "new", "String", "boolean", "true", "false", "System.out.println" 
+           "int", "float", "if", "else", "for", "while", "return", "public", "class", "static", "void", "new", "String", "boolean", "true", "false", "System.out.println"
     );
-    
+
+    private static final String PRINTLN = "System.out.println";
+
+    // mesmas palavras em vetor, para comparar direto no texto sem criar substring
+    private static final String[] palavrasChave = keywords.toArray(new String[0]);
+
+    static final TokenType[] tipos = TokenType.values();
+
+    // abaixo disso dividir o texto entre threads custa mais do que analisar direto
+    static final int LIMITE_PARALELO = 1 << 20;
+    private static final int PEDACO_MINIMO = 256 * 1024;
+
+    // classes de caracteres usadas pelo automato (apenas ASCII, o resto é "outro")
+    private static final byte OUTRO = 0;
+    private static final byte LETRA = 1;      // [a-zA-Z_]
+    private static final byte DIGITO = 2;     // [0-9]
+    private static final byte OPERADOR = 3;   // [+\-*/=<>!&|]
+    private static final byte SEPARADOR = 4;  // [(){};.,]
+    private static final byte ASPAS = 5;      // "
+
+    private static final byte[] classes = new byte[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) classes[c] = LETRA;
+        for (char c = 'A'; c <= 'Z'; c++) classes[c] = LETRA;
+        classes['_'] = LETRA;
+        for (char c = '0'; c <= '9'; c++) classes[c] = DIGITO;
+        for (char c : "+-*/=<>!&|".toCharArray()) classes[c] = OPERADOR;
+        for (char c : "(){};.,".toCharArray()) classes[c] = SEPARADOR;
+        classes['"'] = ASPAS;
+    }
+
     //função que faz o reconhecimento
     public List<Token> tokenize(String input) {
-        List<Token> tokens = new ArrayList<>();
-        
-        // Regex básica para quebrar o código
-        //este objeto funciona como um automato
-        //se baseando na regex enviada, ele cria algo que funcione como ela (ou seja, um autonomo)
-        Pattern pattern = Pattern.compile(
-            "(//.*)|" +                      // Comentários
-            "(\".*?\")|" +                   // Strings
-            "\\b\\d+\\b|" +                  // Números
-            "(System\\.out\\.println)|" +
-            "[a-zA-Z_][a-zA-Z_0-9]*|" +      // Identificadores/palavras-chave
-            "[+\\-*/=<>!&|]+" +              // Operadores
-            "|[(){};.,]"                     // Separadores
-        );
-        
-        Matcher matcher = pattern.matcher(input); //matcher é o mecanismo responsável por passar o texto pela regex
-        
-        System.out.println(matcher);
-        
-        //é apenas aqui que o texto é passado na regex
-        while (matcher.find()) {
-            String token = matcher.group(); //a ocorrencia atual é "puxada" por esse metodo
-            //na proxima repetição, será a outra ocorrencia
-            
-            //cada vez que algo é encontrado, é verificado onde se encaixa
-            //startsWith é para termos em que precismos verificar apenas o inicio
-            //comentários por exemplo, é apenas duas barras seguidas de qualquer coisa
-            if (token.startsWith("//")) {
-                tokens.add(new Token(TokenType.COMMENT, token));
-                
-            } else if (token.startsWith("\"")) {
-                tokens.add(new Token(TokenType.STRING, token));
-                
-            } else if (token.matches("\\d+")) { //matches verifica o trecho inteiro de uma vez
-                tokens.add(new Token(TokenType.NUMBER, token));
-                
-            } else if (keywords.contains(token)) {
-                tokens.add(new Token(TokenType.KEYWORD, token));
-                
-            } else if (token.matches("[a-zA-Z_][a-zA-Z_0-9]*")) {
-                tokens.add(new Token(TokenType.IDENTIFIER, token));
-                
-            } else if (token.matches("[+\\-*/=<>!&|]+")) {
-                tokens.add(new Token(TokenType.OPERATOR, token));
-                
-            } else if (token.matches("[(){};.,]")) {
-                tokens.add(new Token(TokenType.SEPARATOR, token));
-                
+        return tokenizeBuffer(input).toTokens();
+    }
+
+    // mesma varredura, mas sem criar um objeto/String por token
+    public TokenBuffer tokenizeBuffer(CharSequence input) {
+        try (Telemetria.Medida medida = Telemetria.get().iniciar(Telemetria.Fase.LEXICA)) {
+            TokenBuffer tokens;
+            if (input.length() >= LIMITE_PARALELO && ForkJoinPool.getCommonPoolParallelism() > 1) {
+                tokens = tokenizeParallel(input, ForkJoinPool.commonPool());
             } else {
-                tokens.add(new Token(TokenType.UNKNOWN, token));
-                
+                tokens = tokenizeRange(input, 0, input.length());
             }
+            medida.fim(tokens.size(), 0);
+            return tokens;
+        }
+    }
+
+    /**
+     * Divide o texto em pedaços e analisa cada um numa thread do pool,
+     * juntando os buffers na ordem do texto.
+     *
+     * Os cortes são feitos logo depois de um fim de linha. Como nenhum token
+     * (nem string, nem comentário) atravessa um fim de linha, cada pedaço
+     * começa no estado inicial do automato e não há nada a corrigir na junção.
+     */
+    public TokenBuffer tokenizeParallel(CharSequence input, ForkJoinPool pool) {
+        int n = input.length();
+        int pedaco = Math.max(PEDACO_MINIMO, n / (pool.getParallelism() * 4));
+
+        List<ForkJoinTask<TokenBuffer>> pedacos = new ArrayList<>();
+        int inicio = 0;
+        while (inicio < n) {
+            int a = inicio;
+            int b = corte(input, Math.min(n, inicio + pedaco), n);
+            pedacos.add(pool.submit(() -> tokenizeRange(input, a, b)));
+            inicio = b;
+        }
+
+        // junta uma vez só, já com o tamanho final
+        List<TokenBuffer> buffers = new ArrayList<>(pedacos.size());
+        int total = 0;
+        for (ForkJoinTask<TokenBuffer> tarefa : pedacos) {
+            TokenBuffer buffer = tarefa.join();
+            buffers.add(buffer);
+            total += buffer.size();
+        }
+        TokenBuffer tokens = new TokenBuffer(input, Math.max(16, total));
+        for (TokenBuffer buffer : buffers) {
+            tokens.append(buffer);
+        }
+        return tokens;
+    }
+
+    // primeira posição depois de um fim de linha, a partir de pos
+    private static int corte(CharSequence input, int pos, int fim) {
+        while (pos < fim && !fimDeLinha(input.charAt(pos))) pos++;
+        return Math.min(fim, pos + 1);
+    }
+
+    private static TokenBuffer tokenizeRange(CharSequence input, int inicio, int fim) {
+        TokenBuffer tokens = new TokenBuffer(input, Math.max(16, (fim - inicio) / 4));
+
+        // varredura única: o automato classifica o token enquanto o percorre,
+        // sem voltar atrás e sem testar o texto de novo depois
+        int[] limites = new int[2];
+        int pos = inicio;
+        int tipo;
+        while ((tipo = proximoToken(input, pos, fim, limites)) >= 0) {
+            tokens.add(tipos[tipo], limites[0], limites[1]);
+            pos = limites[1];
         }
-        
+
         return tokens;
     }
+
+    /**
+     * Reconhece o próximo token de {@code in} a partir de {@code pos}.
+     * Grava início e fim em {@code limites} e devolve o ordinal do tipo,
+     * ou -1 quando não há mais tokens até {@code fim}.
+     *
+     * As regras reproduzem as da antiga regex (comentário, string, número,
+     * System.out.println, identificador, operador, separador, nessa ordem);
+     * caracteres que nenhuma regra aceita são ignorados.
+     */
+    static int proximoToken(CharSequence in, int pos, int fim, int[] limites) {
+        while (pos < fim) {
+            char c = in.charAt(pos);
+            int inicio = pos;
+
+            switch (classeDe(c)) {
+                case OPERADOR: {
+                    // "//" vira comentário até o fim da linha
+                    if (c == '/' && pos + 1 < fim && in.charAt(pos + 1) == '/') {
+                        pos += 2;
+                        while (pos < fim && !fimDeLinha(in.charAt(pos))) pos++;
+                        return emitir(limites, inicio, pos, TokenType.COMMENT);
+                    }
+                    pos++;
+                    while (pos < fim && classeDe(in.charAt(pos)) == OPERADOR) pos++;
+                    return emitir(limites, inicio, pos, TokenType.OPERATOR);
+                }
+                case ASPAS: {
+                    // a string termina nas próximas aspas da mesma linha
+                    pos++;
+                    while (pos < fim && in.charAt(pos) != '"' && !fimDeLinha(in.charAt(pos))) pos++;
+                    if (pos < fim && in.charAt(pos) == '"') {
+                        return emitir(limites, inicio, pos + 1, TokenType.STRING);
+                    }
+                    // aspas sem par: o caractere é ignorado
+                    pos = inicio + 1;
+                    break;
+                }
+                case DIGITO: {
+                    // número só conta se estiver isolado (o \b da regex antiga)
+                    pos++;
+                    while (pos < fim && classeDe(in.charAt(pos)) == DIGITO) pos++;
+                    if (!palavraAntes(in, inicio) && !palavraEm(in, pos, fim)) {
+                        return emitir(limites, inicio, pos, TokenType.NUMBER);
+                    }
+                    pos = inicio + 1;
+                    break;
+                }
+                case LETRA: {
+                    if (c == 'S' && comecaCom(in, pos, fim, PRINTLN)) {
+                        return emitir(limites, inicio, pos + PRINTLN.length(), TokenType.KEYWORD);
+                    }
+                    pos++;
+                    while (pos < fim) {
+                        byte k = classeDe(in.charAt(pos));
+                        if (k != LETRA && k != DIGITO) break;
+                        pos++;
+                    }
+                    return emitir(limites, inicio, pos,
+                            ehPalavraChave(in, inicio, pos) ? TokenType.KEYWORD : TokenType.IDENTIFIER);
+                }
+                case SEPARADOR:
+                    return emitir(limites, inicio, pos + 1, TokenType.SEPARATOR);
+                default:
+                    // espaços e qualquer outro caractere não formam token
+                    pos++;
+            }
+        }
+        return -1;
+    }
+
+    private static int emitir(int[] limites, int inicio, int fim, TokenType tipo) {
+        limites[0] = inicio;
+        limites[1] = fim;
+        return tipo.ordinal();
+    }
+
+    private static byte classeDe(char c) {
+        return c < 128 ? classes[c] : OUTRO;
+    }
+
+    // terminadores de linha, os mesmos que o '.' da regex não aceitava
+    static boolean fimDeLinha(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static boolean comecaCom(CharSequence in, int pos, int fim, String s) {
+        if (fim - pos < s.length()) return false;
+        for (int i = 0; i < s.length(); i++) {
+            if (in.charAt(pos + i) != s.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    static boolean ehPalavraChave(CharSequence in, int inicio, int fim) {
+        int tamanho = fim - inicio;
+        for (String palavra : palavrasChave) {
+            if (palavra.length() == tamanho && comecaCom(in, inicio, fim, palavra)) return true;
+        }
+        return false;
+    }
+
+    // Regras do \b do java.util.regex: letra/dígito ASCII ou '_' conta como palavra,
+    // e uma marca não espaçada também conta se estiver presa a uma letra ou dígito
+    private static boolean palavraAntes(CharSequence in, int i) {
+        if (i <= 0) return false;
+        int cp = Character.codePointBefore(in, i);
+        return ehPalavra(cp) || (Character.getType(cp) == Character.NON_SPACING_MARK && temBase(in, i - 1));
+    }
+
+    private static boolean palavraEm(CharSequence in, int i, int fim) {
+        if (i >= fim) return false;
+        int cp = Character.codePointAt(in, i);
+        return ehPalavra(cp) || (Character.getType(cp) == Character.NON_SPACING_MARK && temBase(in, i));
+    }
+
+    private static boolean ehPalavra(int cp) {
+        return cp < 128 && (classes[cp] == LETRA || classes[cp] == DIGITO);
+    }
+
+    private static boolean temBase(CharSequence in, int i) {
+        for (int x = i; x >= 0; x--) {
+            int cp = Character.codePointAt(in, x);
+            if (Character.isLetterOrDigit(cp)) return true;
+            if (Character.getType(cp) != Character.NON_SPACING_MARK) return false;
+        }
+        return false;
+    }
 }
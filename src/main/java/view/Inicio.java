@@ -8,27 +8,32 @@ import com.formdev.flatlaf.intellijthemes.FlatCarbonIJTheme;
 import com.formdev.flatlaf.intellijthemes.FlatAllIJThemes;
 import com.formdev.flatlaf.intellijthemes.FlatMaterialDesignDarkIJTheme;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import javax.swing.JMenuItem;
 import javax.swing.SwingUtilities;
 import javax.swing.SwingWorker;
 import javax.swing.UIManager;
 import javax.swing.UnsupportedLookAndFeelException;
-import javax.swing.text.BadLocationException;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
 import util.Parser;
 
-import util.analisadorLexico;
-import util.Token;
+import util.TokenBuffer;
+import util.CompilationService;
 import util.Compilador;
+import util.CompiladorLote;
+import util.IncrementalLexer;
+import util.ParserIncremental;
+import util.WorkerPool;
 
 /**
  *
  * @author david
  */
+@SuppressWarnings({"serial", "this-escape"}) // a janela nunca é serializada
 public class Inicio extends javax.swing.JFrame {
     
     private static final java.util.logging.Logger logger = java.util.logging.Logger.getLogger(Inicio.class.getName());
@@ -37,10 +42,31 @@ public class Inicio extends javax.swing.JFrame {
      * Creates new form Inicio
      */
     
-    analisadorLexico analisador = new analisadorLexico();
+    
+    // tokens do editor, atualizados a cada edição
+    IncrementalLexer lexer = new IncrementalLexer();
+
+    // árvore de derivação refeita só onde o código mudou desde a última execução
+    ParserIncremental arvoreIncremental = new ParserIncremental();
+
+    // uma análise sintática rodando fora da EDT; outro Executar espera ela acabar
+    private boolean analisando;
+    // o Limpar da árvore chegou durante a análise: o resultado dela não entra na tela
+    private boolean descartarArvore;
+
+    // nós abertos de uma vez depois de uma análise; numa árvore maior só o começo fica aberto
+    private static final int NOS_EXPANDIDOS = 2_000;
+    
+    LogSink logSink;
+
+    // aberta pelo menu Telemetria; criada na primeira vez
+    TelemetriaView telemetria;
     
     public Inicio() {
         initComponents();
+        logSink = new LogSink(logArea);
+        printStream = new PrintStream(new TerminalOutputStream(terminalArea, StandardCharsets.UTF_8), true, StandardCharsets.UTF_8);
+        lexer.attach(editorArea.getDocument());
         
     for (UIManager.LookAndFeelInfo info : FlatAllIJThemes.INFOS) {
     JMenuItem item = new JMenuItem(info.getName());
@@ -49,6 +75,7 @@ public class Inicio extends javax.swing.JFrame {
             UIManager.setLookAndFeel(info.getClassName());
             // Atualiza o visual da janela inteira
             SwingUtilities.updateComponentTreeUI(this);
+            if (telemetria != null) SwingUtilities.updateComponentTreeUI(telemetria);
         } catch (Exception ex) {
             ex.printStackTrace();
         }
@@ -56,6 +83,17 @@ public class Inicio extends javax.swing.JFrame {
     TemasMenuSuperior.add(item);
 }
 
+        javax.swing.JMenu menuTelemetria = new javax.swing.JMenu("Telemetria");
+        JMenuItem metricas = new JMenuItem("Métricas por fase");
+        metricas.addActionListener(e -> {
+            if (telemetria == null) {
+                telemetria = new TelemetriaView(this);
+            }
+            telemetria.setVisible(true);
+        });
+        menuTelemetria.add(metricas);
+        menuSuperior.add(menuTelemetria);
+
     }
 
     /**
@@ -292,64 +330,168 @@ public class Inicio extends javax.swing.JFrame {
     }// </editor-fold>//GEN-END:initComponents
 
     private void botaoExecutarActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_botaoExecutarActionPerformed
-        String codigo = editorArea.getText();
-        System.out.println(codigo);
-        List<Token> tokens = analisador.tokenize(codigo);
-        tokens.forEach(System.out::println);
-
-        try {
-            logArea.getDocument().insertString(logArea.getDocument().getLength(), "\n\n----------------------\nCompilando\n", null);
-        }   catch (BadLocationException e) {
-            e.printStackTrace();
-            
-        }
-        
-        for (Token token : tokens) {
-            try {
-                logArea.getDocument().insertString(logArea.getDocument().getLength(), token.toString() + "\n", null);
-            } catch (BadLocationException e) {
-                e.printStackTrace();
-            }
+        if (analisando) {
+            logSink.append("\nA análise anterior ainda não terminou.\n");
+            return;
         }
+        analisando = true;
+        String codigo = editorArea.getText();
+        TokenBuffer buffer = lexer.snapshot();
+        IncrementalLexer.Edicao edicao = lexer.marcar();
 
-        try {
-            logArea.getDocument().insertString(logArea.getDocument().getLength(), "\n", null);
-        } catch (BadLocationException e) {
-            e.printStackTrace();
-        }
+        logSink.append("\n\n----------------------\nCompilando\n" + listarTokens(buffer) + "\n");
 
         if (passoAPasso.isSelected()) {
-            SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
+            // criada aqui, na EDT, porque já põe o modelo dela no JTree
+            ParseView view = new ParseView(logSink, arvoreDerivacao, passoAPasso);
+            SwingWorker<Boolean, Void> worker = new SwingWorker<Boolean, Void>() {
                 @Override
-                protected Void doInBackground() throws Exception {
-                    Parser parser = new Parser(tokens, logArea, arvoreDerivacao, passoAPasso);
-                    parser.parse();
-                    return null;
+                protected Boolean doInBackground() throws Exception {
+                    Parser parser = new Parser(buffer, view);
+                    parser.parseRecovering();
+                    return mostrarDiagnosticos(parser.diagnosticos());
+                }
+
+                @Override
+                protected void done() {
+                    analisando = false;
+                    // esta árvore não é a incremental, que já foi reiniciada
+                    descartarArvore = false;
+                    // como sem o passo a passo: compila só depois da análise, e só se ela não achou erro
+                    try {
+                        if (!get()) {
+                            executar(codigo, buffer);
+                        }
+                    } catch (InterruptedException | ExecutionException e) {
+                        logSink.append("\nA análise sintática falhou: " + e.getCause() + "\n");
+                    }
                 }
             };
+            // a tela passa a mostrar outra árvore; a próxima análise incremental começa do zero
+            arvoreIncremental.reiniciar();
             worker.execute();
         } else {
-            Parser parser = new Parser(tokens, logArea, arvoreDerivacao, passoAPasso);
-            parser.parse();
-        }
-        
-        try {
-            Compilador compilador = new Compilador(printStream, terminalArea);
-            PrintStream originalOut = System.out;
-            System.setOut(printStream);
-            compilador.compilar(editorArea.getText());
-            System.setOut(originalOut);
-        } catch (Exception e) {
-            e.printStackTrace();
+            // a análise e os nós novos ficam fora da EDT; nela só entram as mudanças na árvore
+            SwingWorker<List<Parser.Diagnostico>, Void> worker = new SwingWorker<List<Parser.Diagnostico>, Void>() {
+                @Override
+                protected List<Parser.Diagnostico> doInBackground() {
+                    arvoreIncremental.reparse(buffer, edicao.intactosNoInicio(), edicao.intactosNoFim());
+                    return arvoreIncremental.diagnosticos();
+                }
+
+                @Override
+                protected void done() {
+                    analisando = false;
+                    boolean descartar = descartarArvore;
+                    descartarArvore = false;
+                    List<Parser.Diagnostico> diagnosticos;
+                    try {
+                        diagnosticos = get();
+                    } catch (InterruptedException | ExecutionException e) {
+                        arvoreIncremental.reiniciar();
+                        logSink.append("\nA análise sintática falhou: " + e.getCause() + "\n");
+                        return;
+                    }
+                    if (descartar) {
+                        arvoreIncremental.reiniciar();
+                    } else {
+                        mostrarArvore();
+                    }
+                    logSink.append("Análise sintática incremental: " + arvoreIncremental.reanalisados()
+                            + " de " + buffer.size() + " tokens reanalisados\n");
+                    // todos os erros de uma vez; com erro de sintaxe o programa não é executado
+                    if (!mostrarDiagnosticos(diagnosticos)) {
+                        executar(codigo, buffer);
+                    }
+                }
+            };
+            worker.execute();
         }
     }//GEN-LAST:event_botaoExecutarActionPerformed
 
+    // na EDT, depois da análise incremental: aplica o que mudou e abre os nós novos
+    private void mostrarArvore() {
+        arvoreIncremental.aplicar();
+        if (arvoreDerivacao.getModel() != arvoreIncremental.modelo()) {
+            arvoreDerivacao.setModel(arvoreIncremental.modelo());
+            arvoreDerivacao.expandRow(0);
+        }
+        expandir(arvoreIncremental.inseridos());
+    }
+
+    // o programa roda em outro processo; a tela continua respondendo enquanto ele roda
+    private void executar(String codigo, TokenBuffer buffer) {
+        SwingWorker<Void, Void> execucao = new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() {
+                try {
+                    Compilador compilador = new Compilador(printStream);
+                    compilador.compilar(codigo, buffer);
+                    if (compilador.nosEliminados() > 0) {
+                        logSink.append("Otimizador: " + compilador.nosEliminados() + " nós eliminados\n");
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+                return null;
+            }
+        };
+        execucao.execute();
+    }
+
+    // um token por linha, como o Token.toString, com os comentários na sua posição
+    private static String listarTokens(TokenBuffer buffer) {
+        CharSequence fonte = buffer.source();
+        StringBuilder texto = new StringBuilder(fonte.length() + buffer.size() * 16);
+        int j = 0;
+        for (int i = 0; i <= buffer.size(); i++) {
+            int inicio = i < buffer.size() ? buffer.start(i) : Integer.MAX_VALUE;
+            while (j < buffer.commentCount() && buffer.commentStart(j) < inicio) {
+                texto.append("[COMMENT: ").append(buffer.commentText(j++)).append("]\n");
+            }
+            if (i == buffer.size()) break;
+            texto.append('[').append(buffer.type(i)).append(": ")
+                    .append(fonte, buffer.start(i), buffer.end(i)).append("]\n");
+        }
+        return texto.toString();
+    }
+
+    // abre os nós e tudo abaixo deles, na ordem do código, até NOS_EXPANDIDOS nós
+    private void expandir(List<DefaultMutableTreeNode> inseridos) {
+        int restantes = NOS_EXPANDIDOS;
+        for (DefaultMutableTreeNode no : inseridos) {
+            java.util.Enumeration<javax.swing.tree.TreeNode> nos = no.preorderEnumeration();
+            while (nos.hasMoreElements()) {
+                DefaultMutableTreeNode atual = (DefaultMutableTreeNode) nos.nextElement();
+                if (atual.isLeaf()) continue;
+                if (restantes-- == 0) return;
+                arvoreDerivacao.expandPath(new javax.swing.tree.TreePath(atual.getPath()));
+            }
+        }
+    }
+
+    // lista os erros de sintaxe no log; true se havia algum
+    private boolean mostrarDiagnosticos(List<Parser.Diagnostico> diagnosticos) {
+        if (diagnosticos.isEmpty()) return false;
+        logSink.append("\n" + diagnosticos.size() + " erro(s) de sintaxe:\n");
+        for (Parser.Diagnostico d : diagnosticos) {
+            logSink.append("linha " + d.linha() + ": " + d.mensagem() + "\n");
+        }
+        return true;
+    }
+
     private void limparLogActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_limparLogActionPerformed
         logArea.setText("");
     }//GEN-LAST:event_limparLogActionPerformed
 
     private void limparArvoreActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_limparArvoreActionPerformed
         arvoreDerivacao.setModel(new DefaultTreeModel(new DefaultMutableTreeNode()));
+        if (analisando) {
+            // a análise em andamento ainda usa a árvore; ela é esquecida quando terminar
+            descartarArvore = true;
+        } else {
+            arvoreIncremental.reiniciar();
+        }
 
     }//GEN-LAST:event_limparArvoreActionPerformed
 
@@ -357,17 +499,18 @@ public class Inicio extends javax.swing.JFrame {
         terminalArea.setText("");
     }//GEN-LAST:event_limparTerminalActionPerformed
 
-    PrintStream printStream = new PrintStream(new OutputStream() {
-        @Override
-        public void write(int b) throws IOException {
-            terminalArea.append(String.valueOf((char) b));
-        }
-    });
+    // saída dos programas executados, ligada ao terminal no construtor
+    PrintStream printStream;
     
     /**
      * @param args the command line arguments
      */
     public static void main(String args[]) throws UnsupportedLookAndFeelException {
+        // com caminhos na linha de comando compila em lote, sem abrir a janela
+        if (args.length > 0) {
+            System.exit(CompiladorLote.executar(args, System.out));
+        }
+
         /* Set the Nimbus look and feel */
         //<editor-fold defaultstate="collapsed" desc=" Look and feel setting code (optional) ">
         /* If Nimbus (introduced in Java SE 6) is not available, stay with the default look and feel.
@@ -375,6 +518,15 @@ public class Inicio extends javax.swing.JFrame {
          */
         UIManager.setLookAndFeel(new FlatMaterialDesignDarkIJTheme());
 
+        // aquece o javac enquanto a janela abre
+        CompilationService.get().warmUp();
+        try {
+            WorkerPool.get().iniciar();
+        } catch (IOException e) {
+            // sem processos separados os programas rodam dentro da interface
+            e.printStackTrace();
+        }
+
         /* Create and display the form */
         java.awt.EventQueue.invokeLater(() -> new Inicio().setVisible(true));
     }
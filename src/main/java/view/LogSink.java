@@ -0,0 +1,90 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package view;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.JTextPane;
+import javax.swing.Timer;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Style;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.StyledDocument;
+
+/**
+ * Saída do painel de log. Pode ser chamada de qualquer thread: os trechos
+ * ficam numa fila sem trava e vão para o documento em lote, no máximo uma
+ * vez por quadro de tela. Trechos seguidos com o mesmo estilo viram um único
+ * insertString, e o cursor só é movido para o fim uma vez por lote.
+ *
+ * @author david
+ */
+public class LogSink {
+
+    // ~60 atualizações por segundo
+    private static final int INTERVALO_MS = 16;
+
+    private final JTextPane log;
+    private final StyledDocument doc;
+    private final Style errorStyle;
+
+    private final ConcurrentLinkedQueue<Trecho> pendentes = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean agendado = new AtomicBoolean();
+    private final Timer timer;
+
+    private record Trecho(String texto, Style estilo) {}
+
+    public LogSink(JTextPane log) {
+        this.log = log;
+        this.doc = log.getStyledDocument();
+        this.errorStyle = log.addStyle("error", null);
+        StyleConstants.setForeground(errorStyle, java.awt.Color.RED);
+
+        this.timer = new Timer(INTERVALO_MS, e -> flush());
+        this.timer.setRepeats(false);
+        // sem isso o Timer ignora um disparo enquanto o anterior ainda roda na EDT
+        this.timer.setCoalesce(false);
+    }
+
+    public void append(String text) {
+        append(text, null);
+    }
+
+    public void appendError(String text) {
+        append(text, errorStyle);
+    }
+
+    private void append(String text, Style style) {
+        pendentes.add(new Trecho(text, style));
+        if (agendado.compareAndSet(false, true)) {
+            timer.restart();
+        }
+    }
+
+    // Na EDT: junta o que chegou desde o último lote e escreve no documento
+    private void flush() {
+        agendado.set(false);
+        Trecho trecho = pendentes.poll();
+        if (trecho == null) return;
+
+        StringBuilder texto = new StringBuilder();
+        while (trecho != null) {
+            Style estilo = trecho.estilo();
+            texto.setLength(0);
+            do {
+                texto.append(trecho.texto());
+                trecho = pendentes.poll();
+            } while (trecho != null && trecho.estilo() == estilo);
+
+            try {
+                doc.insertString(doc.getLength(), texto.toString(), estilo);
+            } catch (BadLocationException e) {
+                e.printStackTrace();
+            }
+        }
+
+        log.setCaretPosition(doc.getLength());
+    }
+}
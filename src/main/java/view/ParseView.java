@@ -0,0 +1,151 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package view;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.JCheckBox;
+import javax.swing.JTree;
+import javax.swing.SwingUtilities;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import util.ParseListener;
+
+/**
+ * Mostra a análise sintática passo a passo: monta a árvore de derivação no
+ * JTree enquanto o parser anda, esperando um pouco a cada passo para dar
+ * tempo de acompanhar, e manda as mensagens do parser para o {@link LogSink}.
+ * Fora do passo a passo quem monta a árvore é o {@link util.ParserIncremental}.
+ *
+ * O parser roda fora da thread do Swing. Os nós novos ficam numa fila e são
+ * aplicados em lote, com no máximo uma tarefa pendente na EDT por vez.
+ *
+ * @author david
+ */
+public class ParseView implements ParseListener {
+
+    private final LogSink log;
+    private final JTree arvoreDerivacao;
+    private final JCheckBox passoAPasso;
+    private final DefaultTreeModel treeModel;
+
+    // nós abertos, do mais externo (raiz) ao atual
+    private final Deque<DefaultMutableTreeNode> abertos = new ArrayDeque<>();
+
+    // inserções ainda não aplicadas no modelo
+    private final ConcurrentLinkedQueue<DefaultMutableTreeNode[]> pendentes = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean agendado = new AtomicBoolean();
+
+    private int delayMillis = 500; // Delay de 0.5 segundos
+
+    public ParseView(LogSink log, JTree arvoreDerivacao, JCheckBox passoAPasso) {
+        this.log = log;
+        this.arvoreDerivacao = arvoreDerivacao;
+        this.passoAPasso = passoAPasso;
+
+        // Inicializa a árvore de derivação
+        DefaultMutableTreeNode rootNode = new DefaultMutableTreeNode("Programa");
+        this.treeModel = new DefaultTreeModel(rootNode);
+        this.arvoreDerivacao.setModel(treeModel);
+        abertos.push(rootNode);
+    }
+
+    @Override
+    public void enterNode(String label) {
+        abertos.push(addNode(abertos.peek(), label));
+        applyDelay();
+    }
+
+    @Override
+    public void leaf(String label) {
+        addNode(abertos.peek(), label);
+        applyDelay();
+    }
+
+    @Override
+    public void exitNode() {
+        abertos.pop();
+    }
+
+    @Override
+    public void log(String message) {
+        log.append(message);
+    }
+
+    @Override
+    public void error(String message) {
+        log.appendError(message);
+    }
+
+    @Override
+    public void finished() {
+        SwingUtilities.invokeLater(this::expandAllTreeNodes);
+    }
+
+    private boolean stepMode() {
+        return passoAPasso != null && passoAPasso.isSelected();
+    }
+
+    private void applyDelay() {
+        if (stepMode()) {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void expandAllTreeNodes() {
+        for (int i = 0; i < arvoreDerivacao.getRowCount(); i++) {
+            arvoreDerivacao.expandRow(i);
+        }
+    }
+
+    // chamado na EDT, depois de aplicar um lote
+    private void ensureTreeVisible() {
+        expandAllTreeNodes();
+
+        // Rola até o final da árvore
+        int rowCount = arvoreDerivacao.getRowCount();
+        if (rowCount > 0) {
+            arvoreDerivacao.scrollRowToVisible(rowCount - 1);
+        }
+    }
+
+    // Cria o nó e põe na fila da EDT; a árvore já está na tela
+    private DefaultMutableTreeNode addNode(DefaultMutableTreeNode parent, String text) {
+        DefaultMutableTreeNode node = new DefaultMutableTreeNode(text);
+        pendentes.add(new DefaultMutableTreeNode[] { parent, node });
+        if (agendado.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::aplicarPendentes);
+        }
+        return node;
+    }
+
+    // Na EDT: aplica todas as inserções acumuladas e avisa o modelo por pai
+    private void aplicarPendentes() {
+        agendado.set(false);
+        DefaultMutableTreeNode[] insercao = pendentes.poll();
+        while (insercao != null) {
+            DefaultMutableTreeNode parent = insercao[0];
+            int primeiro = parent.getChildCount();
+            // inserções seguidas no mesmo pai viram um único evento
+            do {
+                parent.add(insercao[1]);
+                insercao = pendentes.poll();
+            } while (insercao != null && insercao[0] == parent);
+
+            int[] indices = new int[parent.getChildCount() - primeiro];
+            for (int i = 0; i < indices.length; i++) {
+                indices[i] = primeiro + i;
+            }
+            treeModel.nodesWereInserted(parent, indices);
+        }
+        ensureTreeVisible();
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package view;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JFileChooser;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+import util.ClassCache;
+import util.Histograma;
+import util.Telemetria;
+
+/**
+ * Janela com a {@link Telemetria}: uma linha por fase com amostras, falhas,
+ * percentis do tempo, bytes alocados, vazão e os nós que o otimizador tirou,
+ * e embaixo o uso do cache de classes. Atualiza sozinha enquanto está
+ * aberta, e exporta tudo em JSON.
+ *
+ * @author david
+ */
+@SuppressWarnings("serial") // a janela nunca é serializada
+public final class TelemetriaView extends JDialog {
+
+    private static final int INTERVALO_MS = 500;
+
+    private static final String[] COLUNAS = {
+        "Fase", "Amostras", "Falhas", "p50 (ms)", "p90 (ms)", "p99 (ms)", "Máx (ms)", "Total (ms)",
+        "Bytes p50", "Bytes total", "Tokens/s", "Nós/s", "Eliminados"
+    };
+
+    private final Telemetria.Fase[] fases = Telemetria.Fase.values();
+    private final Object[][] linhas = new Object[fases.length][COLUNAS.length];
+    private final Modelo modelo = new Modelo();
+    private final JLabel cache = new JLabel();
+    private final Timer timer = new Timer(INTERVALO_MS, e -> atualizar());
+
+    public TelemetriaView(JFrame dono) {
+        super(dono, "Telemetria", false);
+
+        JTable tabela = new JTable(modelo);
+        tabela.setAutoCreateRowSorter(true);
+
+        JButton exportar = new JButton("Exportar JSON");
+        exportar.addActionListener(e -> exportar());
+        JButton zerar = new JButton("Zerar");
+        zerar.addActionListener(e -> {
+            Telemetria.get().zerar();
+            atualizar();
+        });
+        JPanel botoes = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        botoes.add(zerar);
+        botoes.add(exportar);
+        JPanel rodape = new JPanel(new BorderLayout());
+        cache.setBorder(javax.swing.BorderFactory.createEmptyBorder(0, 8, 0, 0));
+        rodape.add(cache, BorderLayout.CENTER);
+        rodape.add(botoes, BorderLayout.EAST);
+
+        getContentPane().setLayout(new BorderLayout());
+        getContentPane().add(new JScrollPane(tabela), BorderLayout.CENTER);
+        getContentPane().add(rodape, BorderLayout.SOUTH);
+        setSize(980, 280);
+        setLocationRelativeTo(dono);
+
+        // só consulta os histogramas enquanto a janela está na tela
+        addComponentListener(new java.awt.event.ComponentAdapter() {
+            @Override
+            public void componentShown(java.awt.event.ComponentEvent e) {
+                atualizar();
+                timer.start();
+            }
+
+            @Override
+            public void componentHidden(java.awt.event.ComponentEvent e) {
+                timer.stop();
+            }
+        });
+        atualizar();
+    }
+
+    private void atualizar() {
+        for (int i = 0; i < fases.length; i++) {
+            Telemetria.Contadores c = Telemetria.get().fase(fases[i]);
+            Histograma nanos = c.nanos;
+            Object[] linha = linhas[i];
+            linha[0] = fases[i].nome;
+            linha[1] = nanos.amostras();
+            linha[2] = c.falhas();
+            linha[3] = ms(nanos.percentil(50));
+            linha[4] = ms(nanos.percentil(90));
+            linha[5] = ms(nanos.percentil(99));
+            linha[6] = ms(nanos.maximo());
+            linha[7] = ms(nanos.soma());
+            linha[8] = c.bytes.percentil(50);
+            linha[9] = c.bytes.soma();
+            linha[10] = Math.round(c.tokensPorSegundo());
+            linha[11] = Math.round(c.nosPorSegundo());
+            linha[12] = c.eliminados();
+        }
+        modelo.fireTableRowsUpdated(0, fases.length - 1);
+
+        ClassCache.Estatisticas c = Telemetria.get().cache();
+        cache.setText("Cache de classes: " + c.acertos() + " acertos (" + c.acertosDisco() + " do disco), "
+                + c.faltas() + " faltas, " + c.despejos() + " despejos, " + c.entradas() + " entradas");
+    }
+
+    private static double ms(long nanos) {
+        return Math.round(nanos / 1e4) / 100.0;
+    }
+
+    private void exportar() {
+        JFileChooser escolha = new JFileChooser();
+        escolha.setSelectedFile(new java.io.File("telemetria.json"));
+        if (escolha.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        Path arquivo = escolha.getSelectedFile().toPath();
+        try {
+            Files.writeString(arquivo, Telemetria.get().json(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Não foi possível salvar: " + e.getMessage(),
+                    "Telemetria", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private final class Modelo extends AbstractTableModel {
+
+        @Override
+        public int getRowCount() {
+            return linhas.length;
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUNAS.length;
+        }
+
+        @Override
+        public String getColumnName(int coluna) {
+            return COLUNAS[coluna];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int coluna) {
+            return switch (coluna) {
+                case 0 -> String.class;
+                case 3, 4, 5, 6, 7 -> Double.class;
+                default -> Long.class;
+            };
+        }
+
+        @Override
+        public Object getValueAt(int linha, int coluna) {
+            return linhas[linha][coluna];
+        }
+    }
+}
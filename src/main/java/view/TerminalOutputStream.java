@@ -0,0 +1,174 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package view;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import javax.swing.JTextArea;
+import javax.swing.Timer;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+
+/**
+ * Saída do programa do usuário para o terminal da tela.
+ *
+ * Os bytes são decodificados em blocos (um caractere UTF-8 partido entre
+ * duas escritas não se perde) e o texto espera num buffer circular até a
+ * próxima atualização da tela, que acontece no máximo uma vez por quadro.
+ * O terminal guarda só as últimas {@code limite} letras; se o programa
+ * escrever mais rápido do que a tela mostra, o que já não caberia no
+ * terminal é descartado antes mesmo de chegar nele, e um aviso diz quanto
+ * foi perdido. Assim nem a memória nem o trabalho da EDT crescem com a
+ * quantidade de saída.
+ *
+ * @author david
+ */
+public class TerminalOutputStream extends OutputStream {
+
+    private static final int INTERVALO_MS = 16;
+    private static final int LIMITE_PADRAO = 200_000;
+
+    private final JTextArea terminal;
+    private final int limite;
+
+    private final CharsetDecoder decoder;
+    private final ByteBuffer entrada = ByteBuffer.allocate(8192);
+    private final CharBuffer decodificado = CharBuffer.allocate(8192);
+
+    // buffer circular com o texto ainda não mostrado
+    private final char[] anel;
+    private int inicio;
+    private int tamanho;
+    private long descartados;
+
+    private boolean agendado;
+    private final Timer timer;
+
+    public TerminalOutputStream(JTextArea terminal, Charset charset) {
+        this(terminal, charset, LIMITE_PADRAO);
+    }
+
+    public TerminalOutputStream(JTextArea terminal, Charset charset, int limite) {
+        this.terminal = terminal;
+        this.limite = limite;
+        this.anel = new char[limite];
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.timer = new Timer(INTERVALO_MS, e -> mostrar());
+        this.timer.setRepeats(false);
+        // sem isso o Timer ignora um disparo enquanto o anterior ainda roda na EDT
+        this.timer.setCoalesce(false);
+    }
+
+    @Override
+    public synchronized void write(int b) {
+        if (!entrada.hasRemaining()) {
+            decodificar();
+        }
+        entrada.put((byte) b);
+        // um byte solto quase sempre é o fim de um print; decodifica no fim da linha
+        if (b == '\n') {
+            decodificar();
+        }
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        while (len > 0) {
+            int n = Math.min(len, entrada.remaining());
+            entrada.put(b, off, n);
+            off += n;
+            len -= n;
+            decodificar();
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        decodificar();
+    }
+
+    // passa os bytes completos para o anel; um caractere incompleto fica para depois
+    private void decodificar() {
+        entrada.flip();
+        while (true) {
+            boolean cheio = decoder.decode(entrada, decodificado, false).isOverflow();
+            decodificado.flip();
+            guardar(decodificado);
+            decodificado.clear();
+            if (!cheio) break;
+        }
+        entrada.compact();
+
+        if (tamanho > 0 && !agendado) {
+            agendado = true;
+            timer.restart();
+        }
+    }
+
+    private void guardar(CharBuffer texto) {
+        int n = texto.remaining();
+        if (n >= limite) {
+            // só as últimas letras importam
+            descartados += tamanho + (n - limite);
+            texto.position(texto.position() + n - limite);
+            inicio = 0;
+            tamanho = 0;
+            n = limite;
+        } else if (tamanho + n > limite) {
+            int sobra = tamanho + n - limite;
+            descartados += sobra;
+            inicio = (inicio + sobra) % limite;
+            tamanho -= sobra;
+        }
+        while (n > 0) {
+            int fim = (inicio + tamanho) % limite;
+            int k = Math.min(n, limite - fim);
+            texto.get(anel, fim, k);
+            tamanho += k;
+            n -= k;
+        }
+    }
+
+    // Na EDT: leva o que está no anel para o terminal e corta o começo se passou do limite
+    private void mostrar() {
+        String texto;
+        long perdidos;
+        synchronized (this) {
+            agendado = false;
+            if (tamanho == 0) return;
+            StringBuilder sb = new StringBuilder(tamanho);
+            int fim = Math.min(limite, inicio + tamanho);
+            sb.append(anel, inicio, fim - inicio);
+            sb.append(anel, 0, tamanho - (fim - inicio));
+            texto = sb.toString();
+            perdidos = descartados;
+            inicio = 0;
+            tamanho = 0;
+            descartados = 0;
+        }
+
+        if (perdidos > 0) {
+            texto = "\n[... " + perdidos + " caracteres de saída descartados ...]\n" + texto;
+        }
+        terminal.append(texto);
+
+        Document doc = terminal.getDocument();
+        int excesso = doc.getLength() - limite;
+        if (excesso > 0) {
+            try {
+                doc.remove(0, excesso);
+            } catch (BadLocationException e) {
+                e.printStackTrace();
+            }
+        }
+        terminal.setCaretPosition(doc.getLength());
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Confere que o automato do {@link analisadorLexico} acha os mesmos tokens,
+ * nas mesmas posições, que a regex antiga ({@link LexerRegex}).
+ *
+ * @author david
+ */
+class AnalisadorLexicoTest {
+
+    // casos do \b da regex: marcas não espaçadas presas ou não a uma letra, letras fora do ASCII, surrogates
+    private static final String[] CORPUS = {
+        "int a = 10;\nSystem.out.println(a + 2);",
+        "String s = \"abc\" + \"\"; // fim",
+        "\"sem par\n\"outra\" x",
+        "a+//b\n+//c",
+        "x=1//2\r\ny=3 z=4\u0085w 5",
+        "12ab ab12 _1 1_ 1.5 .5 5.",
+        "é1 1é ç12ç 12",
+        "é1 1́ ́1 á́2",
+        " ́́12 ́2 x́ 2",
+        "١٢ 1١ ́١ 1",
+        "𝐀1 1𝐀 😀1",
+        "\uD800 1 \uDC00 2 \uDC001",
+        "System.out.printlnx System.out.print Systemx.out.println",
+        "if(a<=b&&!c||d!=e){while(true){}}",
+        "",
+        "   \t\n",
+    };
+
+    // caracteres que exercitam cada regra e cada fronteira de palavra
+    private static final String ALFABETO = "aZ_09 \t\n\r\"/+-*=<>!&|(){};.,#@\\é́١  \u0085😀𝐀S";
+
+    @Test
+    void mesmosTokensQueARegexNoCorpus() {
+        for (String codigo : CORPUS) {
+            assertEquals(regex(codigo), automato(codigo), codigo);
+        }
+    }
+
+    @Test
+    void mesmosTokensQueARegexEmTextoAleatorio() {
+        Random random = new Random(1);
+        for (int n = 0; n < 20_000; n++) {
+            StringBuilder codigo = new StringBuilder();
+            int tamanho = random.nextInt(40);
+            for (int i = 0; i < tamanho; i++) {
+                if (random.nextInt(20) == 0) {
+                    codigo.append("System.out.println");
+                } else {
+                    codigo.append(ALFABETO.charAt(random.nextInt(ALFABETO.length())));
+                }
+            }
+            String texto = codigo.toString();
+            assertEquals(regex(texto), automato(texto), texto);
+        }
+    }
+
+    @Test
+    void listaDeTokensIgualAAntiga() {
+        for (String codigo : CORPUS) {
+            assertEquals(texto(new LexerRegex().tokenize(codigo)), texto(new analisadorLexico().tokenize(codigo)), codigo);
+        }
+    }
+
+    // "TIPO início-fim" de cada token, na ordem
+    private static List<String> regex(String codigo) {
+        List<String> tokens = new ArrayList<>();
+        Matcher matcher = LexerRegex.matcher(codigo);
+        while (matcher.find()) {
+            tokens.add(LexerRegex.tipo(matcher.group()) + " " + matcher.start() + "-" + matcher.end());
+        }
+        return tokens;
+    }
+
+    private static List<String> automato(String codigo) {
+        List<String> tokens = new ArrayList<>();
+        int[] limites = new int[2];
+        int pos = 0;
+        int tipo;
+        while ((tipo = analisadorLexico.proximoToken(codigo, pos, codigo.length(), limites)) >= 0) {
+            tokens.add(analisadorLexico.tipos[tipo] + " " + limites[0] + "-" + limites[1]);
+            pos = limites[1];
+        }
+        return tokens;
+    }
+
+    private static List<String> texto(List<Token> tokens) {
+        List<String> textos = new ArrayList<>();
+        for (Token token : tokens) {
+            textos.add(token.toString());
+        }
+        return textos;
+    }
+}
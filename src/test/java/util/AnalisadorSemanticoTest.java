@@ -0,0 +1,206 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * O {@link AnalisadorSemantico} contra o javac: o que ele aponta o javac
+ * também recusa, e o que ele deixa passar o javac aceita (ou, nos casos que
+ * a análise não modela, recusa por conta própria).
+ *
+ * @author david
+ */
+class AnalisadorSemanticoTest {
+
+    private static final String NOME = "MinhaClasse";
+
+    @Test
+    void tiposIncompativeis() {
+        erro("int a = \"s\";", "tipos incompatíveis: String não pode ser convertido em int");
+        erro("float f = 1;\nint a = 1;\na = f * 2;", "tipos incompatíveis: possível perda de precisão na conversão de float para int");
+        erro("boolean b = 1 + true;", "tipos de operandos inválidos para o operador binário '+' (int e boolean)");
+        erro("if (\"s\" == 1) {\nint c = 1;\n}", "tipos incomparáveis: String e int");
+        aceito("float f = 1;\nString s = \"a\" + 1 + true;\nif (f < 2) {\nf = f / 2;\n}");
+    }
+
+    @Test
+    void nomeNaoDeclarado() {
+        erro("System.out.println(b);", "não foi possível encontrar o símbolo: variável b");
+        // a do bloco acabou junto com ele
+        erro("if (1 < 2) {\nint b = 1;\n}\nSystem.out.println(b);", "não foi possível encontrar o símbolo: variável b");
+        aceito("if (1 < 2) {\nint b = 1;\n}\nint b = 2;\nSystem.out.println(b);");
+    }
+
+    @Test
+    void redeclaracaoEmBlocoAninhado() {
+        erro("int a = 1;\nif (a < 2) {\nwhile (a < 3) {\nint a = 2;\n}\n}",
+                "a variável a já foi definida no método main(String[])");
+        // blocos irmãos: cada um tem a sua
+        aceito("int a = 1;\nif (a < 2) {\nint c = 1;\n} else {\nint c = 2;\n}\nwhile (a < 3) {\nint c = 3;\na = a + c;\n}");
+    }
+
+    @Test
+    void semValorSoComCondicoesVariaveis() {
+        erro("int b = 1;\nint a;\nif (b < 2) {\na = 1;\n}\nSystem.out.println(a);",
+                "a variável a pode não ter sido inicializada");
+        // com a condição constante o javac sabe que o if sempre entra; a análise fica quieta
+        aceito("int a;\nif (1 < 2) {\na = 1;\n}\nSystem.out.println(a);");
+        aceito("int a;\nif (1 < 2) {\na = 1;\n} else {\nint c = 0;\n}\nSystem.out.println(a);");
+        aceito("int a;\nif (a < 1) {\na = 1;\n}\nwhile (1 < 2) {\na = 2;\n}", false);
+    }
+
+    @Test
+    void tokensQueNaoCobremOCodigo() {
+        // o léxico pula as aspas simples e sobra um nome a que não existe: por isso a
+        // análise só vale com cobreTudo(), e quem chama deixa o resto para o javac
+        String codigo = "int x = 'a';\nSystem.out.println(x);";
+        TokenBuffer tokens = new analisadorLexico().tokenizeBuffer(codigo);
+        assertFalse(tokens.cobreTudo());
+        assertEquals(1, AnalisadorSemantico.analisar(tokens, new Parser(tokens).parse()).size());
+        assertTrue(javac(codigo));
+        assertTrue(CompiladorLote.compilar(java.nio.file.Path.of("p.txt"), codigo).ok());
+    }
+
+    @Test
+    void mesmoVereditoQueOJavacEmProgramasAleatorios() {
+        Random random = new Random(11);
+        int recusados = 0;
+        for (int n = 0; n < 300; n++) {
+            Gerador gerador = new Gerador(random);
+            gerador.bloco(0);
+            String codigo = String.join("\n", gerador.linhas);
+            TokenBuffer tokens = new analisadorLexico().tokenizeBuffer(codigo);
+            List<AnalisadorSemantico.Erro> erros = AnalisadorSemantico.analisar(tokens, new Parser(tokens).parse());
+            // sem condição constante, nada do que o javac recusa fica fora da análise
+            assertEquals(erros.isEmpty(), javac(codigo), codigo + "\n" + erros);
+            if (!erros.isEmpty()) recusados++;
+        }
+        // sobram programas dos dois lados; senão o teste não diz nada
+        assertTrue(recusados > 30 && recusados < 270, recusados + " programas recusados");
+    }
+
+    // a análise aponta só esse erro, e o javac também recusa
+    private static void erro(String codigo, String mensagem) {
+        List<AnalisadorSemantico.Erro> erros = analisar(codigo);
+        assertEquals(1, erros.size(), codigo + "\n" + erros);
+        assertEquals(mensagem, erros.get(0).mensagem());
+        assertFalse(javac(codigo), codigo);
+    }
+
+    private static void aceito(String codigo) {
+        aceito(codigo, true);
+    }
+
+    // a análise não aponta nada; o javac aceita, a menos que seja um caso que ela não modela
+    private static void aceito(String codigo, boolean javac) {
+        assertEquals(List.of(), analisar(codigo), codigo);
+        assertEquals(javac, javac(codigo), codigo);
+    }
+
+    private static List<AnalisadorSemantico.Erro> analisar(String codigo) {
+        TokenBuffer tokens = new analisadorLexico().tokenizeBuffer(codigo);
+        assertTrue(tokens.cobreTudo(), codigo);
+        return AnalisadorSemantico.analisar(tokens, new Parser(tokens).parse());
+    }
+
+    private static boolean javac(String codigo) {
+        return CompilationService.get().compile(NOME, Compilador.envolver(codigo)).ok();
+    }
+
+    // programas quase sempre certos, com escopos de verdade; de vez em quando um erro de
+    // tipo, um nome que não existe, uma redeclaração ou uma variável sem valor
+    private static final class Gerador {
+
+        private static final String[] TIPOS = {"int", "float", "boolean", "String"};
+
+        private final Random random;
+        private final List<String> linhas = new ArrayList<>();
+        // variáveis visíveis, com o tipo na mesma posição
+        private final List<String> nomes = new ArrayList<>();
+        private final List<String> tipos = new ArrayList<>();
+
+        Gerador(Random random) {
+            this.random = random;
+        }
+
+        void bloco(int nivel) {
+            int visiveis = nomes.size();
+            int quantos = 1 + random.nextInt(nivel == 0 ? 6 : 3);
+            for (int i = 0; i < quantos; i++) {
+                comando(nivel);
+            }
+            nomes.subList(visiveis, nomes.size()).clear();
+            tipos.subList(visiveis, tipos.size()).clear();
+        }
+
+        private void comando(int nivel) {
+            int escolha = random.nextInt(nivel < 2 ? 6 : 4);
+            String numerica = variavel("int", "float");
+            if (escolha >= 4 && numerica != null) {
+                String condicao = numerica + " " + new String[]{"<", ">", "<=", ">=", "==", "!="}[random.nextInt(6)]
+                        + " " + expressao("int");
+                linhas.add((escolha == 4 ? "if (" : "while (") + condicao + ") {");
+                bloco(nivel + 1);
+                if (escolha == 4 && random.nextBoolean()) {
+                    linhas.add("} else {");
+                    bloco(nivel + 1);
+                }
+                linhas.add("}");
+            } else if (escolha == 1 && !nomes.isEmpty()) {
+                int i = random.nextInt(nomes.size());
+                linhas.add(nomes.get(i) + " = " + expressao(tipos.get(i)) + ";");
+            } else if (escolha == 2) {
+                linhas.add("System.out.println(" + expressao(TIPOS[random.nextInt(TIPOS.length)]) + ");");
+            } else {
+                String tipo = TIPOS[random.nextInt(TIPOS.length)];
+                String nome = "v" + nomes.size();
+                if (!nomes.isEmpty() && random.nextInt(25) == 0) nome = nomes.get(random.nextInt(nomes.size()));
+                // sem valor só de vez em quando: o javac recusa o uso antes da atribuição
+                linhas.add(tipo + " " + nome + (random.nextInt(25) == 0 ? ";" : " = " + expressao(tipo) + ";"));
+                nomes.add(nome);
+                tipos.add(tipo);
+            }
+        }
+
+        private String expressao(String tipo) {
+            if (random.nextInt(40) == 0) return "w";
+            if (random.nextInt(40) == 0) return tipo.equals("int") ? "true" : "1 - true";
+            String termo = termo(tipo);
+            if (random.nextInt(3) != 0) return termo;
+            return switch (tipo) {
+                case "int", "float" -> termo + " " + new String[]{"+", "-", "*", "/"}[random.nextInt(4)] + " " + termo(tipo);
+                case "String" -> termo + " + " + termo(TIPOS[random.nextInt(TIPOS.length)]);
+                default -> termo;
+            };
+        }
+
+        private String termo(String tipo) {
+            String variavel = tipo.equals("float") ? variavel("int", "float") : variavel(tipo, tipo);
+            if (variavel != null && random.nextBoolean()) return variavel;
+            return switch (tipo) {
+                case "int", "float" -> String.valueOf(random.nextInt(10));
+                case "boolean" -> random.nextBoolean() ? "true" : "false";
+                default -> "\"t\"";
+            };
+        }
+
+        // uma variável visível de um dos dois tipos, ou null
+        private String variavel(String tipo, String outro) {
+            List<String> candidatas = new ArrayList<>();
+            for (int i = 0; i < nomes.size(); i++) {
+                if (tipos.get(i).equals(tipo) || tipos.get(i).equals(outro)) candidatas.add(nomes.get(i));
+            }
+            return candidatas.isEmpty() ? null : candidatas.get(random.nextInt(candidatas.size()));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * O {@link CompiladorLote} aceita e recusa o mesmo que a janela: a análise
+ * semântica só vale quando os tokens cobrem o código todo, as pastas
+ * ocultas ficam de fora e o resumo diz quanto o cache de classes poupou.
+ *
+ * @author david
+ */
+class CompiladorLoteTest {
+
+    @TempDir
+    Path pasta;
+
+    @Test
+    void literalDeCaractereFicaParaOJavac() {
+        // o léxico pula as aspas simples: os tokens são "int x = a ;", sem nenhum a declarado
+        CompiladorLote.Resultado resultado = CompiladorLote.compilar(Path.of("p.txt"), "int x = 'a';\nSystem.out.println(x);");
+        assertTrue(resultado.ok(), String.valueOf(resultado.erros()));
+        assertTrue(resultado.bytes() > 0);
+    }
+
+    @Test
+    void erroDeTipoNaoChegaAoJavac() {
+        CompiladorLote.Resultado resultado = CompiladorLote.compilar(Path.of("p.txt"), "int x = \"a\";");
+        assertFalse(resultado.ok());
+        assertEquals(1, resultado.erros().size(), String.valueOf(resultado.erros()));
+        assertEquals(0, resultado.nanos()[3]);
+    }
+
+    @Test
+    void pastasOcultasFicamDeFora() throws IOException {
+        Files.createDirectories(pasta.resolve(".git/objects"));
+        Files.createDirectories(pasta.resolve("sub"));
+        Files.writeString(pasta.resolve(".git/HEAD"), "ref: refs/heads/main");
+        Files.writeString(pasta.resolve(".git/objects/ab"), "x");
+        Files.writeString(pasta.resolve(".oculto"), "x");
+        Files.writeString(pasta.resolve("a.txt"), "int a = 1;");
+        Files.writeString(pasta.resolve("sub/b.txt"), "int b = 2;");
+
+        assertEquals(List.of(pasta.resolve("a.txt"), pasta.resolve("sub/b.txt")),
+                CompiladorLote.arquivos(List.of(pasta.toString())));
+    }
+
+    @Test
+    void resumoMostraOCacheDeClasses() throws IOException {
+        // vai para o javac (o léxico pula as aspas) com um texto que nenhum outro teste compilou
+        String codigo = "int x = 'a';\nSystem.out.println(x); // " + System.nanoTime();
+        Files.writeString(pasta.resolve("a.txt"), codigo);
+        Files.writeString(pasta.resolve("b.txt"), codigo);
+
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        int codigoSaida = CompiladorLote.executar(new String[]{"-t", "1", pasta.toString()},
+                new PrintStream(saida, true, StandardCharsets.UTF_8));
+
+        String texto = saida.toString(StandardCharsets.UTF_8);
+        assertEquals(0, codigoSaida, texto);
+        assertTrue(texto.contains("cache de classes: 1 acerto(s) (0 do disco), 1 falta(s)"), texto);
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Teste diferencial do {@link GeradorBytecode}: cada programa que ele aceita
+ * também é compilado pelo javac, e as duas classes rodam. A saída, a exceção
+ * e a linha onde ela aconteceu têm que ser as mesmas.
+ *
+ * @author david
+ */
+class GeradorBytecodeTest {
+
+    private static final String NOME = "MinhaClasse";
+    private static final String[] TIPOS = {"int", "float", "boolean", "String"};
+    private static final String[] ARITMETICOS = {"+", "-", "*", "/"};
+    private static final String[] RELACIONAIS = {"<", ">", "<=", ">=", "==", "!="};
+
+    @Test
+    void mesmoResultadoQueOJavacEmProgramasEscolhidos() throws Exception {
+        String[] programas = {
+            "int a = 7;\nint b = 2;\nSystem.out.println(a / b);\nSystem.out.println(a - b * 3);",
+            "float f = 7;\nf = f / 2;\nSystem.out.println(f);\nSystem.out.println(f * 3 + 1);",
+            "int z = 0;\nSystem.out.println(\"antes\");\nSystem.out.println(1 / z);",
+            "String s = \"a\";\nint n = 1;\nboolean b = true;\nSystem.out.println(s + n + b + 1);",
+            "int i = 0;\nwhile (i < 5) {\nif (i == 2) {\nSystem.out.println(\"dois\");\n} else {\nSystem.out.println(i);\n}\ni = i + 1;\n}",
+            "int i = 0;\nwhile (i < 3) {\nint j = i * 2;\nSystem.out.println(j);\ni = i + 1;\n}\nint j = 9;\nSystem.out.println(j);",
+            "float x = 0;\nif (x < 1) {\nSystem.out.println(\"menor\");\n}\nif (x != x) {\nSystem.out.println(\"NaN\");\n}",
+            "String s = \"\";\nint i = 0;\n" + "s = s + i + \"-\" + i + \"-\" + i + \"-\" + i + \"-\" + i;\n".repeat(3) + "System.out.println(s);",
+            "String s = \"x\"" + " + 1".repeat(150) + ";\nSystem.out.println(s);",
+        };
+        for (String codigo : programas) {
+            assertNotNull(comparar(codigo), codigo);
+        }
+    }
+
+    @Test
+    void mesmoResultadoQueOJavacEmProgramasAleatorios() throws Exception {
+        int gerados = 0;
+        for (int semente = 0; semente < 300; semente++) {
+            String codigo = new Programa(new Random(semente)).gerar();
+            if (comparar(codigo) != null) gerados++;
+        }
+        // a maior parte dos programas cai no subconjunto do gerador; senão o teste não diz nada
+        assertTrue(gerados > 200, "só " + gerados + " programas gerados");
+    }
+
+    // compara com o javac; null se o gerador recusou o programa
+    private static String comparar(String codigo) throws Exception {
+        TokenBuffer tokens = new analisadorLexico().tokenizeBuffer(codigo);
+        Map<String, byte[]> geradas = GeradorBytecode.gerar(NOME, tokens, 2);
+        if (geradas == null) return null;
+
+        CompilationService.Result javac = CompilationService.get().compile(NOME, Compilador.envolver(codigo));
+        assertTrue(javac.ok(), "o javac recusa um programa que o gerador aceitou:\n" + codigo + "\n" + javac.diagnostics());
+        String esperado = rodar(javac.classes());
+        assertEquals(esperado, rodar(geradas), codigo);
+        return esperado;
+    }
+
+    // saída do main e, se ele lançar, a exceção e a linha onde ela aconteceu
+    private static String rodar(Map<String, byte[]> classes) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream original = System.out;
+        System.setOut(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        try {
+            Class<?> classe = Class.forName(NOME, true, new ByteClassLoader(classes, GeradorBytecodeTest.class.getClassLoader()));
+            classe.getDeclaredMethod("main", String[].class).invoke(null, (Object) new String[0]);
+            return bytes.toString(StandardCharsets.UTF_8);
+        } catch (InvocationTargetException e) {
+            StackTraceElement origem = e.getCause().getStackTrace()[0];
+            return bytes.toString(StandardCharsets.UTF_8) + e.getCause() + " @" + origem.getFileName() + ":" + origem.getLineNumber();
+        } finally {
+            System.setOut(original);
+        }
+    }
+
+    // programas com declarações, atribuições, prints, if/else e while, com as variáveis em escopo
+    private static final class Programa {
+
+        private final Random random;
+        private final List<String[]> variaveis = new ArrayList<>();
+        private final StringBuilder codigo = new StringBuilder();
+        private int proxima;
+
+        Programa(Random random) {
+            this.random = random;
+        }
+
+        String gerar() {
+            bloco(0, 3 + random.nextInt(8));
+            return codigo.toString();
+        }
+
+        private void bloco(int profundidade, int comandos) {
+            int antes = variaveis.size();
+            for (int i = 0; i < comandos; i++) {
+                switch (random.nextInt(profundidade > 2 ? 4 : 6)) {
+                    case 0 -> {
+                        String tipo = TIPOS[random.nextInt(TIPOS.length)];
+                        String nome = "v" + proxima++;
+                        codigo.append(tipo).append(' ').append(nome).append(" = ").append(expressao(tipo, 1)).append(";\n");
+                        variaveis.add(new String[]{nome, tipo});
+                    }
+                    case 1 -> {
+                        // os contadores dos laços ficam de fora, senão o laço pode não terminar
+                        List<String[]> livres = variaveis.stream().filter(v -> v[0].startsWith("v")).toList();
+                        if (livres.isEmpty()) break;
+                        String[] v = livres.get(random.nextInt(livres.size()));
+                        codigo.append(v[0]).append(" = ").append(expressao(v[1], 1)).append(";\n");
+                    }
+                    case 2, 3 -> codigo.append("System.out.println(").append(expressao(TIPOS[random.nextInt(TIPOS.length)], 1)).append(");\n");
+                    case 4 -> {
+                        codigo.append("if (").append(condicao()).append(") {\n");
+                        bloco(profundidade + 1, random.nextInt(3));
+                        codigo.append('}');
+                        if (random.nextBoolean()) {
+                            codigo.append(" else {\n");
+                            bloco(profundidade + 1, random.nextInt(3));
+                            codigo.append('}');
+                        }
+                        codigo.append('\n');
+                    }
+                    default -> {
+                        String c = "c" + proxima++;
+                        codigo.append("int ").append(c).append(" = 0;\nwhile (").append(c).append(" < ").append(random.nextInt(5))
+                                .append(") {\n").append(c).append(" = ").append(c).append(" + 1;\n");
+                        variaveis.add(new String[]{c, "int"});
+                        bloco(profundidade + 1, random.nextInt(3));
+                        codigo.append("}\n");
+                    }
+                }
+            }
+            while (variaveis.size() > antes) variaveis.remove(variaveis.size() - 1);
+        }
+
+        private String condicao() {
+            if (random.nextInt(8) == 0) return expressao("boolean", 3) + " == " + expressao("boolean", 3);
+            return expressao(random.nextBoolean() ? "int" : "float", 1) + " " + RELACIONAIS[random.nextInt(RELACIONAIS.length)]
+                    + " " + expressao("int", 1);
+        }
+
+        private String expressao(String tipo, int profundidade) {
+            List<String> candidatas = new ArrayList<>();
+            for (String[] v : variaveis) {
+                if (v[1].equals(tipo) || (tipo.equals("float") && v[1].equals("int"))) candidatas.add(v[0]);
+            }
+            if (profundidade > 3 || random.nextInt(3) == 0) {
+                if (!candidatas.isEmpty() && random.nextBoolean()) return candidatas.get(random.nextInt(candidatas.size()));
+                return switch (tipo) {
+                    case "int" -> String.valueOf(random.nextInt(5) == 0 ? random.nextInt() & 0x7fffffff : random.nextInt(20));
+                    case "float" -> String.valueOf(random.nextInt(20));
+                    case "boolean" -> random.nextBoolean() ? "true" : "false";
+                    default -> "\"s" + random.nextInt(10) + "\"";
+                };
+            }
+            return switch (tipo) {
+                case "int", "float" -> {
+                    boolean parenteses = random.nextInt(4) == 0;
+                    yield (parenteses ? "(" : "") + expressao(tipo, profundidade + 1) + " "
+                            + ARITMETICOS[random.nextInt(ARITMETICOS.length)] + " "
+                            + expressao(random.nextInt(3) == 0 ? "int" : tipo, profundidade + 1) + (parenteses ? ")" : "");
+                }
+                case "String" -> expressao(random.nextBoolean() ? "String" : TIPOS[random.nextInt(TIPOS.length)], profundidade + 1)
+                        + " + " + expressao(random.nextBoolean() ? "String" : TIPOS[random.nextInt(TIPOS.length)], profundidade + 1);
+                default -> expressao(tipo, 9);
+            };
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Random;
+import java.util.function.ToIntFunction;
+
+/**
+ * Mede o {@link analisadorLexico} contra a regex antiga ({@link LexerRegex})
+ * num programa gerado com declarações, expressões, strings e comentários:
+ * tempo por token, MB/s e bytes alocados por token. Antes de medir confere
+ * que os dois dão os mesmos tokens.
+ *
+ * Uso: {@code java util.LexerBenchmark [linhas] [repetições]}
+ *
+ * @author david
+ */
+public class LexerBenchmark {
+
+    private static final String[] OPERADORES = {"+", "-", "*", "/", "<", ">", "==", "!=", "&&", "||"};
+
+    public static void main(String[] args) {
+        int linhas = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int repeticoes = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        String codigo = programa(new Random(42), linhas);
+        List<Token> antigos = new LexerRegex().tokenize(codigo);
+        List<Token> novos = new analisadorLexico().tokenize(codigo);
+        for (int i = 0; i < Math.max(antigos.size(), novos.size()); i++) {
+            if (i >= antigos.size() || i >= novos.size()
+                    || antigos.get(i).type != novos.get(i).type || !antigos.get(i).value.equals(novos.get(i).value)) {
+                throw new RuntimeException("os analisadores divergem no token " + i);
+            }
+        }
+        System.out.printf("%d caracteres, %d tokens%n", codigo.length(), antigos.size());
+
+        medir("regex", codigo, antigos.size(), repeticoes, c -> new LexerRegex().tokenize(c).size());
+        medir("tokenize", codigo, antigos.size(), repeticoes, c -> new analisadorLexico().tokenize(c).size());
+        medir("tokenizeBuffer", codigo, antigos.size(), repeticoes, c -> new analisadorLexico().tokenizeBuffer(c).size());
+    }
+
+    private static void medir(String nome, String codigo, int tokens, int repeticoes, ToIntFunction<String> lexer) {
+        // aquecimento: o JIT compila o analisador antes da medida
+        for (int i = 0; i < repeticoes / 4 + 1; i++) {
+            lexer.applyAsInt(codigo);
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().threadId();
+        long bytes = threads.getThreadAllocatedBytes(id);
+        long inicio = System.nanoTime();
+        for (int i = 0; i < repeticoes; i++) {
+            lexer.applyAsInt(codigo);
+        }
+        long nanos = System.nanoTime() - inicio;
+        bytes = threads.getThreadAllocatedBytes(id) - bytes;
+
+        long total = (long) tokens * repeticoes;
+        System.out.printf("%-15s %.1f ns/token, %.1f MB/s, %.1f bytes/token%n",
+                nome, (double) nanos / total, (double) codigo.length() * repeticoes * 1000 / nanos, (double) bytes / total);
+    }
+
+    // um pouco de tudo o que a linguagem aceita, com comentários no meio
+    private static String programa(Random random, int linhas) {
+        StringBuilder codigo = new StringBuilder();
+        for (int i = 0; i < linhas; i++) {
+            switch (random.nextInt(6)) {
+                case 0 -> codigo.append("int v").append(i).append(" = ").append(random.nextInt(1000)).append(";");
+                case 1 -> codigo.append("String s").append(i).append(" = \"texto ").append(i).append("\";");
+                case 2 -> codigo.append("// comentário da linha ").append(i);
+                case 3 -> codigo.append("System.out.println(v").append(random.nextInt(100)).append(");");
+                case 4 -> codigo.append("while (v").append(random.nextInt(100)).append(" < 10) {");
+                default -> {
+                    codigo.append('v').append(random.nextInt(100)).append(" = ");
+                    for (int k = 0; k < 4 + random.nextInt(8); k++) {
+                        if (k > 0) codigo.append(' ').append(OPERADORES[random.nextInt(OPERADORES.length)]).append(' ');
+                        codigo.append(random.nextBoolean() ? "v" + random.nextInt(100) : String.valueOf(random.nextInt(100)));
+                    }
+                    codigo.append(";");
+                }
+            }
+            codigo.append('\n');
+        }
+        return codigo.toString();
+    }
+}
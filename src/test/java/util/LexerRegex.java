@@ -0,0 +1,71 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import util.analisadorLexico.TokenType;
+
+/**
+ * A análise léxica antiga, por regex, guardada só como referência: o
+ * {@link LexerBenchmark} mede o {@link analisadorLexico} contra ela e os
+ * testes conferem que os dois dão os mesmos tokens. O padrão é o mesmo de
+ * antes, mas compilado uma vez só e sem o print do matcher.
+ *
+ * @author david
+ */
+class LexerRegex {
+
+    private static final Set<String> keywords = Set.of(
+           "int", "float", "if", "else", "for", "while", "return", "public", "class", "static", "void", "new", "String", "boolean", "true", "false", "System.out.println"
+    );
+
+    private static final Pattern pattern = Pattern.compile(
+        "(//.*)|" +                      // Comentários
+        "(\".*?\")|" +                   // Strings
+        "\\b\\d+\\b|" +                  // Números
+        "(System\\.out\\.println)|" +
+        "[a-zA-Z_][a-zA-Z_0-9]*|" +      // Identificadores/palavras-chave
+        "[+\\-*/=<>!&|]+" +              // Operadores
+        "|[(){};.,]"                     // Separadores
+    );
+
+    // tipo de cada ocorrência, classificada como na versão antiga
+    static TokenType tipo(String token) {
+        if (token.startsWith("//")) {
+            return TokenType.COMMENT;
+        } else if (token.startsWith("\"")) {
+            return TokenType.STRING;
+        } else if (token.matches("\\d+")) {
+            return TokenType.NUMBER;
+        } else if (keywords.contains(token)) {
+            return TokenType.KEYWORD;
+        } else if (token.matches("[a-zA-Z_][a-zA-Z_0-9]*")) {
+            return TokenType.IDENTIFIER;
+        } else if (token.matches("[+\\-*/=<>!&|]+")) {
+            return TokenType.OPERATOR;
+        } else if (token.matches("[(){};.,]")) {
+            return TokenType.SEPARATOR;
+        }
+        return TokenType.UNKNOWN;
+    }
+
+    static Matcher matcher(CharSequence input) {
+        return pattern.matcher(input);
+    }
+
+    public List<Token> tokenize(String input) {
+        List<Token> tokens = new ArrayList<>();
+        Matcher matcher = pattern.matcher(input);
+        while (matcher.find()) {
+            String token = matcher.group();
+            tokens.add(new Token(tipo(token), token));
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Mede o {@link Parser} e o {@link ParserTabela} em programas feitos quase só de expressões longas
+ * (somas, produtos e parênteses aninhados): tempo e bytes alocados por token,
+ * sem listener, e quantos nós a árvore de derivação recebe com um listener.
+ *
+ * Uso: {@code java util.ParserBenchmark [comandos] [repetições]}
+ *
+ * @author david
+ */
+public class ParserBenchmark {
+
+    private static final String[] OPERADORES = {"+", "-", "*", "/"};
+
+    public static void main(String[] args) {
+        int comandos = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int repeticoes = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        String codigo = programa(new Random(42), comandos);
+        TokenBuffer tokens = new analisadorLexico().tokenizeBuffer(codigo);
+
+        int[] derivacao = new int[1];
+        new Parser(tokens, new ParseListener() {
+            @Override
+            public void enterNode(String label) {
+                derivacao[0]++;
+            }
+
+            @Override
+            public void leaf(String label) {
+                derivacao[0]++;
+            }
+        }).parse();
+        System.out.printf("%d tokens, %d nós na AST, %d nós na árvore de derivação%n",
+                tokens.size(), Otimizador.nos(new Parser(tokens).parse()), derivacao[0]);
+
+        medir("Parser", tokens, repeticoes, () -> new Parser(tokens).parse());
+        medir("ParserTabela", tokens, repeticoes, () -> new ParserTabela(tokens).parse());
+    }
+
+    private static void medir(String nome, TokenBuffer tokens, int repeticoes, Supplier<Ast.Programa> parser) {
+        // aquecimento: o JIT compila o parser antes da medida
+        for (int i = 0; i < repeticoes / 4 + 1; i++) {
+            parser.get();
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().threadId();
+        long bytes = threads.getThreadAllocatedBytes(id);
+        long inicio = System.nanoTime();
+        for (int i = 0; i < repeticoes; i++) {
+            parser.get();
+        }
+        long nanos = System.nanoTime() - inicio;
+        bytes = threads.getThreadAllocatedBytes(id) - bytes;
+
+        long total = (long) tokens.size() * repeticoes;
+        System.out.printf("%-13s %.1f ns/token, %.1f M tokens/s, %.1f bytes/token%n",
+                nome, (double) nanos / total, total * 1000.0 / nanos, (double) bytes / total);
+    }
+
+    // declarações e depois atribuições com expressões de 10 a 40 operandos
+    private static String programa(Random random, int comandos) {
+        StringBuilder codigo = new StringBuilder();
+        for (int v = 0; v < 8; v++) {
+            codigo.append("int v").append(v).append(" = ").append(v + 1).append(";\n");
+        }
+        for (int i = 0; i < comandos; i++) {
+            codigo.append('v').append(random.nextInt(8)).append(" = ");
+            expressao(random, codigo, 10 + random.nextInt(31), 0);
+            codigo.append(";\n");
+        }
+        return codigo.toString();
+    }
+
+    private static void expressao(Random random, StringBuilder codigo, int operandos, int profundidade) {
+        for (int i = 0; i < operandos; i++) {
+            if (i > 0) {
+                codigo.append(' ').append(OPERADORES[random.nextInt(OPERADORES.length)]).append(' ');
+            }
+            if (profundidade < 4 && random.nextInt(6) == 0) {
+                codigo.append('(');
+                expressao(random, codigo, 2 + random.nextInt(4), profundidade + 1);
+                codigo.append(')');
+            } else if (random.nextBoolean()) {
+                codigo.append('v').append(random.nextInt(8));
+            } else {
+                codigo.append(1 + random.nextInt(99));
+            }
+        }
+    }
+}
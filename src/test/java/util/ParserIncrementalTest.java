@@ -0,0 +1,114 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.PlainDocument;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.TreeNode;
+import org.junit.jupiter.api.Test;
+
+/**
+ * O {@link ParserIncremental} seguindo edições feitas num documento, como no
+ * editor: depois de cada análise, a mesma árvore e os mesmos erros que um
+ * {@link ParserIncremental} novo, e os mesmos erros que o
+ * {@link Parser#parseRecovering()}.
+ *
+ * @author david
+ */
+class ParserIncrementalTest {
+
+    // pedaços de comando, alguns quebrados, para as edições passarem por erros também
+    private static final String[] PEDACOS = {
+        "int a = 1;\n", "a = a + 2;\n", "System.out.println(a);\n", "if (a < 2) {\n", "} else {\n", "}\n",
+        "while (a > 0) {\n", "a = a - 1;\n", "x = ;\n", "(", ")", "{", "}", ";", " ", "+ 3", "\"s\"", "// c\n",
+    };
+
+    @Test
+    void mesmaArvoreQueUmaAnaliseNova() throws BadLocationException {
+        Random random = new Random(3);
+        for (int documento = 0; documento < 200; documento++) {
+            PlainDocument texto = new PlainDocument();
+            for (int i = 0; i < 8; i++) {
+                texto.insertString(texto.getLength(), PEDACOS[random.nextInt(7)], null);
+            }
+            IncrementalLexer lexer = new IncrementalLexer();
+            lexer.attach(texto);
+            ParserIncremental incremental = new ParserIncremental();
+
+            for (int passo = 0; passo < 40; passo++) {
+                // às vezes mais de uma edição entre duas análises, como quem digita rápido
+                int edicoes = 1 + random.nextInt(3);
+                for (int e = 0; e < edicoes; e++) editar(random, texto);
+                TokenBuffer tokens = lexer.snapshot();
+                IncrementalLexer.Edicao edicao = lexer.marcar();
+                incremental.reparse(tokens, edicao.intactosNoInicio(), edicao.intactosNoFim());
+                incremental.aplicar();
+
+                String codigo = texto.getText(0, texto.getLength());
+                ParserIncremental novo = new ParserIncremental();
+                novo.reparse(tokens);
+                novo.aplicar();
+                assertEquals(arvore(novo), arvore(incremental), codigo);
+                assertEquals(novo.diagnosticos(), incremental.diagnosticos(), codigo);
+
+                Parser parser = new Parser(tokens);
+                parser.parseRecovering();
+                assertEquals(parser.diagnosticos(), incremental.diagnosticos(), codigo);
+            }
+        }
+    }
+
+    @Test
+    void edicaoNumComandoNaoReanalisaOPrograma() throws BadLocationException {
+        PlainDocument texto = new PlainDocument();
+        texto.insertString(0, "int a = 1;\nif (a < 2) {\na = a + 2;\n}\n".repeat(500), null);
+        IncrementalLexer lexer = new IncrementalLexer();
+        lexer.attach(texto);
+        ParserIncremental incremental = new ParserIncremental();
+        lexer.marcar();
+        incremental.reparse(lexer.snapshot());
+        incremental.aplicar();
+
+        texto.insertString(texto.getLength() / 2, "System.out.println(a);\n", null);
+        TokenBuffer tokens = lexer.snapshot();
+        IncrementalLexer.Edicao edicao = lexer.marcar();
+        incremental.reparse(tokens, edicao.intactosNoInicio(), edicao.intactosNoFim());
+        incremental.aplicar();
+
+        assertTrue(incremental.reanalisados() < 100, incremental.reanalisados() + " de " + tokens.size() + " tokens");
+        assertEquals(List.of(), incremental.diagnosticos());
+    }
+
+    private static void editar(Random random, PlainDocument texto) throws BadLocationException {
+        int tamanho = texto.getLength();
+        int posicao = random.nextInt(tamanho + 1);
+        if (random.nextBoolean() && posicao < tamanho) {
+            texto.remove(posicao, Math.min(tamanho - posicao, 1 + random.nextInt(10)));
+        } else {
+            texto.insertString(posicao, PEDACOS[random.nextInt(PEDACOS.length)], null);
+        }
+    }
+
+    // rótulos da árvore da tela, com os filhos entre parênteses
+    private static String arvore(ParserIncremental parser) {
+        StringBuilder texto = new StringBuilder();
+        escrever((TreeNode) parser.modelo().getRoot(), texto);
+        return texto.toString();
+    }
+
+    private static void escrever(TreeNode no, StringBuilder texto) {
+        texto.append(((DefaultMutableTreeNode) no).getUserObject()).append('(');
+        for (int i = 0; i < no.getChildCount(); i++) {
+            escrever(no.getChildAt(i), texto);
+        }
+        texto.append(')');
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Teste diferencial do {@link ParserTabela} contra o {@link Parser}: nos
+ * mesmos tokens, a mesma árvore ou a mesma mensagem de erro. Os programas
+ * são gerados e depois estragados (tokens apagados, repetidos, trocados ou
+ * cortados no fim), para passar pelos erros também.
+ *
+ * @author david
+ */
+class ParserTabelaTest {
+
+    private static final String[] TIPOS = {"int", "float", "boolean", "String"};
+    private static final String[] OPERADORES = {"+", "-", "*", "/"};
+    private static final String[] RELACIONAIS = {"<", ">", "<=", ">=", "==", "!="};
+    // o que a mutação pode inserir no lugar de um token
+    private static final String[] SOLTOS = {"{", "}", "(", ")", ";", "=", "+", "<", "if", "else", "while", "x", "1", "\"s\""};
+
+    @Test
+    void mesmoResultadoQueOParserEmProgramasEscolhidos() {
+        String[] programas = {
+            "int a = 1;\nSystem.out.println(a + 2 * 3);",
+            "if (a < b) {\nint c = 1;",
+            "if (a < b) {\nint c = 1;\n} else {",
+            "while (x < 1) {",
+            "while (x < 1) {\nx = 1",
+            "if (a < b)",
+            "int a = ;",
+            "int a = 1;\n}",
+            "System.out.println((1 + 2) * (3",
+            "if (1 + 2) {\n}",
+            "",
+        };
+        for (String codigo : programas) {
+            comparar(codigo);
+        }
+    }
+
+    @Test
+    void mesmoResultadoQueOParserEmProgramasAleatorios() {
+        Random random = new Random(7);
+        int validos = 0;
+        for (int n = 0; n < 20_000; n++) {
+            List<String> tokens = new ArrayList<>();
+            comandos(random, tokens, 0);
+            if (n % 4 != 0) estragar(random, tokens);
+            if (comparar(String.join(" ", tokens))) validos++;
+        }
+        // sobram programas válidos e com erro; senão o teste só cobre um dos lados
+        assertTrue(validos > 2_000 && validos < 18_000, validos + " programas válidos");
+    }
+
+    @Test
+    void aninhamentoProfundoNaoEstouraAPilha() {
+        int niveis = 50_000;
+        String codigo = "while (x < 1) {\n".repeat(niveis) + "x = ((((1))));\n" + "}\n".repeat(niveis);
+        TokenBuffer tokens = new analisadorLexico().tokenizeBuffer(codigo);
+        assertTrue(ParserTabela.profundo(tokens));
+        assertEquals(1, ParserTabela.analisar(tokens).comandos().size());
+    }
+
+    // true se o programa é válido
+    private static boolean comparar(String codigo) {
+        TokenBuffer tokens = new analisadorLexico().tokenizeBuffer(codigo);
+        Object esperado = resultado(() -> new Parser(tokens).parse());
+        assertEquals(esperado, resultado(() -> new ParserTabela(tokens).parse()), codigo);
+        return esperado instanceof Ast.Programa;
+    }
+
+    // a árvore, ou a mensagem do erro
+    private static Object resultado(java.util.function.Supplier<Ast.Programa> parser) {
+        try {
+            return parser.get();
+        } catch (RuntimeException e) {
+            return e.getMessage();
+        }
+    }
+
+    private static void comandos(Random random, List<String> tokens, int nivel) {
+        int quantos = random.nextInt(nivel == 0 ? 5 : 3) + (nivel == 0 ? 1 : 0);
+        for (int i = 0; i < quantos; i++) {
+            switch (random.nextInt(nivel < 3 ? 6 : 4)) {
+                case 0 -> {
+                    tokens.add(TIPOS[random.nextInt(TIPOS.length)]);
+                    tokens.add("v" + random.nextInt(3));
+                    if (random.nextBoolean()) {
+                        tokens.add("=");
+                        expressao(random, tokens, 0);
+                    }
+                    tokens.add(";");
+                }
+                case 1 -> {
+                    tokens.add("v" + random.nextInt(3));
+                    tokens.add("=");
+                    expressao(random, tokens, 0);
+                    tokens.add(";");
+                }
+                case 2, 3 -> {
+                    tokens.add("System.out.println");
+                    tokens.add("(");
+                    expressao(random, tokens, 0);
+                    tokens.add(")");
+                    tokens.add(";");
+                }
+                case 4 -> {
+                    tokens.add("if");
+                    condicao(random, tokens);
+                    bloco(random, tokens, nivel);
+                    if (random.nextBoolean()) {
+                        tokens.add("else");
+                        bloco(random, tokens, nivel);
+                    }
+                }
+                default -> {
+                    tokens.add("while");
+                    condicao(random, tokens);
+                    bloco(random, tokens, nivel);
+                }
+            }
+        }
+    }
+
+    private static void bloco(Random random, List<String> tokens, int nivel) {
+        tokens.add("{");
+        comandos(random, tokens, nivel + 1);
+        tokens.add("}");
+    }
+
+    private static void condicao(Random random, List<String> tokens) {
+        tokens.add("(");
+        expressao(random, tokens, 0);
+        tokens.add(RELACIONAIS[random.nextInt(RELACIONAIS.length)]);
+        expressao(random, tokens, 0);
+        tokens.add(")");
+    }
+
+    private static void expressao(Random random, List<String> tokens, int nivel) {
+        int termos = 1 + random.nextInt(3);
+        for (int i = 0; i < termos; i++) {
+            if (i > 0) tokens.add(OPERADORES[random.nextInt(OPERADORES.length)]);
+            switch (random.nextInt(nivel < 2 ? 6 : 5)) {
+                case 0, 1 -> tokens.add(String.valueOf(random.nextInt(100)));
+                case 2 -> tokens.add("v" + random.nextInt(3));
+                case 3 -> tokens.add("\"t" + random.nextInt(10) + "\"");
+                case 4 -> tokens.add(random.nextBoolean() ? "true" : "false");
+                default -> {
+                    tokens.add("(");
+                    expressao(random, tokens, nivel + 1);
+                    tokens.add(")");
+                }
+            }
+        }
+    }
+
+    private static void estragar(Random random, List<String> tokens) {
+        int i = random.nextInt(tokens.size());
+        switch (random.nextInt(4)) {
+            case 0 -> tokens.remove(i);
+            case 1 -> tokens.add(i, tokens.get(i));
+            case 2 -> tokens.set(i, SOLTOS[random.nextInt(SOLTOS.length)]);
+            default -> tokens.subList(i, tokens.size()).clear();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * O {@link StreamingLexer} tem que dar os mesmos tokens que o
+ * {@link analisadorLexico} com o texto inteiro, inclusive quando um par de
+ * surrogates cai na fronteira da janela.
+ *
+ * @author david
+ */
+class StreamingLexerTest {
+
+    @TempDir
+    Path pasta;
+
+    // uma linha que deixa só um char livre na janela de 64K, e depois um emoji
+    @Test
+    @Timeout(value = 10, unit = TimeUnit.SECONDS, threadMode = Timeout.ThreadMode.SEPARATE_THREAD)
+    void parDeSurrogatesNoFimDaJanelaDoArquivo() throws IOException {
+        String codigo = "a".repeat(65535) + "😀 x = 1;\ny 😀\n";
+        Path arquivo = pasta.resolve("emoji.txt");
+        Files.writeString(arquivo, codigo, StandardCharsets.UTF_8);
+        try (StreamingLexer lexer = StreamingLexer.open(arquivo, StandardCharsets.UTF_8)) {
+            assertEquals(esperado(codigo), tokens(lexer));
+        }
+    }
+
+    // o par cai em todas as posições possíveis em relação à janela
+    @Test
+    @Timeout(value = 10, unit = TimeUnit.SECONDS, threadMode = Timeout.ThreadMode.SEPARATE_THREAD)
+    void parDeSurrogatesEmQualquerPosicaoDaJanela() throws IOException {
+        for (int janela = 2; janela <= 9; janela++) {
+            for (int antes = 0; antes <= 2 * janela; antes++) {
+                String codigo = "b".repeat(antes) + "😀c 1\n😀\n" + "d".repeat(antes) + "😀";
+                try (StreamingLexer lexer = new StreamingLexer(new StringReader(codigo), janela)) {
+                    assertEquals(esperado(codigo), tokens(lexer), "janela " + janela + ", " + antes + " antes");
+                }
+            }
+        }
+    }
+
+    private static List<String> esperado(String codigo) {
+        List<String> tokens = new ArrayList<>();
+        TokenBuffer buffer = new analisadorLexico().tokenizeBuffer(codigo);
+        for (int i = 0; i < buffer.size(); i++) {
+            tokens.add(buffer.type(i) + " " + buffer.start(i) + " " + buffer.text(i));
+        }
+        return tokens;
+    }
+
+    private static List<String> tokens(StreamingLexer lexer) throws IOException {
+        List<String> tokens = new ArrayList<>();
+        while (lexer.next()) {
+            if (lexer.type() != analisadorLexico.TokenType.COMMENT) {
+                tokens.add(lexer.type() + " " + lexer.start() + " " + lexer.text());
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.PlainDocument;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Uma fase que lança também entra na {@link Telemetria}, como falha; os nós
+ * que o {@link Otimizador} tira entram na fase de otimização, o relex de
+ * cada edição fica fora da fase léxica e o uso do {@link ClassCache} vai
+ * junto, contado desde o último zerar.
+ *
+ * @author david
+ */
+class TelemetriaTest {
+
+    @Test
+    void faseQueLancaContaComoFalha() {
+        Telemetria.Contadores sintatica = Telemetria.get().fase(Telemetria.Fase.SINTATICA);
+        long amostras = sintatica.nanos.amostras();
+        long falhas = sintatica.falhas();
+        long tokens = sintatica.tokens();
+
+        TokenBuffer certo = new analisadorLexico().tokenizeBuffer("int a = 1;\nSystem.out.println(a);");
+        new ParserTabela(certo).parse();
+        TokenBuffer errado = new analisadorLexico().tokenizeBuffer("int a = ;");
+        assertThrows(RuntimeException.class, () -> new ParserTabela(errado).parse());
+        assertThrows(RuntimeException.class, () -> new Parser(errado).parse());
+
+        assertEquals(amostras + 3, sintatica.nanos.amostras());
+        assertEquals(falhas + 2, sintatica.falhas());
+        // só a análise que terminou conta tokens
+        assertEquals(tokens + certo.size(), sintatica.tokens());
+    }
+
+    @Test
+    void fimDepoisDoCloseNaoContaDeNovo() {
+        Telemetria.Contadores geracao = Telemetria.get().fase(Telemetria.Fase.GERACAO);
+        long amostras = geracao.nanos.amostras();
+        long falhas = geracao.falhas();
+        try (Telemetria.Medida medida = Telemetria.get().iniciar(Telemetria.Fase.GERACAO)) {
+            medida.fim(5, 0);
+        }
+        assertEquals(amostras + 1, geracao.nanos.amostras());
+        assertEquals(falhas, geracao.falhas());
+    }
+
+    @Test
+    void otimizacaoContaOsNosEliminados() {
+        Telemetria.Contadores otimizacao = Telemetria.get().fase(Telemetria.Fase.OTIMIZACAO);
+        long amostras = otimizacao.nanos.amostras();
+        long eliminados = otimizacao.eliminados();
+
+        Interpretador interpretador = Interpretador.preparar(
+                new analisadorLexico().tokenizeBuffer("int a = 1 + 2;\nSystem.out.println(a);"));
+
+        assertTrue(interpretador.nosEliminados() > 0);
+        assertEquals(amostras + 1, otimizacao.nanos.amostras());
+        assertEquals(eliminados + interpretador.nosEliminados(), otimizacao.eliminados());
+        assertTrue(Telemetria.get().json().contains("\"eliminados\": " + otimizacao.eliminados()));
+    }
+
+    @Test
+    void relexDaEdicaoNaoEntraNaLexica() throws BadLocationException {
+        Telemetria.Contadores lexica = Telemetria.get().fase(Telemetria.Fase.LEXICA);
+        Telemetria.Contadores incremental = Telemetria.get().fase(Telemetria.Fase.LEXICA_INCREMENTAL);
+        long amostrasLexica = lexica.nanos.amostras();
+        long amostrasIncremental = incremental.nanos.amostras();
+
+        PlainDocument documento = new PlainDocument();
+        documento.insertString(0, "int a = 1;\n", null);
+        IncrementalLexer lexer = new IncrementalLexer();
+        lexer.attach(documento);
+        documento.insertString(documento.getLength(), "a = a + 1;\n", null);
+
+        assertEquals(amostrasLexica, lexica.nanos.amostras());
+        assertEquals(amostrasIncremental + 2, incremental.nanos.amostras());
+    }
+
+    @Test
+    void acertosEFaltasDoCacheDeClasses() {
+        ClassCache cache = ClassCache.padrao();
+        ClassCache.Estatisticas antes = Telemetria.get().cache();
+        String chave = "telemetria-" + System.nanoTime();
+
+        assertNull(cache.get(chave));
+        cache.put(chave, Map.of());
+        cache.get(chave);
+
+        ClassCache.Estatisticas depois = Telemetria.get().cache().desde(antes);
+        assertEquals(1, depois.acertosMemoria());
+        assertEquals(1, depois.faltas());
+        assertTrue(Telemetria.get().json().contains("\"acertosMemoria\": " + Telemetria.get().cache().acertosMemoria()));
+    }
+}